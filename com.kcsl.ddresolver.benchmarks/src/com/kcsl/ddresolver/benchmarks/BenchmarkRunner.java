@@ -0,0 +1,32 @@
+package com.kcsl.ddresolver.benchmarks;
+
+import java.io.File;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the resolver benchmarks and writes the JMH results as JSON so runs of different 
+ * builds can be compared, for example with a JMH result comparison tool. The benchmark 
+ * harness and META-INF/BenchmarkList are generated when compiling by the JMH annotation 
+ * processor in lib/, which must be on the compile classpath (see build.properties).
+ * 
+ * Usage: BenchmarkRunner [results.json] [benchmark regex]
+ */
+public class BenchmarkRunner {
+	
+	public static void main(String[] args) throws RunnerException {
+		File results = new File(args.length > 0 ? args[0] : "ddresolver-benchmarks.json");
+		String include = args.length > 1 ? args[1] : ResolverBenchmark.class.getSimpleName();
+		Options options = new OptionsBuilder()
+				.include(include)
+				.resultFormat(ResultFormatType.JSON)
+				.result(results.getAbsolutePath())
+				.build();
+		new Runner(options).run();
+	}
+	
+}
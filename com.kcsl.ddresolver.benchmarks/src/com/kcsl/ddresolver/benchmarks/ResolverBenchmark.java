@@ -0,0 +1,132 @@
+package com.kcsl.ddresolver.benchmarks;
+
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.kcsl.ddresolver.BatchResolver;
+import com.kcsl.ddresolver.CallGraphAlgorithm;
+import com.kcsl.ddresolver.Classification;
+import com.kcsl.ddresolver.Classifier;
+import com.kcsl.ddresolver.CsrGraphBackend;
+import com.kcsl.ddresolver.FieldAccessIndex;
+import com.kcsl.ddresolver.NodeIndex;
+import com.kcsl.ddresolver.ResultStore;
+
+/**
+ * Times each resolver phase on a synthetic program held in a CSR graph, so no Atlas 
+ * index is needed. The generated program and the inputs of each phase are built once 
+ * per trial, the benchmarks only time the phase itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx8g" })
+public class ResolverBenchmark {
+	
+	@Param({ "10000", "100000", "1000000" })
+	public int callsites;
+	
+	@Param({ "CHA", "RRTA", "ZERO_CFA" })
+	public CallGraphAlgorithm algorithm;
+	
+	@Param({ "4" })
+	public int depth;
+	
+	@Param({ "3" })
+	public int fanOut;
+	
+	@Param({ "0.1" })
+	public double interfaceRatio;
+	
+	@Param({ "0.3" })
+	public double polymorphicRatio;
+	
+	@Param({ "1" })
+	public int parallelism;
+	
+	private CsrGraphBackend graph;
+	private int[] candidateMethods;
+	private int[] candidateCallsites;
+	private FieldAccessIndex fieldAccesses;
+	private ResultStore results;
+	private String[] transformableTags;
+	
+	@Setup(Level.Trial)
+	public void setup(){
+		graph = new SyntheticProgramGenerator()
+				.setCallsites(callsites)
+				.setDepth(depth)
+				.setFanOut(fanOut)
+				.setInterfaceRatio(interfaceRatio)
+				.setPolymorphicRatio(polymorphicRatio)
+				.generate();
+		candidateMethods = BatchResolver.getPotentiallyTransformableMethods(graph);
+		candidateCallsites = BatchResolver.getPotentiallyTransformableMethodCallsites(graph, candidateMethods);
+		fieldAccesses = FieldAccessIndex.build(graph);
+		
+		// the venn benchmark reads every algorithm's transformable methods
+		results = new ResultStore(new NodeIndex());
+		CallGraphAlgorithm[] algorithms = CallGraphAlgorithm.values();
+		transformableTags = new String[algorithms.length];
+		for(int i=0; i<algorithms.length; i++){
+			transformableTags[i] = algorithms[i].getTag(Classification.TRANSFORMABLE);
+			BitSet transformable = newClassifier(algorithms[i]).classifyMethods(candidateMethods).get(Classification.TRANSFORMABLE);
+			if(transformable != null){
+				results.get(transformableTags[i]).or(transformable);
+			}
+		}
+	}
+	
+	private Classifier newClassifier(CallGraphAlgorithm algorithm){
+		Classifier classifier = new Classifier(algorithm, graph, fieldAccesses);
+		classifier.setParallelism(parallelism);
+		return classifier;
+	}
+	
+	@Benchmark
+	public FieldAccessIndex fieldAccessIndexing(){
+		return FieldAccessIndex.build(graph);
+	}
+	
+	@Benchmark
+	public Map<String,BitSet> shouldBeStatic(){
+		return newClassifier(algorithm).classifyShouldBeStatic(candidateMethods);
+	}
+	
+	@Benchmark
+	public Map<String,BitSet> methodTagging(){
+		return newClassifier(algorithm).classifyMethods(candidateMethods);
+	}
+	
+	@Benchmark
+	public Map<String,BitSet> callsiteTagging(){
+		return newClassifier(algorithm).classifyCallsites(candidateCallsites);
+	}
+	
+	@Benchmark
+	public Map<String,BitSet> classify(){
+		return newClassifier(algorithm).classify(candidateMethods, candidateCallsites);
+	}
+	
+	@Benchmark
+	public long[] vennComputation(){
+		return results.venn(transformableTags);
+	}
+	
+}
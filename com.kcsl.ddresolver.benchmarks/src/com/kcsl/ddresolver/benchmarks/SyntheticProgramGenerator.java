@@ -0,0 +1,213 @@
+package com.kcsl.ddresolver.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.kcsl.ddresolver.CallGraphAlgorithm;
+import com.kcsl.ddresolver.CsrGraphBackend;
+
+/**
+ * Generates synthetic programs as CSR graphs. Classes form trees of the given depth and
+ * fan-out, each class declares instance methods and instance variables, and subclasses
+ * override the first half of their parent's methods. Some classes implement one of the
+ * generated interfaces. Methods hold the callsites, which have one target unless they
+ * are polymorphic: a polymorphic callsite may dispatch to every override under CHA, to
+ * about half of them under RRTA and to one or two under 0CFA. The same seed always
+ * generates the same program.
+ */
+public class SyntheticProgramGenerator {
+	
+	private int callsites = 10_000;
+	private int depth = 4;
+	private int fanOut = 3;
+	private double interfaceRatio = 0.1;
+	private double polymorphicRatio = 0.3;
+	private int methodsPerType = 4;
+	private int fieldsPerType = 2;
+	private int callsitesPerMethod = 4;
+	private long seed = 42;
+	
+	public SyntheticProgramGenerator setCallsites(int callsites){
+		this.callsites = callsites;
+		return this;
+	}
+	
+	/**
+	 * Sets the number of classes from the root to the leaves of each class tree
+	 */
+	public SyntheticProgramGenerator setDepth(int depth){
+		this.depth = depth;
+		return this;
+	}
+	
+	/**
+	 * Sets the number of direct subclasses of each non leaf class
+	 */
+	public SyntheticProgramGenerator setFanOut(int fanOut){
+		this.fanOut = fanOut;
+		return this;
+	}
+	
+	/**
+	 * Sets the number of interfaces relative to the number of classes,
+	 * which is also the fraction of classes that implement an interface
+	 */
+	public SyntheticProgramGenerator setInterfaceRatio(double interfaceRatio){
+		this.interfaceRatio = interfaceRatio;
+		return this;
+	}
+	
+	/**
+	 * Sets the fraction of callsites that may dispatch to more than one method under CHA
+	 */
+	public SyntheticProgramGenerator setPolymorphicRatio(double polymorphicRatio){
+		this.polymorphicRatio = polymorphicRatio;
+		return this;
+	}
+	
+	public SyntheticProgramGenerator setMethodsPerType(int methodsPerType){
+		this.methodsPerType = methodsPerType;
+		return this;
+	}
+	
+	public SyntheticProgramGenerator setFieldsPerType(int fieldsPerType){
+		this.fieldsPerType = fieldsPerType;
+		return this;
+	}
+	
+	public SyntheticProgramGenerator setCallsitesPerMethod(int callsitesPerMethod){
+		this.callsitesPerMethod = callsitesPerMethod;
+		return this;
+	}
+	
+	public SyntheticProgramGenerator setSeed(long seed){
+		this.seed = seed;
+		return this;
+	}
+	
+	public CsrGraphBackend generate(){
+		Random random = new Random(seed);
+		CsrGraphBackend.Builder builder = new CsrGraphBackend.Builder();
+		
+		// enough classes for the callsites, rounded up to whole trees
+		int methodCount = Math.max(1, (callsites + callsitesPerMethod - 1) / callsitesPerMethod);
+		int classCount = Math.max(1, (methodCount + methodsPerType - 1) / methodsPerType);
+		List<int[]> classes = new ArrayList<int[]>(); // {type, parent class index}
+		List<List<Integer>> subclasses = new ArrayList<List<Integer>>();
+		while(classes.size() < classCount){
+			addTree(builder, classes, subclasses, -1, 1);
+		}
+		
+		// each class declares its own methods, subclasses override the first half of them
+		int overridden = methodsPerType / 2;
+		int[][] methods = new int[classes.size()][methodsPerType];
+		List<Integer> declaredMethods = new ArrayList<Integer>();
+		int[] instanceVariables = new int[classes.size() * fieldsPerType];
+		for(int c=0; c<classes.size(); c++){
+			int type = classes.get(c)[0];
+			int parent = classes.get(c)[1];
+			for(int m=0; m<methodsPerType; m++){
+				if(parent >= 0 && m >= overridden){
+					methods[c][m] = methods[parent][m];
+				} else {
+					methods[c][m] = builder.addNode(XCSG.Method, XCSG.InstanceMethod);
+					builder.setParent(methods[c][m], type);
+					declaredMethods.add(methods[c][m]);
+				}
+			}
+			for(int f=0; f<fieldsPerType; f++){
+				instanceVariables[c * fieldsPerType + f] = builder.addNode(XCSG.InstanceVariable);
+				builder.setParent(instanceVariables[c * fieldsPerType + f], type);
+			}
+		}
+		
+		// interfaces declare the overridden methods and are implemented by random classes
+		int interfaceCount = (int) Math.round(classes.size() * interfaceRatio);
+		for(int i=0; i<interfaceCount; i++){
+			int type = builder.addNode(XCSG.Type);
+			for(int m=0; m<overridden; m++){
+				builder.setParent(builder.addNode(XCSG.Method, XCSG.InstanceMethod), type);
+			}
+			builder.addSupertype(classes.get(random.nextInt(classes.size()))[0], type);
+		}
+		
+		// half of the methods read one of their class's instance variables
+		for(int c=0; c<classes.size(); c++){
+			for(int m=0; m<methodsPerType; m++){
+				int method = methods[c][m];
+				if(isDeclaredBy(classes, c, m, overridden) && fieldsPerType > 0 && random.nextBoolean()){
+					int read = builder.addNode(XCSG.DataFlow_Node);
+					builder.setParent(read, method);
+					builder.addDataFlowEdge(instanceVariables[c * fieldsPerType + random.nextInt(fieldsPerType)], read);
+				}
+			}
+		}
+		
+		// callsites are spread over the declared methods in order
+		for(int i=0; i<callsites; i++){
+			int caller = declaredMethods.get((i / callsitesPerMethod) % declaredMethods.size());
+			int callsite = builder.addNode(XCSG.CallSite, XCSG.DynamicDispatchCallSite);
+			builder.setParent(callsite, caller);
+			
+			int c = random.nextInt(classes.size());
+			boolean polymorphic = random.nextDouble() < polymorphicRatio && !subclasses.get(c).isEmpty() && overridden > 0;
+			int m = polymorphic ? random.nextInt(overridden) : random.nextInt(methodsPerType);
+			if(!polymorphic){
+				for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+					builder.addCallEdge(algorithm, callsite, methods[c][m]);
+				}
+				continue;
+			}
+			int[] targets = getOverrides(methods, subclasses, c, m);
+			int zeroCfaTargets = random.nextBoolean() ? 1 : 2;
+			for(int t=0; t<targets.length; t++){
+				builder.addCallEdge(CallGraphAlgorithm.CHA, callsite, targets[t]);
+				if(t <= targets.length / 2){
+					builder.addCallEdge(CallGraphAlgorithm.RRTA, callsite, targets[t]);
+				}
+				if(t < zeroCfaTargets){
+					builder.addCallEdge(CallGraphAlgorithm.ZERO_CFA, callsite, targets[t]);
+				}
+			}
+		}
+		return builder.build();
+	}
+	
+	private void addTree(CsrGraphBackend.Builder builder, List<int[]> classes, List<List<Integer>> subclasses, int parent, int level){
+		int type = builder.addNode(XCSG.Type);
+		int index = classes.size();
+		classes.add(new int[]{ type, parent });
+		subclasses.add(new ArrayList<Integer>());
+		if(parent >= 0){
+			builder.addSupertype(type, classes.get(parent)[0]);
+			subclasses.get(parent).add(index);
+		}
+		if(level < depth){
+			for(int i=0; i<fanOut; i++){
+				addTree(builder, classes, subclasses, index, level + 1);
+			}
+		}
+	}
+	
+	private static boolean isDeclaredBy(List<int[]> classes, int c, int m, int overridden){
+		return classes.get(c)[1] < 0 || m < overridden;
+	}
+	
+	/**
+	 * Returns the class's method and every override of it in its subclasses
+	 */
+	private static int[] getOverrides(int[][] methods, List<List<Integer>> subclasses, int c, int m){
+		int[] overrides = new int[]{ methods[c][m] };
+		for(int subclass : subclasses.get(c)){
+			int[] subclassOverrides = getOverrides(methods, subclasses, subclass, m);
+			int size = overrides.length;
+			overrides = Arrays.copyOf(overrides, size + subclassOverrides.length);
+			System.arraycopy(subclassOverrides, 0, overrides, size, subclassOverrides.length);
+		}
+		return overrides;
+	}
+	
+}
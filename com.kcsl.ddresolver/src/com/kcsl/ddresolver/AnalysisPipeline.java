@@ -0,0 +1,203 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * Builds the call graph of one algorithm and classifies the candidates under it. 
+ * Pipelines of different algorithms are independent and may run concurrently, 
+ * results are only tagged once every pipeline has finished.
+ */
+public class AnalysisPipeline implements Callable<AnalysisPipeline> {
+
+	private final CallGraphAlgorithm algorithm;
+	private final Q candidateMethods;
+	private final Q candidateCallsites;
+	private final TypeHierarchyCache typeHierarchies;
+	private final FieldAccessIndex fieldAccesses;
+	private int parallelism = 1;
+	private Instrumentation instrumentation = Instrumentation.DISABLED;
+	private boolean restrictedIndex = false;
+	
+	private Q callGraph;
+	private CallsiteIndex callsites;
+	private Classification classification;
+	private long start;
+	private long callGraphEnd;
+	private long end;
+	
+	public AnalysisPipeline(CallGraphAlgorithm algorithm, Q candidateMethods, Q candidateCallsites, TypeHierarchyCache typeHierarchies, FieldAccessIndex fieldAccesses){
+		this.algorithm = algorithm;
+		this.candidateMethods = candidateMethods;
+		this.candidateCallsites = candidateCallsites;
+		this.typeHierarchies = typeHierarchies;
+		this.fieldAccesses = fieldAccesses;
+	}
+	
+	/**
+	 * Sets the number of worker threads the pipeline's classifier uses
+	 */
+	public void setParallelism(int parallelism){
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Records the pipeline's phases as "<algorithm> <phase>", for example "CHA Call Graph Construction"
+	 */
+	public void setInstrumentation(Instrumentation instrumentation){
+		this.instrumentation = instrumentation;
+	}
+	
+	/**
+	 * Only indexes the candidate callsites, the callsites that may call a candidate method and the 
+	 * dynamic dispatch callsites inside candidate methods, which is all classifying the candidates 
+	 * reads. Used when only a few candidates are classified, such as in incremental runs.
+	 */
+	public void setRestrictedIndex(boolean restrictedIndex){
+		this.restrictedIndex = restrictedIndex;
+	}
+	
+	@Override
+	public AnalysisPipeline call(){
+		start = System.nanoTime();
+		Instrumentation.Timer timer = instrumentation.start(algorithm.getName() + " " + Instrumentation.CALL_GRAPH_CONSTRUCTION);
+		callGraph = algorithm.getCallGraph();
+		timer.stop();
+		callGraphEnd = System.nanoTime();
+		
+		// number nodes like the field access index so the classifier reads both with the same ids
+		timer = instrumentation.start(algorithm.getName() + " " + Instrumentation.CALLSITE_INDEXING);
+		if(restrictedIndex){
+			Q callers = Common.universe().edges(algorithm.getPerControlFlowTag()).predecessors(candidateMethods);
+			Q localCallsites = CommonQueries.localDeclarations(candidateMethods).nodes(XCSG.DynamicDispatchCallSite);
+			callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), fieldAccesses.getNodeIndex(), candidateCallsites.union(callers, localCallsites));
+		} else {
+			callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), fieldAccesses.getNodeIndex());
+		}
+		timer.stop();
+		Classifier classifier = new Classifier(algorithm, callsites, typeHierarchies, fieldAccesses);
+		classifier.setParallelism(parallelism);
+		classifier.setInstrumentation(instrumentation);
+		classification = classifier.classify(candidateMethods, candidateCallsites);
+		end = System.nanoTime();
+		return this;
+	}
+	
+	public CallGraphAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+	
+	public Q getCallGraph(){
+		return callGraph;
+	}
+	
+	public CallsiteIndex getCallsiteIndex(){
+		return callsites;
+	}
+	
+	public Classification getClassification(){
+		return classification;
+	}
+	
+	/**
+	 * Returns the nanoseconds spent building the call graph
+	 */
+	public long getCallGraphTime(){
+		return callGraphEnd - start;
+	}
+	
+	/**
+	 * Returns the nanoseconds spent indexing and classifying after the call graph was built
+	 */
+	public long getClassificationTime(){
+		return end - callGraphEnd;
+	}
+	
+	/**
+	 * Returns the nanoseconds spent building the call graph, indexing and classifying
+	 */
+	public long getTime(){
+		return end - start;
+	}
+	
+	/**
+	 * Returns the System.nanoTime() the pipeline started at
+	 */
+	public long getStart(){
+		return start;
+	}
+	
+	/**
+	 * Returns the System.nanoTime() the pipeline finished at
+	 */
+	public long getEnd(){
+		return end;
+	}
+	
+	/**
+	 * Runs the pipelines, each on its own thread if concurrent is true
+	 */
+	public static void run(List<AnalysisPipeline> pipelines, boolean concurrent){
+		if(!concurrent){
+			for(AnalysisPipeline pipeline : pipelines){
+				pipeline.call();
+			}
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(pipelines.size());
+		try {
+			List<Future<AnalysisPipeline>> futures = new ArrayList<Future<AnalysisPipeline>>();
+			for(AnalysisPipeline pipeline : pipelines){
+				futures.add(executor.submit(pipeline));
+			}
+			for(Future<AnalysisPipeline> future : futures){
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for call graph analyses", e);
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException){
+				throw (RuntimeException) e.getCause();
+			} else if(e.getCause() instanceof Error){
+				throw (Error) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		Log.info("Call graph analyses overlapped for " + TimeUnit.NANOSECONDS.toMillis(getOverlap(pipelines)) + "ms");
+	}
+	
+	/**
+	 * Returns the nanoseconds the pipelines ran at the same time, that is the sum 
+	 * of their run times minus the wall time between the first start and last end
+	 */
+	public static long getOverlap(List<AnalysisPipeline> pipelines){
+		if(pipelines.isEmpty()){
+			return 0;
+		}
+		long total = 0;
+		long first = Long.MAX_VALUE;
+		long last = Long.MIN_VALUE;
+		for(AnalysisPipeline pipeline : pipelines){
+			total += pipeline.getEnd() - pipeline.getStart();
+			first = Math.min(first, pipeline.getStart());
+			last = Math.max(last, pipeline.getEnd());
+		}
+		return total - (last - first);
+	}
+	
+}
@@ -0,0 +1,137 @@
+package com.kcsl.ddresolver;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * Answers backend operations with Atlas queries, numbering nodes with a NodeIndex.
+ * Callsite relationships come from a CallsiteIndex per algorithm, built on first use
+ * unless one was set, and supertypes come from the TypeHierarchyCache.
+ */
+public class AtlasGraphBackend implements GraphBackend {
+	
+	private final NodeIndex nodeIndex;
+	private final TypeHierarchyCache typeHierarchies;
+	private final Map<CallGraphAlgorithm,CallsiteIndex> callsiteIndexes = new EnumMap<CallGraphAlgorithm,CallsiteIndex>(CallGraphAlgorithm.class);
+	
+	public AtlasGraphBackend(NodeIndex nodeIndex, TypeHierarchyCache typeHierarchies){
+		this.nodeIndex = nodeIndex;
+		this.typeHierarchies = typeHierarchies;
+	}
+	
+	public NodeIndex getNodeIndex(){
+		return nodeIndex;
+	}
+	
+	/**
+	 * Uses the callsite index for the algorithm, the index must number nodes with this backend's node index
+	 */
+	public synchronized void setCallsiteIndex(CallGraphAlgorithm algorithm, CallsiteIndex callsites){
+		if(callsites.getNodeIndex() != nodeIndex){
+			throw new IllegalArgumentException("Callsite index does not share the backend's node index");
+		}
+		callsiteIndexes.put(algorithm, callsites);
+	}
+	
+	public synchronized CallsiteIndex getCallsiteIndex(CallGraphAlgorithm algorithm){
+		CallsiteIndex callsites = callsiteIndexes.get(algorithm);
+		if(callsites == null){
+			callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), nodeIndex);
+			callsiteIndexes.put(algorithm, callsites);
+		}
+		return callsites;
+	}
+	
+	public int getId(Node node){
+		return nodeIndex.add(node);
+	}
+	
+	public Node getNode(int id){
+		return nodeIndex.getNode(id);
+	}
+	
+	@Override
+	public int size(){
+		return nodeIndex.size();
+	}
+	
+	@Override
+	public boolean hasTag(int node, String tag){
+		return getNode(node).taggedWith(tag);
+	}
+	
+	@Override
+	public int getParent(int node){
+		Node parent = Instrumentation.eval(Common.toQ(getNode(node)).parent()).nodes().one();
+		return parent == null ? -1 : getId(parent);
+	}
+	
+	@Override
+	public int[] getChildren(int node, String tag){
+		return toIds(Common.toQ(getNode(node)).children().nodes(tag));
+	}
+	
+	@Override
+	public int[] getDeclarations(int method, String tag){
+		return toIds(CommonQueries.localDeclarations(Common.toQ(getNode(method))).nodes(tag));
+	}
+	
+	@Override
+	public int[] getSupertypes(int type){
+		return toIds(typeHierarchies.get(getNode(type)).getSupertypes());
+	}
+	
+	/**
+	 * Looks the method up in the type's cached hierarchy, see TypeHierarchyCache
+	 */
+	@Override
+	public boolean hasInstanceMethod(int type, int method){
+		return typeHierarchies.get(getNode(type)).getInstanceMethods().contains(getNode(method));
+	}
+	
+	@Override
+	public int[] getTargets(CallGraphAlgorithm algorithm, int callsite){
+		return getCallsiteIndex(algorithm).getTargets(callsite);
+	}
+	
+	@Override
+	public int getTargetCount(CallGraphAlgorithm algorithm, int callsite){
+		return getCallsiteIndex(algorithm).getTargetCount(callsite);
+	}
+	
+	@Override
+	public int[] getCallsites(CallGraphAlgorithm algorithm, int method){
+		return getCallsiteIndex(algorithm).getCallsites(method);
+	}
+	
+	@Override
+	public int[] getDataFlowSuccessors(int node){
+		return toIds(Common.universe().edges(XCSG.DataFlow_Edge).successors(Common.toQ(getNode(node))));
+	}
+	
+	@Override
+	public int[] getDataFlowPredecessors(int node){
+		return toIds(Common.universe().edges(XCSG.DataFlow_Edge).predecessors(Common.toQ(getNode(node))));
+	}
+	
+	private int[] toIds(Q q){
+		return toIds(Instrumentation.eval(q).nodes());
+	}
+	
+	private int[] toIds(AtlasSet<Node> nodes){
+		int[] ids = new int[(int) nodes.size()];
+		int i = 0;
+		for(Node node : nodes){
+			ids[i++] = getId(node);
+		}
+		return ids;
+	}
+	
+}
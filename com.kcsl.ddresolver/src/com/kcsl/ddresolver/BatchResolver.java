@@ -0,0 +1,90 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+
+/**
+ * Classifies the candidates of a graph exported by Resolver.exportGraph(File) without 
+ * Atlas. Candidates are the application methods that are not static, private or a 
+ * constructor and the callsites that may dispatch to them under CHA.
+ * 
+ * Usage: BatchResolver <graph file> <output csv> [parallelism]
+ */
+public class BatchResolver {
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2){
+			System.err.println("Usage: BatchResolver <graph file> <output csv> [parallelism]");
+			System.exit(1);
+		}
+		int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		resolve(CsrGraphBackend.load(new File(args[0])), new File(args[1]), parallelism);
+	}
+	
+	public static void resolve(GraphBackend graph, File output, int parallelism) throws IOException {
+		int[] methods = getPotentiallyTransformableMethods(graph);
+		int[] callsites = getPotentiallyTransformableMethodCallsites(graph, methods);
+		FieldAccessIndex fieldAccesses = FieldAccessIndex.build(graph);
+		
+		FileWriter fw = new FileWriter(output);
+		try {
+			fw.write("Algorithm,Potentially Transformable Methods,Potentially Transformable Method Callsites,Rewrite,Clone,Unchanged,Should Be Static,Transformable Callsites,Guardable Callsites,Time\n");
+			for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+				long start = System.nanoTime();
+				Classifier classifier = new Classifier(algorithm, graph, fieldAccesses);
+				classifier.setParallelism(parallelism);
+				Map<String,BitSet> results = classifier.classify(methods, callsites);
+				long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				fw.write(algorithm.getName() + "," + methods.length + "," + callsites.length + "," 
+						+ count(results, Classification.REWRITE) + "," + count(results, Classification.CLONE) + "," 
+						+ count(results, Classification.UNCHANGED) + "," + count(results, Classification.SHOULD_BE_STATIC) + "," 
+						+ count(results, Classification.CALLSITE_TRANSFORMABLE) + "," + count(results, Classification.CALLSITE_GUARDABLE) + "," + time + "\n");
+			}
+		} finally {
+			fw.close();
+		}
+	}
+	
+	/**
+	 * Returns the application methods that are not static, private or a constructor,
+	 * methods tagged CsrGraphBackend.LIBRARY are excluded as SetDefinitions.app() excludes them
+	 */
+	public static int[] getPotentiallyTransformableMethods(GraphBackend graph){
+		int[] methods = new int[graph.size()];
+		int count = 0;
+		for(int node=0; node<graph.size(); node++){
+			if(graph.hasTag(node, XCSG.Method) && !graph.hasTag(node, XCSG.Constructor) 
+					&& !graph.hasTag(node, XCSG.privateVisibility) && !graph.hasTag(node, XCSG.ClassMethod)
+					&& !graph.hasTag(node, CsrGraphBackend.LIBRARY)){
+				methods[count++] = node;
+			}
+		}
+		return Arrays.copyOf(methods, count);
+	}
+	
+	/**
+	 * Returns the callsites that may dispatch to one of the methods under CHA
+	 */
+	public static int[] getPotentiallyTransformableMethodCallsites(GraphBackend graph, int[] methods){
+		BitSet callsites = new BitSet(graph.size());
+		for(int method : methods){
+			for(int callsite : graph.getCallsites(CallGraphAlgorithm.CHA, method)){
+				callsites.set(callsite);
+			}
+		}
+		return callsites.stream().toArray();
+	}
+	
+	private static int count(Map<String,BitSet> results, String category){
+		BitSet result = results.get(category);
+		return result == null ? 0 : result.cardinality();
+	}
+	
+}
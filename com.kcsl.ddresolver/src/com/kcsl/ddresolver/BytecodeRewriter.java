@@ -0,0 +1,654 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+import com.ensoftcorp.atlas.core.log.Log;
+import com.kcsl.ddresolver.RewritePlan.CallsiteGroup;
+import com.kcsl.ddresolver.RewritePlan.Guard;
+import com.kcsl.ddresolver.RewritePlan.GuardedCallsiteGroup;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * Applies a RewritePlan to the classes in a jar and writes the rewritten jar. A first pass
+ * checks the plan against the class files: a static copy is only added to a concrete,
+ * non synchronized instance method of a class, a callsite group is only changed if the
+ * caller has the expected number of matching invoke instructions and can access the
+ * static copy, and a method is only replaced if every callsite group that targets it is
+ * changed and no method handle refers to it. The second pass writes the jar.
+ *
+ * A guarded callsite group is changed to invoke a private static helper in the caller's
+ * class that tests the receiver against each guard in order, invokes the static copy of
+ * the first matching target and otherwise makes the original virtual call. Guards whose
+ * target has no accessible static copy are dropped. Helpers need stack map frames for
+ * their branches, so guarded groups are only changed in class files of version 50 and up.
+ *
+ * The static copy null checks its Object receiver, like the virtual call did, and casts it
+ * back to the declaring class before running the original body, so callsites whose static
+ * receiver type is a supertype of the target pass verification. Bridged methods that are
+ * not replaced keep their instance method with a body that calls the static copy. Jar
+ * signatures are dropped since rewritten classes no longer match them.
+ */
+public class BytecodeRewriter {
+	
+	/**
+	 * Suffix of the static copies' names
+	 */
+	public static final String STATIC_SUFFIX = "$static";
+	
+	/**
+	 * Suffix of the guard helpers' names, followed by a number
+	 */
+	public static final String GUARD_SUFFIX = "$guard";
+	
+	private static final int UNCOPYABLE = Opcodes.ACC_STATIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE | Opcodes.ACC_SYNCHRONIZED | Opcodes.ACC_BRIDGE;
+	
+	private final RewritePlan plan;
+	
+	// set by the first pass
+	private final Set<String> copies = new HashSet<String>();
+	private final Set<String> replaced = new HashSet<String>();
+	private final Set<String> bridges = new HashSet<String>();
+	private final Map<String,Map<String,MethodRef>> redirects = new HashMap<String,Map<String,MethodRef>>();
+	private final Map<String,Map<String,List<Guard>>> guardedRedirects = new HashMap<String,Map<String,List<Guard>>>();
+	private final Set<String> rewrittenClasses = new HashSet<String>();
+	
+	private int rewrittenCallsites = 0;
+	private int guardedCallsites = 0;
+	
+	public BytecodeRewriter(RewritePlan plan){
+		this.plan = plan;
+	}
+	
+	/**
+	 * Returns the number of methods given a static copy by the last rewrite
+	 */
+	public int getCopiedMethods(){
+		return copies.size();
+	}
+	
+	/**
+	 * Returns the number of methods replaced by their static copy in the last rewrite
+	 */
+	public int getReplacedMethods(){
+		return replaced.size();
+	}
+	
+	/**
+	 * Returns the number of bridged (SHOULD-BE-STATIC) methods converted by the last rewrite, 
+	 * whether their instance method was replaced or kept as a bridge
+	 */
+	public int getConvertedMethods(){
+		int converted = 0;
+		for(MethodRef method : plan.getMethods()){
+			if(plan.isBridged(method) && copies.contains(method.getKey())){
+				converted++;
+			}
+		}
+		return converted;
+	}
+	
+	/**
+	 * Returns the number of instance methods the last rewrite kept as a bridge to their static copy
+	 */
+	public int getBridgedMethods(){
+		return bridges.size();
+	}
+	
+	/**
+	 * Returns the number of invoke instructions changed to invokestatic by the last rewrite
+	 */
+	public int getRewrittenCallsites(){
+		return rewrittenCallsites;
+	}
+	
+	/**
+	 * Returns the number of invoke instructions changed to invoke a guard helper by the last rewrite
+	 */
+	public int getGuardedCallsites(){
+		return guardedCallsites;
+	}
+	
+	/**
+	 * Rewrites the classes of the input jar into the output jar, other entries are copied
+	 */
+	public void rewrite(File input, File output) throws IOException {
+		if(input.getCanonicalFile().equals(output.getCanonicalFile())){
+			throw new IllegalArgumentException("Rewritten jar must not overwrite " + input.getName());
+		}
+		copies.clear();
+		replaced.clear();
+		bridges.clear();
+		redirects.clear();
+		guardedRedirects.clear();
+		rewrittenClasses.clear();
+		rewrittenCallsites = 0;
+		guardedCallsites = 0;
+		
+		JarFile jar = new JarFile(input);
+		try {
+			check(jar);
+			int signatures = 0;
+			JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+			try {
+				Enumeration<JarEntry> entries = jar.entries();
+				while(entries.hasMoreElements()){
+					JarEntry entry = entries.nextElement();
+					if(isSignature(entry.getName())){
+						signatures++;
+						continue;
+					}
+					byte[] bytes = read(jar, entry);
+					if(entry.getName().endsWith(".class")){
+						bytes = rewrite(bytes);
+					}
+					JarEntry copy = new JarEntry(entry.getName());
+					copy.setTime(entry.getTime());
+					out.putNextEntry(copy);
+					out.write(bytes);
+					out.closeEntry();
+				}
+			} finally {
+				out.close();
+			}
+			if(signatures > 0){
+				Log.warning("Dropped " + signatures + " signature files from " + input.getName());
+			}
+		} finally {
+			jar.close();
+		}
+		Log.info("Rewrote " + rewrittenCallsites + " callsites, guarded " + guardedCallsites + " callsites and added " + copies.size() 
+				+ " static methods (" + replaced.size() + " replacing their instance method) in " + output.getName());
+	}
+	
+	/**
+	 * Finds the parts of the plan that apply to the jar's classes
+	 */
+	private void check(JarFile jar) throws IOException {
+		Map<String,Integer> classAccess = new HashMap<String,Integer>();
+		Map<String,Integer> classVersion = new HashMap<String,Integer>();
+		Map<String,Integer> methodAccess = new HashMap<String,Integer>();
+		Map<Object,Integer> instructions = new HashMap<Object,Integer>();
+		Set<String> handles = new HashSet<String>();
+		Enumeration<JarEntry> entries = jar.entries();
+		while(entries.hasMoreElements()){
+			JarEntry entry = entries.nextElement();
+			if(!entry.getName().endsWith(".class")){
+				continue;
+			}
+			ClassNode classNode = new ClassNode();
+			new ClassReader(read(jar, entry)).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			classAccess.put(classNode.name, classNode.access);
+			classVersion.put(classNode.name, classNode.version & 0xFFFF);
+			for(MethodNode method : classNode.methods){
+				String key = MethodRef.getKey(classNode.name, method.name, method.desc);
+				methodAccess.put(key, method.access);
+				for(AbstractInsnNode instruction : method.instructions.toArray()){
+					if(instruction instanceof MethodInsnNode){
+						MethodInsnNode invoke = (MethodInsnNode) instruction;
+						if(invoke.getOpcode() == Opcodes.INVOKEVIRTUAL || invoke.getOpcode() == Opcodes.INVOKEINTERFACE){
+							for(CallsiteGroup group : plan.getCallerGroups(key)){
+								if(group.getInvokedName().equals(invoke.name) && group.getInvokedDescriptor().equals(invoke.desc)){
+									count(instructions, group);
+								}
+							}
+							for(GuardedCallsiteGroup group : plan.getGuardedCallerGroups(key)){
+								if(group.getInvokedName().equals(invoke.name) && group.getInvokedDescriptor().equals(invoke.desc)){
+									count(instructions, group);
+								}
+							}
+						}
+					} else if(instruction instanceof InvokeDynamicInsnNode){
+						InvokeDynamicInsnNode invoke = (InvokeDynamicInsnNode) instruction;
+						addHandles(handles, invoke.bsm);
+						for(Object argument : invoke.bsmArgs){
+							addHandles(handles, argument);
+						}
+					} else if(instruction instanceof LdcInsnNode){
+						addHandles(handles, ((LdcInsnNode) instruction).cst);
+					}
+				}
+			}
+		}
+		
+		for(MethodRef method : plan.getMethods()){
+			Integer access = methodAccess.get(method.getKey());
+			Integer ownerAccess = classAccess.get(method.getOwner());
+			if(access != null && ownerAccess != null && (ownerAccess & Opcodes.ACC_INTERFACE) == 0 && (access & UNCOPYABLE) == 0
+					&& !method.getName().startsWith("<") && !methodAccess.containsKey(MethodRef.getKey(method.getOwner(), method.getStaticName(), method.getStaticDescriptor()))){
+				copies.add(method.getKey());
+				rewrittenClasses.add(method.getOwner());
+			}
+		}
+		
+		Set<CallsiteGroup> changed = new HashSet<CallsiteGroup>();
+		for(CallsiteGroup group : plan.getCallsiteGroups()){
+			MethodRef target = group.getTarget();
+			Integer count = instructions.get(group);
+			if(count != null && count == group.getSize() && copies.contains(target.getKey())
+					&& isAccessible(group.getCaller().getOwner(), target, classAccess.get(target.getOwner()), methodAccess.get(target.getKey()))){
+				changed.add(group);
+				Map<String,MethodRef> callerRedirects = redirects.get(group.getCaller().getKey());
+				if(callerRedirects == null){
+					callerRedirects = new HashMap<String,MethodRef>();
+					redirects.put(group.getCaller().getKey(), callerRedirects);
+				}
+				callerRedirects.put(group.getInvokedName() + group.getInvokedDescriptor(), target);
+				rewrittenClasses.add(group.getCaller().getOwner());
+			}
+		}
+		
+		for(GuardedCallsiteGroup group : plan.getGuardedCallsiteGroups()){
+			String caller = group.getCaller().getOwner();
+			Integer count = instructions.get(group);
+			if(count == null || count != group.getSize() || classVersion.get(caller) < Opcodes.V1_6 || (classAccess.get(caller) & Opcodes.ACC_INTERFACE) != 0){
+				continue;
+			}
+			List<Guard> guards = new ArrayList<Guard>();
+			for(Guard guard : group.getGuards()){
+				MethodRef target = guard.getTarget();
+				if(copies.contains(target.getKey()) && isAccessible(caller, target, classAccess.get(target.getOwner()), methodAccess.get(target.getKey()))){
+					guards.add(guard);
+				}
+			}
+			if(!guards.isEmpty()){
+				Map<String,List<Guard>> callerRedirects = guardedRedirects.get(group.getCaller().getKey());
+				if(callerRedirects == null){
+					callerRedirects = new HashMap<String,List<Guard>>();
+					guardedRedirects.put(group.getCaller().getKey(), callerRedirects);
+				}
+				callerRedirects.put(group.getInvokedName() + group.getInvokedDescriptor(), guards);
+				rewrittenClasses.add(caller);
+			}
+		}
+		
+		for(MethodRef method : plan.getMethods()){
+			if(plan.isReplaceable(method) && copies.contains(method.getKey()) && !handles.contains(method.getKey())
+					&& changed.containsAll(plan.getTargetGroups(method.getKey()))){
+				replaced.add(method.getKey());
+			} else if(plan.isBridged(method) && copies.contains(method.getKey())){
+				bridges.add(method.getKey());
+			}
+		}
+	}
+	
+	private static void count(Map<Object,Integer> instructions, Object group){
+		Integer count = instructions.get(group);
+		instructions.put(group, count == null ? 1 : count + 1);
+	}
+	
+	private static void addHandles(Set<String> handles, Object constant){
+		if(constant instanceof Handle){
+			Handle handle = (Handle) constant;
+			handles.add(MethodRef.getKey(handle.getOwner(), handle.getName(), handle.getDesc()));
+		}
+	}
+	
+	/**
+	 * Returns true if code in the caller class may invoke the static copy of the target
+	 */
+	private static boolean isAccessible(String caller, MethodRef target, int classAccess, int methodAccess){
+		if(caller.equals(target.getOwner())){
+			return true;
+		}
+		if((methodAccess & Opcodes.ACC_PRIVATE) != 0){
+			return false;
+		}
+		boolean samePackage = getPackage(caller).equals(getPackage(target.getOwner()));
+		if((classAccess & Opcodes.ACC_PUBLIC) == 0 && !samePackage){
+			return false;
+		}
+		// protected copies are only used within their package, the caller may not be a subclass
+		return (methodAccess & Opcodes.ACC_PUBLIC) != 0 || samePackage;
+	}
+	
+	private static String getPackage(String internalName){
+		int separator = internalName.lastIndexOf('/');
+		return separator < 0 ? "" : internalName.substring(0, separator);
+	}
+	
+	private byte[] rewrite(byte[] bytes){
+		ClassReader reader = new ClassReader(bytes);
+		if(!rewrittenClasses.contains(reader.getClassName())){
+			return bytes;
+		}
+		ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+		// frames are expanded so the static copies' frames declare the receiver's type
+		reader.accept(new RewritingClassVisitor(writer), ClassReader.EXPAND_FRAMES);
+		return writer.toByteArray();
+	}
+	
+	private class RewritingClassVisitor extends ClassVisitor {
+		
+		private String className;
+		
+		// guard helper key -> helper, written when the class ends
+		private final Map<String,GuardHelper> guardHelpers = new LinkedHashMap<String,GuardHelper>();
+		
+		public RewritingClassVisitor(ClassVisitor cv){
+			super(Opcodes.ASM9, cv);
+		}
+		
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces){
+			className = name;
+			super.visit(version, access, name, signature, superName, interfaces);
+		}
+		
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions){
+			String key = MethodRef.getKey(className, name, descriptor);
+			MethodVisitor mv;
+			if(copies.contains(key)){
+				mv = new StaticCopyMethodNode(className, access, name, descriptor, signature, exceptions, replaced.contains(key), bridges.contains(key), cv);
+			} else {
+				mv = super.visitMethod(access, name, descriptor, signature, exceptions);
+			}
+			Map<String,MethodRef> methodRedirects = redirects.get(key);
+			Map<String,List<Guard>> methodGuardedRedirects = guardedRedirects.get(key);
+			if(methodRedirects == null && methodGuardedRedirects == null){
+				return mv;
+			}
+			return new RedirectingMethodVisitor(mv, methodRedirects, methodGuardedRedirects);
+		}
+		
+		/**
+		 * Returns the helper that guards the invocation, adding it if the class does not have it yet
+		 */
+		private GuardHelper getGuardHelper(int opcode, String owner, String name, String descriptor, boolean isInterface, List<Guard> guards){
+			StringBuilder key = new StringBuilder().append(opcode).append(owner).append('.').append(name).append(descriptor);
+			for(Guard guard : guards){
+				key.append(guard.isExact() ? "=" : "<").append(guard.getTarget().getOwner());
+			}
+			GuardHelper helper = guardHelpers.get(key.toString());
+			if(helper == null){
+				helper = new GuardHelper(name + GUARD_SUFFIX + guardHelpers.size(), opcode, owner, name, descriptor, isInterface, guards);
+				guardHelpers.put(key.toString(), helper);
+			}
+			return helper;
+		}
+		
+		@Override
+		public void visitEnd(){
+			for(GuardHelper helper : guardHelpers.values()){
+				helper.write(cv);
+			}
+			super.visitEnd();
+		}
+		
+		/**
+		 * Changes the invokevirtual and invokeinterface instructions of a caller's callsite groups 
+		 * to invokestatic of a static copy or of a guard helper
+		 */
+		private class RedirectingMethodVisitor extends MethodVisitor {
+			
+			private final Map<String,MethodRef> methodRedirects;
+			private final Map<String,List<Guard>> methodGuardedRedirects;
+			
+			public RedirectingMethodVisitor(MethodVisitor mv, Map<String,MethodRef> methodRedirects, Map<String,List<Guard>> methodGuardedRedirects){
+				super(Opcodes.ASM9, mv);
+				this.methodRedirects = methodRedirects == null ? Collections.<String,MethodRef>emptyMap() : methodRedirects;
+				this.methodGuardedRedirects = methodGuardedRedirects == null ? Collections.<String,List<Guard>>emptyMap() : methodGuardedRedirects;
+			}
+			
+			@Override
+			public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface){
+				if(opcode == Opcodes.INVOKEVIRTUAL || opcode == Opcodes.INVOKEINTERFACE){
+					MethodRef target = methodRedirects.get(name + descriptor);
+					if(target != null){
+						super.visitMethodInsn(Opcodes.INVOKESTATIC, target.getOwner(), target.getStaticName(), target.getStaticDescriptor(), false);
+						rewrittenCallsites++;
+						return;
+					}
+					List<Guard> guards = methodGuardedRedirects.get(name + descriptor);
+					if(guards != null && !owner.startsWith("[")){
+						GuardHelper helper = getGuardHelper(opcode, owner, name, descriptor, isInterface, guards);
+						super.visitMethodInsn(Opcodes.INVOKESTATIC, className, helper.getName(), helper.getDescriptor(), false);
+						guardedCallsites++;
+						return;
+					}
+				}
+				super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * A private static method that takes the receiver and arguments of a virtual call, invokes 
+	 * the static copy of the first target whose guard passes and otherwise makes the virtual call
+	 */
+	private static class GuardHelper {
+		
+		private final String name;
+		private final int opcode;
+		private final String owner;
+		private final String invokedName;
+		private final String invokedDescriptor;
+		private final boolean isInterface;
+		private final List<Guard> guards;
+		
+		public GuardHelper(String name, int opcode, String owner, String invokedName, String invokedDescriptor, boolean isInterface, List<Guard> guards){
+			this.name = name;
+			this.opcode = opcode;
+			this.owner = owner;
+			this.invokedName = invokedName;
+			this.invokedDescriptor = invokedDescriptor;
+			this.isInterface = isInterface;
+			this.guards = guards;
+		}
+		
+		public String getName(){
+			return name;
+		}
+		
+		/**
+		 * Returns the helper's descriptor, the invoked descriptor with the receiver's type as the first parameter
+		 */
+		public String getDescriptor(){
+			return "(L" + owner + ";" + invokedDescriptor.substring(1);
+		}
+		
+		public void write(ClassVisitor cv){
+			Type[] arguments = Type.getArgumentTypes(invokedDescriptor);
+			Type returnType = Type.getReturnType(invokedDescriptor);
+			Object[] locals = new Object[arguments.length + 1];
+			locals[0] = owner;
+			for(int i=0; i<arguments.length; i++){
+				locals[i + 1] = getFrameType(arguments[i]);
+			}
+			
+			MethodVisitor mv = cv.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC, name, getDescriptor(), null, null);
+			mv.visitCode();
+			for(Guard guard : guards){
+				MethodRef target = guard.getTarget();
+				Label next = new Label();
+				mv.visitVarInsn(Opcodes.ALOAD, 0);
+				if(guard.isExact()){
+					mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;", false);
+					mv.visitLdcInsn(Type.getObjectType(target.getOwner()));
+					mv.visitJumpInsn(Opcodes.IF_ACMPNE, next);
+				} else {
+					mv.visitTypeInsn(Opcodes.INSTANCEOF, target.getOwner());
+					mv.visitJumpInsn(Opcodes.IFEQ, next);
+				}
+				loadArguments(mv, arguments);
+				mv.visitMethodInsn(Opcodes.INVOKESTATIC, target.getOwner(), target.getStaticName(), target.getStaticDescriptor(), false);
+				mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+				mv.visitLabel(next);
+				mv.visitFrame(Opcodes.F_NEW, locals.length, locals, 0, new Object[0]);
+			}
+			loadArguments(mv, arguments);
+			mv.visitMethodInsn(opcode, owner, invokedName, invokedDescriptor, isInterface);
+			mv.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+			mv.visitMaxs(0, 0);
+			mv.visitEnd();
+		}
+		
+		private static void loadArguments(MethodVisitor mv, Type[] arguments){
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			int local = 1;
+			for(Type argument : arguments){
+				mv.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), local);
+				local += argument.getSize();
+			}
+		}
+		
+		private static Object getFrameType(Type type){
+			switch(type.getSort()){
+				case Type.BOOLEAN:
+				case Type.CHAR:
+				case Type.BYTE:
+				case Type.SHORT:
+				case Type.INT:
+					return Opcodes.INTEGER;
+				case Type.FLOAT:
+					return Opcodes.FLOAT;
+				case Type.LONG:
+					return Opcodes.LONG;
+				case Type.DOUBLE:
+					return Opcodes.DOUBLE;
+				case Type.ARRAY:
+					return type.getDescriptor();
+				default:
+					return type.getInternalName();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Collects a method's body and writes it as a static copy and, unless replaced, 
+	 * as the original method or a bridge to the static copy
+	 */
+	private static class StaticCopyMethodNode extends MethodNode {
+		
+		private final String className;
+		private final boolean replace;
+		private final boolean bridge;
+		private final ClassVisitor cv;
+		
+		public StaticCopyMethodNode(String className, int access, String name, String descriptor, String signature, String[] exceptions, boolean replace, boolean bridge, ClassVisitor cv){
+			super(Opcodes.ASM9, access, name, descriptor, signature, exceptions);
+			this.className = className;
+			this.replace = replace;
+			this.bridge = bridge;
+			this.cv = cv;
+		}
+		
+		@Override
+		public void visitEnd(){
+			MethodRef method = new MethodRef(className, name, desc);
+			if(bridge && !replace){
+				writeBridge(method);
+			} else if(!replace){
+				accept(cv);
+			}
+			int staticAccess = (access & ~(Opcodes.ACC_FINAL | Opcodes.ACC_VARARGS)) | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC;
+			MethodNode copy = new MethodNode(Opcodes.ASM9, staticAccess, method.getStaticName(), method.getStaticDescriptor(), null, exceptions.toArray(new String[exceptions.size()]));
+			accept(copy);
+			
+			// annotations and parameter metadata describe the original signature
+			copy.parameters = null;
+			copy.visibleAnnotations = null;
+			copy.invisibleAnnotations = null;
+			copy.visibleTypeAnnotations = null;
+			copy.invisibleTypeAnnotations = null;
+			copy.visibleParameterAnnotations = null;
+			copy.invisibleParameterAnnotations = null;
+			copy.visibleAnnotableParameterCount = 0;
+			copy.invisibleAnnotableParameterCount = 0;
+			
+			InsnList receiver = new InsnList();
+			receiver.add(new VarInsnNode(Opcodes.ALOAD, 0));
+			receiver.add(new InsnNode(Opcodes.DUP));
+			receiver.add(new MethodInsnNode(Opcodes.INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;", false));
+			receiver.add(new InsnNode(Opcodes.POP));
+			receiver.add(new TypeInsnNode(Opcodes.CHECKCAST, className));
+			receiver.add(new VarInsnNode(Opcodes.ASTORE, 0));
+			copy.instructions.insert(receiver);
+			copy.accept(cv);
+		}
+		
+		/**
+		 * Writes the instance method with its annotations and a body that calls the static copy
+		 */
+		private void writeBridge(MethodRef method){
+			MethodNode bridge = new MethodNode(Opcodes.ASM9, access, name, desc, signature, exceptions.toArray(new String[exceptions.size()]));
+			accept(bridge);
+			bridge.instructions.clear();
+			bridge.tryCatchBlocks.clear();
+			bridge.localVariables = null;
+			bridge.visibleLocalVariableAnnotations = null;
+			bridge.invisibleLocalVariableAnnotations = null;
+			bridge.instructions.add(new VarInsnNode(Opcodes.ALOAD, 0));
+			int local = 1;
+			for(Type argument : Type.getArgumentTypes(desc)){
+				bridge.instructions.add(new VarInsnNode(argument.getOpcode(Opcodes.ILOAD), local));
+				local += argument.getSize();
+			}
+			bridge.instructions.add(new MethodInsnNode(Opcodes.INVOKESTATIC, className, method.getStaticName(), method.getStaticDescriptor(), false));
+			bridge.instructions.add(new InsnNode(Type.getReturnType(desc).getOpcode(Opcodes.IRETURN)));
+			bridge.accept(cv);
+		}
+		
+	}
+	
+	static boolean isSignature(String name){
+		String upperCaseName = name.toUpperCase();
+		return upperCaseName.startsWith("META-INF/") && upperCaseName.indexOf('/', "META-INF/".length()) < 0
+				&& (upperCaseName.endsWith(".SF") || upperCaseName.endsWith(".RSA") || upperCaseName.endsWith(".DSA") || upperCaseName.endsWith(".EC"));
+	}
+	
+	static byte[] read(JarFile jar, JarEntry entry) throws IOException {
+		InputStream in = jar.getInputStream(entry);
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+}
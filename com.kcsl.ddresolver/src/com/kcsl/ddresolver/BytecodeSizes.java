@@ -0,0 +1,142 @@
+package com.kcsl.ddresolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.objectweb.asm.ClassReader;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * The bytecode size (code length) of each method in a jar or class directory, the
+ * size HotSpot compares with its inlining thresholds
+ */
+public class BytecodeSizes {
+	
+	// method key (owner.name+descriptor) -> code length
+	private final Map<String,Integer> codeLengths = new HashMap<String,Integer>();
+	
+	private BytecodeSizes(){}
+	
+	/**
+	 * Reads the code lengths of the methods of the classes in a jar or below a directory
+	 */
+	public static BytecodeSizes load(File jarOrDirectory) throws IOException {
+		BytecodeSizes sizes = new BytecodeSizes();
+		if(jarOrDirectory.isDirectory()){
+			sizes.loadDirectory(jarOrDirectory);
+		} else {
+			JarFile jar = new JarFile(jarOrDirectory);
+			try {
+				Enumeration<JarEntry> entries = jar.entries();
+				while(entries.hasMoreElements()){
+					JarEntry entry = entries.nextElement();
+					if(entry.getName().endsWith(".class")){
+						sizes.add(read(jar.getInputStream(entry)));
+					}
+				}
+			} finally {
+				jar.close();
+			}
+		}
+		return sizes;
+	}
+	
+	private void loadDirectory(File directory) throws IOException {
+		File[] files = directory.listFiles();
+		if(files == null){
+			return;
+		}
+		for(File file : files){
+			if(file.isDirectory()){
+				loadDirectory(file);
+			} else if(file.getName().endsWith(".class")){
+				add(read(new FileInputStream(file)));
+			}
+		}
+	}
+	
+	/**
+	 * Walks the method_info structures of the class file, ASM's visitors do not report code lengths
+	 */
+	private void add(byte[] bytes){
+		ClassReader reader = new ClassReader(bytes);
+		char[] buffer = new char[reader.getMaxStringLength()];
+		String owner = reader.getClassName();
+		// access flags, this class and super class
+		int offset = reader.header + 6;
+		offset += 2 + 2 * reader.readUnsignedShort(offset);
+		int fields = reader.readUnsignedShort(offset);
+		offset += 2;
+		for(int i=0; i<fields; i++){
+			offset = skipAttributes(reader, offset + 6);
+		}
+		int methods = reader.readUnsignedShort(offset);
+		offset += 2;
+		for(int i=0; i<methods; i++){
+			String name = reader.readUTF8(offset + 2, buffer);
+			String descriptor = reader.readUTF8(offset + 4, buffer);
+			int attributes = reader.readUnsignedShort(offset + 6);
+			offset += 8;
+			for(int j=0; j<attributes; j++){
+				if("Code".equals(reader.readUTF8(offset, buffer))){
+					// max_stack and max_locals precede code_length
+					codeLengths.put(MethodRef.getKey(owner, name, descriptor), reader.readInt(offset + 10));
+				}
+				offset += 6 + reader.readInt(offset + 2);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the offset after the attributes whose count is at the offset
+	 */
+	private static int skipAttributes(ClassReader reader, int offset){
+		int attributes = reader.readUnsignedShort(offset);
+		offset += 2;
+		for(int i=0; i<attributes; i++){
+			offset += 6 + reader.readInt(offset + 2);
+		}
+		return offset;
+	}
+	
+	/**
+	 * Returns the method's code length in bytes, -1 if the method has no code (abstract or native) or was not loaded
+	 */
+	public int getCodeLength(String owner, String name, String descriptor){
+		Integer codeLength = codeLengths.get(MethodRef.getKey(owner, name, descriptor));
+		return codeLength == null ? -1 : codeLength;
+	}
+	
+	/**
+	 * Returns the code length of the indexed method, -1 if it is unknown
+	 */
+	public int getCodeLength(Node method){
+		MethodRef methodRef = RewritePlan.getMethodRef(method);
+		return methodRef == null ? -1 : getCodeLength(methodRef.getOwner(), methodRef.getName(), methodRef.getDescriptor());
+	}
+	
+	private static byte[] read(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = in.read(buffer)) != -1){
+				bytes.write(buffer, 0, read);
+			}
+			return bytes.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+}
@@ -0,0 +1,54 @@
+package com.kcsl.ddresolver;
+
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.open.cg.analysis.ClassHierarchyAnalysis;
+import com.ensoftcorp.open.cg.analysis.ReallyRapidTypeAnalysis;
+import com.ensoftcorp.open.cg.analysis.ZeroControlFlowAnalysis;
+
+/**
+ * The call graph construction algorithms the resolver compares
+ */
+public enum CallGraphAlgorithm {
+
+	CHA("CHA", ClassHierarchyAnalysis.PER_CONTROL_FLOW),
+	RRTA("RRTA", ReallyRapidTypeAnalysis.PER_CONTROL_FLOW),
+	ZERO_CFA("0CFA", ZeroControlFlowAnalysis.PER_CONTROL_FLOW);
+	
+	private final String name;
+	private final String perControlFlowTag;
+	
+	private CallGraphAlgorithm(String name, String perControlFlowTag){
+		this.name = name;
+		this.perControlFlowTag = perControlFlowTag;
+	}
+	
+	/**
+	 * Returns the short name used to prefix result tags and CSV columns
+	 */
+	public String getName(){
+		return name;
+	}
+	
+	public String getPerControlFlowTag(){
+		return perControlFlowTag;
+	}
+	
+	/**
+	 * Returns the result tag for the given category, for example "CHA-REWRITE"
+	 */
+	public String getTag(String category){
+		return name + "-" + category;
+	}
+	
+	/**
+	 * Runs (or fetches the cached result of) the call graph analysis
+	 */
+	public Q getCallGraph(){
+		switch(this){
+			case CHA: return ClassHierarchyAnalysis.getInstance(false).getCallGraph();
+			case RRTA: return ReallyRapidTypeAnalysis.getInstance(false).getCallGraph();
+			default: return ZeroControlFlowAnalysis.getInstance(false).getCallGraph();
+		}
+	}
+	
+}
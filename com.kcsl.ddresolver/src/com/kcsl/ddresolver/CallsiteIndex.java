@@ -0,0 +1,150 @@
+package com.kcsl.ddresolver;
+
+import java.util.Arrays;
+
+import com.ensoftcorp.atlas.core.db.graph.Edge;
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Callsite to target method relationships of a single call graph analysis,
+ * built in one pass over the analysis's per control flow edges
+ */
+public class CallsiteIndex {
+
+	private final NodeIndex nodeIndex;
+	
+	// callsite id -> [targetOffsets[id], targetOffsets[id+1]) in targets
+	private int[] targetOffsets;
+	private int[] targets;
+	
+	// method id -> [callsiteOffsets[id], callsiteOffsets[id+1]) in callsites
+	private int[] callsiteOffsets;
+	private int[] callsites;
+	
+	private CallsiteIndex(NodeIndex nodeIndex){
+		this.nodeIndex = nodeIndex;
+	}
+	
+	/**
+	 * Indexes the edges tagged with the given per control flow tag, for example
+	 * ClassHierarchyAnalysis.PER_CONTROL_FLOW
+	 */
+	public static CallsiteIndex build(String perControlFlowTag, NodeIndex nodeIndex){
+		return build(Instrumentation.eval(Common.universe().edges(perControlFlowTag)).edges(), nodeIndex);
+	}
+	
+	/**
+	 * Indexes only the edges tagged with the per control flow tag that leave the given 
+	 * callsites, methods are only mapped to callsites in that set
+	 */
+	public static CallsiteIndex build(String perControlFlowTag, NodeIndex nodeIndex, Q callsites){
+		return build(Instrumentation.eval(Common.universe().edges(perControlFlowTag).forwardStep(callsites)).edges(), nodeIndex);
+	}
+	
+	private static CallsiteIndex build(AtlasSet<Edge> edges, NodeIndex nodeIndex){
+		// pack each (callsite,target) pair into a long so duplicate edges collapse after sorting
+		long[] pairs = new long[(int) edges.size()];
+		int size = 0;
+		for(Edge edge : edges){
+			long callsite = nodeIndex.add(edge.from());
+			long target = nodeIndex.add(edge.to());
+			pairs[size++] = (callsite << 32) | target;
+		}
+		return build(pairs, size, nodeIndex.size(), nodeIndex);
+	}
+	
+	/**
+	 * Indexes (callsite id << 32 | target id) pairs over ids below the given node count, 
+	 * the node index may be null when ids are not Atlas nodes. The pairs are sorted in place.
+	 */
+	static CallsiteIndex build(long[] pairs, int size, int nodes, NodeIndex nodeIndex){
+		CallsiteIndex index = new CallsiteIndex(nodeIndex);
+		Arrays.sort(pairs, 0, size);
+		int unique = 0;
+		for(int i=0; i<size; i++){
+			if(unique == 0 || pairs[unique-1] != pairs[i]){
+				pairs[unique++] = pairs[i];
+			}
+		}
+		
+		index.targetOffsets = new int[nodes + 1];
+		index.callsiteOffsets = new int[nodes + 1];
+		for(int i=0; i<unique; i++){
+			index.targetOffsets[(int) (pairs[i] >>> 32) + 1]++;
+			index.callsiteOffsets[(int) pairs[i] + 1]++;
+		}
+		for(int i=0; i<nodes; i++){
+			index.targetOffsets[i+1] += index.targetOffsets[i];
+			index.callsiteOffsets[i+1] += index.callsiteOffsets[i];
+		}
+		
+		index.targets = new int[unique];
+		index.callsites = new int[unique];
+		int[] callsiteFill = Arrays.copyOf(index.callsiteOffsets, nodes);
+		for(int i=0; i<unique; i++){
+			int callsite = (int) (pairs[i] >>> 32);
+			int target = (int) pairs[i];
+			// pairs are sorted by callsite so targets fill contiguously
+			index.targets[i] = target;
+			index.callsites[callsiteFill[target]++] = callsite;
+		}
+		return index;
+	}
+	
+	public NodeIndex getNodeIndex(){
+		return nodeIndex;
+	}
+	
+	/**
+	 * Returns the number of distinct methods the callsite may dispatch to
+	 */
+	public int getTargetCount(Node callsite){
+		return getTargetCount(nodeIndex.getId(callsite));
+	}
+	
+	public int getTargetCount(int callsite){
+		if(callsite < 0 || callsite + 1 >= targetOffsets.length){
+			return 0;
+		}
+		return targetOffsets[callsite+1] - targetOffsets[callsite];
+	}
+	
+	/**
+	 * Returns the ids of the methods the callsite may dispatch to
+	 */
+	public int[] getTargets(Node callsite){
+		return getTargets(nodeIndex.getId(callsite));
+	}
+	
+	public int[] getTargets(int callsite){
+		if(callsite < 0 || callsite + 1 >= targetOffsets.length){
+			return new int[0];
+		}
+		return Arrays.copyOfRange(targets, targetOffsets[callsite], targetOffsets[callsite+1]);
+	}
+	
+	/**
+	 * Returns the ids of the callsites that may dispatch to the method
+	 */
+	public int[] getCallsites(Node method){
+		return getCallsites(nodeIndex.getId(method));
+	}
+	
+	public int[] getCallsites(int method){
+		if(method < 0 || method + 1 >= callsiteOffsets.length){
+			return new int[0];
+		}
+		return Arrays.copyOfRange(callsites, callsiteOffsets[method], callsiteOffsets[method+1]);
+	}
+	
+	/**
+	 * Returns the number of callsite to target method edges in the index
+	 */
+	public int getEdgeCount(){
+		return targets.length;
+	}
+	
+}
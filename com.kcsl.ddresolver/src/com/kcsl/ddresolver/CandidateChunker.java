@@ -0,0 +1,195 @@
+package com.kcsl.ddresolver;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Splits the candidates into chunks of whole packages or top level types (with their nested
+ * and local types) so each chunk can be classified on its own and its intermediate results
+ * released before the next. Candidates are classified independently of each other, so the
+ * chunks' results together equal the results of classifying every candidate at once.
+ *
+ * With a heap budget the chunk size adapts to the heap in use before each chunk, as the
+ * MemoryMXBean reports it: it is halved while the budget is exceeded and doubled, up to the
+ * configured size, while less than half of the budget is used. Collections are never forced,
+ * so garbage not yet collected counts against the budget and keeps the chunks conservative.
+ */
+public class CandidateChunker implements Iterator<CandidateChunker.Chunk> {
+	
+	/**
+	 * The unit chunks are made of, a package or a type is never split between chunks
+	 */
+	public static enum Granularity {
+		PACKAGE, TYPE
+	}
+	
+	private static final long MB = 1024 * 1024;
+	
+	private final Q candidateMethods;
+	private final Q candidateCallsites;
+	private final List<Node> groups = new ArrayList<Node>();
+	private final int maxChunkSize;
+	private final long heapBudget;
+	private final long candidates;
+	
+	private int chunkSize;
+	private int nextGroup = 0;
+	private boolean remainderDone = false;
+	private Chunk next = null;
+	private int chunks = 0;
+	private long assigned = 0;
+	
+	/**
+	 * Candidates classified together
+	 */
+	public static class Chunk {
+		private final AtlasSet<Node> methods;
+		private final AtlasSet<Node> callsites;
+		
+		private Chunk(AtlasSet<Node> methods, AtlasSet<Node> callsites){
+			this.methods = methods;
+			this.callsites = callsites;
+		}
+		
+		public Q getMethods(){
+			return Common.toQ(methods);
+		}
+		
+		public Q getCallsites(){
+			return Common.toQ(callsites);
+		}
+		
+		/**
+		 * Returns the number of candidate methods and callsites in the chunk
+		 */
+		public long size(){
+			return methods.size() + callsites.size();
+		}
+	}
+	
+	/**
+	 * Creates a chunker that fills chunks with up to the chunk size candidates (more if a
+	 * single package or type has more), adapting the chunk size to the heap budget in bytes
+	 * if it is positive
+	 */
+	public CandidateChunker(Q candidateMethods, Q candidateCallsites, Granularity granularity, int chunkSize, long heapBudget){
+		if(chunkSize < 1){
+			throw new IllegalArgumentException("Chunk size must be at least 1");
+		}
+		this.candidateMethods = candidateMethods;
+		this.candidateCallsites = candidateCallsites;
+		this.maxChunkSize = chunkSize;
+		this.chunkSize = chunkSize;
+		this.heapBudget = heapBudget;
+		this.candidates = candidateMethods.eval().nodes().size() + candidateCallsites.eval().nodes().size();
+		
+		Q contains = Common.universe().edges(XCSG.Contains);
+		Q containers = contains.reverse(candidateMethods.union(candidateCallsites));
+		Q packages = containers.nodes(XCSG.Package);
+		Q units = granularity == Granularity.PACKAGE ? packages : contains.successors(packages).intersection(containers.nodes(XCSG.Type));
+		for(Node group : units.eval().nodes()){
+			groups.add(group);
+		}
+	}
+	
+	/**
+	 * Returns the number of chunks returned so far
+	 */
+	public int getChunks(){
+		return chunks;
+	}
+	
+	@Override
+	public boolean hasNext(){
+		if(next == null){
+			next = fill();
+		}
+		return next != null;
+	}
+	
+	/**
+	 * Returns the next chunk, the caller should drop its references to the previous chunk
+	 * and its results first so they can be collected before the heap use is measured
+	 */
+	@Override
+	public Chunk next(){
+		if(!hasNext()){
+			throw new NoSuchElementException();
+		}
+		Chunk chunk = next;
+		next = null;
+		chunks++;
+		return chunk;
+	}
+	
+	private Chunk fill(){
+		adapt();
+		AtlasSet<Node> methods = new AtlasHashSet<Node>();
+		AtlasSet<Node> callsites = new AtlasHashSet<Node>();
+		while(nextGroup < groups.size() && methods.size() + callsites.size() < chunkSize){
+			Q contained = Common.toQ(groups.get(nextGroup++)).contained();
+			add(methods, candidateMethods.intersection(contained));
+			add(callsites, candidateCallsites.intersection(contained));
+		}
+		if(nextGroup == groups.size() && !remainderDone && methods.size() + callsites.size() < chunkSize){
+			remainderDone = true;
+			if(assigned + methods.size() + callsites.size() < candidates){
+				// candidates outside every package, for example in types without a package node
+				AtlasSet<Node> grouped = new AtlasHashSet<Node>();
+				for(Node group : groups){
+					grouped.add(group);
+				}
+				Q contained = Common.toQ(grouped).contained();
+				add(methods, candidateMethods.difference(contained));
+				add(callsites, candidateCallsites.difference(contained));
+			}
+		}
+		if(methods.isEmpty() && callsites.isEmpty()){
+			return null;
+		}
+		assigned += methods.size() + callsites.size();
+		return new Chunk(methods, callsites);
+	}
+	
+	private static void add(AtlasSet<Node> set, Q nodes){
+		for(Node node : nodes.eval().nodes()){
+			set.add(node);
+		}
+	}
+	
+	/**
+	 * Resizes the chunks to the heap in use after the previous chunk
+	 */
+	private void adapt(){
+		if(heapBudget <= 0 || chunks == 0){
+			return;
+		}
+		long used = getUsedHeap();
+		if(used > heapBudget){
+			if(chunkSize > 1){
+				chunkSize = Math.max(1, chunkSize / 2);
+				Log.info("Heap use " + used / MB + "MB exceeds the " + heapBudget / MB + "MB heap budget, reduced chunks to " + chunkSize + " candidates");
+			} else {
+				Log.warning("Heap use " + used / MB + "MB exceeds the " + heapBudget / MB + "MB heap budget with chunks of a single package or type");
+			}
+		} else if(used < heapBudget / 2 && chunkSize < maxChunkSize){
+			chunkSize = (int) Math.min(maxChunkSize, 2L * chunkSize);
+		}
+	}
+	
+	private static long getUsedHeap(){
+		return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+	}
+	
+}
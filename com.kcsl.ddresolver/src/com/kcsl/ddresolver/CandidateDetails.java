@@ -0,0 +1,214 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * Writes one record per candidate method and callsite: its kind, key, name, source file and
+ * line, container (the declaring type of a method, the calling method of a callsite), loop
+ * membership and each algorithm's target count and classification. Records are streamed
+ * as they are built, as a ColumnarFile or as CSV.
+ */
+public class CandidateDetails {
+	
+	public static enum Format {
+		BINARY(".ddrd"), CSV(".csv");
+		
+		private final String extension;
+		
+		private Format(String extension){
+			this.extension = extension;
+		}
+		
+		public String getExtension(){
+			return extension;
+		}
+	}
+	
+	public static final String METHOD = "Method";
+	public static final String CALLSITE = "Callsite";
+	
+	// method categories listed in a method's classification, TRANSFORMABLE is implied by REWRITE and CLONE
+	private static final String[] METHOD_CATEGORIES = { Classification.SHOULD_BE_STATIC, Classification.REWRITE, Classification.CLONE, Classification.UNCHANGED };
+	private static final String[] CALLSITE_CATEGORIES = { Classification.CALLSITE_TRANSFORMABLE, Classification.CALLSITE_GUARDABLE };
+	
+	/**
+	 * Returns the column names, for example "CHA Targets" and "CHA Classification"
+	 */
+	public static List<String> getColumns(){
+		List<String> columns = new ArrayList<String>();
+		columns.add("Kind");
+		columns.add("Key");
+		columns.add("Name");
+		columns.add("Source File");
+		columns.add("Line");
+		columns.add("Container");
+		columns.add("Inside Loop");
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			columns.add(algorithm.getName() + " Targets");
+		}
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			columns.add(algorithm.getName() + " Classification");
+		}
+		return columns;
+	}
+	
+	/**
+	 * Returns the column types, see ColumnarFile
+	 */
+	private static byte[] getTypes(){
+		int algorithms = CallGraphAlgorithm.values().length;
+		byte[] types = new byte[7 + 2 * algorithms];
+		types[0] = types[1] = types[2] = types[3] = types[5] = ColumnarFile.STRING;
+		types[4] = types[6] = ColumnarFile.INT;
+		for(int i=0; i<algorithms; i++){
+			types[7 + i] = ColumnarFile.INT;
+			types[7 + algorithms + i] = ColumnarFile.STRING;
+		}
+		return types;
+	}
+	
+	/**
+	 * Writes the records of the candidates from the cached results. Methods have no target counts
+	 * and are never inside loops, callsites without a cached target count have -1 targets.
+	 */
+	public static void write(ResultCache cache, Q candidateMethods, Q candidateCallsites, File output, Format format) throws IOException {
+		ResultStore results = cache.getResults();
+		CallGraphAlgorithm[] algorithms = CallGraphAlgorithm.values();
+		BitSet[][] methodResults = getResults(results, algorithms, METHOD_CATEGORIES);
+		BitSet[][] callsiteResults = getResults(results, algorithms, CALLSITE_CATEGORIES);
+		BitSet callsitesInLoops = results.get(ResolverPipeline.CALLSITE_IN_LOOP);
+		
+		NodeKeys.KeyCache keyCache = new NodeKeys.KeyCache();
+		RecordWriter writer = format == Format.BINARY ? new ColumnarRecordWriter(output) : new CsvRecordWriter(output);
+		try {
+			Object[] record = new Object[7 + 2 * algorithms.length];
+			for(Node method : candidateMethods.eval().nodes()){
+				Node type = Common.toQ(method).parent().eval().nodes().one();
+				int id = results.getNodeIndex().getId(method);
+				setIdentity(record, keyCache, METHOD, method, NodeKeys.getSignature(method), type == null ? "" : NodeKeys.getSignature(type));
+				record[6] = 0;
+				for(int i=0; i<algorithms.length; i++){
+					record[7 + i] = -1;
+					record[7 + algorithms.length + i] = getCategories(methodResults[i], METHOD_CATEGORIES, id);
+				}
+				writer.write(record);
+			}
+			for(Node callsite : candidateCallsites.eval().nodes()){
+				Node caller = CommonQueries.getContainingFunction(callsite);
+				int id = results.getNodeIndex().getId(callsite);
+				setIdentity(record, keyCache, CALLSITE, callsite, String.valueOf(callsite.getAttr(XCSG.name)), caller == null ? "" : NodeKeys.getSignature(caller));
+				record[6] = id >= 0 && callsitesInLoops.get(id) ? 1 : 0;
+				for(int i=0; i<algorithms.length; i++){
+					record[7 + i] = cache.getTargetCount(algorithms[i], id);
+					record[7 + algorithms.length + i] = getCategories(callsiteResults[i], CALLSITE_CATEGORIES, id);
+				}
+				writer.write(record);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+	
+	private static void setIdentity(Object[] record, NodeKeys.KeyCache keyCache, String kind, Node node, String name, String container){
+		record[0] = kind;
+		record[1] = keyCache.getKey(node);
+		record[2] = name;
+		record[3] = ReportFormat.getSourceFile(node);
+		record[4] = ReportFormat.getLine(node);
+		record[5] = container;
+	}
+	
+	/**
+	 * Returns [algorithm][category] result sets
+	 */
+	private static BitSet[][] getResults(ResultStore results, CallGraphAlgorithm[] algorithms, String[] categories){
+		BitSet[][] sets = new BitSet[algorithms.length][categories.length];
+		for(int i=0; i<algorithms.length; i++){
+			for(int j=0; j<categories.length; j++){
+				sets[i][j] = results.get(algorithms[i].getTag(categories[j]));
+			}
+		}
+		return sets;
+	}
+	
+	/**
+	 * Returns the categories containing the node separated by "|", for example "SHOULD-BE-STATIC|REWRITE"
+	 */
+	private static String getCategories(BitSet[] sets, String[] categories, int id){
+		if(id < 0){
+			return "";
+		}
+		StringBuilder result = new StringBuilder();
+		for(int i=0; i<categories.length; i++){
+			if(sets[i].get(id)){
+				if(result.length() > 0){
+					result.append("|");
+				}
+				result.append(categories[i]);
+			}
+		}
+		return result.toString();
+	}
+	
+	private static interface RecordWriter {
+		void write(Object[] record) throws IOException;
+		void close() throws IOException;
+	}
+	
+	private static class ColumnarRecordWriter implements RecordWriter {
+		private final ColumnarFile.Writer writer;
+		
+		private ColumnarRecordWriter(File output) throws IOException {
+			writer = new ColumnarFile.Writer(output, getColumns().toArray(new String[0]), getTypes());
+		}
+		
+		@Override
+		public void write(Object[] record) throws IOException {
+			writer.writeRow(record);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+	
+	private static class CsvRecordWriter implements RecordWriter {
+		private final BufferedWriter writer;
+		
+		private CsvRecordWriter(File output) throws IOException {
+			writer = Files.newBufferedWriter(output.toPath(), StandardCharsets.UTF_8);
+			write(getColumns().toArray());
+		}
+		
+		@Override
+		public void write(Object[] record) throws IOException {
+			for(int i=0; i<record.length; i++){
+				if(i > 0){
+					writer.write(',');
+				}
+				writer.write(ReportFormat.quote(String.valueOf(record[i])));
+			}
+			writer.write('\n');
+		}
+		
+		@Override
+		public void close() throws IOException {
+			writer.close();
+		}
+	}
+	
+}
@@ -0,0 +1,149 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Resolves callsites with the cheapest call graph algorithm that finds a single target. 
+ * Callsites CHA cannot resolve are passed to RRTA and only the callsites RRTA cannot 
+ * resolve are passed to 0CFA, a more precise algorithm never finds more targets than 
+ * a less precise one so callsites without any target are not passed on. A stage only 
+ * runs if callsites are left for it, but it then builds its algorithm's whole-program 
+ * call graph however few callsites reached it.
+ */
+public class CascadeResolver {
+
+	public static final String CASCADE_RESOLVED = "CASCADE-RESOLVED";
+	public static final String CASCADE_UNRESOLVED = "CASCADE-UNRESOLVED";
+	
+	/**
+	 * Reported for callsites no algorithm resolved to a single target
+	 */
+	public static final String UNRESOLVED = "UNRESOLVED";
+	
+	/**
+	 * The algorithm that resolved each callsite
+	 */
+	public static class CascadeResult {
+		private final Map<Node,CallGraphAlgorithm> resolutions = new HashMap<Node,CallGraphAlgorithm>();
+		private final EnumMap<CallGraphAlgorithm,Integer> analyzed = new EnumMap<CallGraphAlgorithm,Integer>(CallGraphAlgorithm.class);
+		private final EnumMap<CallGraphAlgorithm,Long> times = new EnumMap<CallGraphAlgorithm,Long>(CallGraphAlgorithm.class);
+		private final List<Node> unresolved = new ArrayList<Node>();
+		
+		/**
+		 * Returns the cheapest algorithm that resolved the callsite to a single target or null if none did
+		 */
+		public CallGraphAlgorithm getResolvingAlgorithm(Node callsite){
+			return resolutions.get(callsite);
+		}
+		
+		public List<Node> getResolved(CallGraphAlgorithm algorithm){
+			List<Node> resolved = new ArrayList<Node>();
+			for(Map.Entry<Node,CallGraphAlgorithm> resolution : resolutions.entrySet()){
+				if(resolution.getValue() == algorithm){
+					resolved.add(resolution.getKey());
+				}
+			}
+			return resolved;
+		}
+		
+		public List<Node> getUnresolved(){
+			return unresolved;
+		}
+		
+		/**
+		 * Returns the number of callsites the algorithm was asked to resolve, 0 if it never ran
+		 */
+		public int getAnalyzedCount(CallGraphAlgorithm algorithm){
+			Integer count = analyzed.get(algorithm);
+			return count == null ? 0 : count;
+		}
+		
+		/**
+		 * Returns the milliseconds spent in the algorithm's stage including building its call graph
+		 */
+		public long getTime(CallGraphAlgorithm algorithm){
+			Long time = times.get(algorithm);
+			return time == null ? 0 : TimeUnit.NANOSECONDS.toMillis(time);
+		}
+		
+		/**
+		 * Adds the resolutions to the store as "<algorithm>-CASCADE-RESOLVED" and "CASCADE-UNRESOLVED"
+		 */
+		public void addTo(ResultStore results){
+			for(Map.Entry<Node,CallGraphAlgorithm> resolution : resolutions.entrySet()){
+				results.add(resolution.getValue().getTag(CASCADE_RESOLVED), resolution.getKey());
+			}
+			for(Node callsite : unresolved){
+				results.add(CASCADE_UNRESOLVED, callsite);
+			}
+		}
+	}
+	
+	private final NodeIndex nodeIndex;
+	private Instrumentation instrumentation = Instrumentation.DISABLED;
+	
+	public CascadeResolver(NodeIndex nodeIndex){
+		this.nodeIndex = nodeIndex;
+	}
+	
+	/**
+	 * Records each stage's phases as "<algorithm> <phase>", for example "RRTA Cascade Resolution"
+	 */
+	public void setInstrumentation(Instrumentation instrumentation){
+		this.instrumentation = instrumentation;
+	}
+	
+	public CascadeResult resolve(AtlasSet<Node> candidateCallsites){
+		CascadeResult result = new CascadeResult();
+		AtlasSet<Node> remaining = candidateCallsites;
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			if(remaining.isEmpty()){
+				break;
+			}
+			long start = System.nanoTime();
+			result.analyzed.put(algorithm, (int) remaining.size());
+			
+			// the stage only runs if there is something left to resolve, but then builds the whole-program call graph
+			Instrumentation.Timer timer = instrumentation.start(algorithm.getName() + " " + Instrumentation.CALL_GRAPH_CONSTRUCTION);
+			algorithm.getCallGraph();
+			timer.stop();
+			timer = instrumentation.start(algorithm.getName() + " " + Instrumentation.CALLSITE_INDEXING);
+			CallsiteIndex callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), nodeIndex, Common.toQ(remaining));
+			timer.stop();
+			timer = instrumentation.start(algorithm.getName() + " " + Instrumentation.CASCADE_RESOLUTION);
+			AtlasSet<Node> unresolved = new AtlasHashSet<Node>();
+			int resolved = 0;
+			for(Node callsite : remaining){
+				int targets = callsites.getTargetCount(callsite);
+				if(targets == 1){
+					result.resolutions.put(callsite, algorithm);
+					resolved++;
+				} else if(targets == 0){
+					result.unresolved.add(callsite);
+				} else {
+					unresolved.add(callsite);
+				}
+			}
+			remaining = unresolved;
+			timer.stop();
+			result.times.put(algorithm, System.nanoTime() - start);
+			Log.info(algorithm.getName() + " resolved " + resolved + " of " + result.getAnalyzedCount(algorithm) + " callsites");
+		}
+		for(Node callsite : remaining){
+			result.unresolved.add(callsite);
+		}
+		return result;
+	}
+	
+}
@@ -0,0 +1,78 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+
+/**
+ * The methods and callsites a single call graph algorithm placed in each result category
+ */
+public class Classification {
+
+	public static final String SHOULD_BE_STATIC = "SHOULD-BE-STATIC";
+	public static final String TRANSFORMABLE = "TRANSFORMABLE";
+	public static final String REWRITE = "REWRITE";
+	public static final String CLONE = "CLONE";
+	public static final String UNCHANGED = "UNCHANGED";
+	public static final String CALLSITE_TRANSFORMABLE = "CALLSITETRANSFORMABLE";
+	public static final String CALLSITE_GUARDABLE = "CALLSITEGUARDABLE";
+	
+	private final CallGraphAlgorithm algorithm;
+	private final Map<String,List<Node>> results = new LinkedHashMap<String,List<Node>>();
+	
+	public Classification(CallGraphAlgorithm algorithm){
+		this.algorithm = algorithm;
+	}
+	
+	public CallGraphAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+	
+	public void add(String category, Node node){
+		List<Node> nodes = results.get(category);
+		if(nodes == null){
+			nodes = new ArrayList<Node>();
+			results.put(category, nodes);
+		}
+		nodes.add(node);
+	}
+	
+	public List<String> getCategories(){
+		return new ArrayList<String>(results.keySet());
+	}
+	
+	/**
+	 * Returns the nodes in the category in the order they were classified
+	 */
+	public List<Node> get(String category){
+		List<Node> nodes = results.get(category);
+		return nodes == null ? new ArrayList<Node>() : nodes;
+	}
+	
+	/**
+	 * Appends the results of another classification of the same algorithm, preserving order
+	 */
+	public void addAll(Classification classification){
+		for(Map.Entry<String,List<Node>> entry : classification.results.entrySet()){
+			for(Node node : entry.getValue()){
+				add(entry.getKey(), node);
+			}
+		}
+	}
+	
+	/**
+	 * Tags each classified node with its algorithm prefixed category, for example "CHA-REWRITE"
+	 */
+	public void tag(){
+		for(Map.Entry<String,List<Node>> entry : results.entrySet()){
+			String tag = algorithm.getTag(entry.getKey());
+			for(Node node : entry.getValue()){
+				node.tag(tag);
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,386 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Classifies candidate methods and callsites under a single call graph algorithm,
+ * reading the graph through a GraphBackend so the same rules run on Atlas or on
+ * an exported CSR graph
+ */
+public class Classifier {
+
+	// candidates per fork join task before a task stops splitting
+	private static final int TASK_THRESHOLD = 256;
+	
+	private final CallGraphAlgorithm algorithm;
+	private final GraphBackend graph;
+	private final FieldAccessIndex fieldAccesses;
+	private int parallelism = 1;
+	private int guardLimit = ResolverPreferences.getGuardLimit();
+	private Instrumentation instrumentation = Instrumentation.DISABLED;
+	
+	/**
+	 * Creates a classifier that reads the graph through the backend, 
+	 * the field access index must number nodes with the backend's ids
+	 */
+	public Classifier(CallGraphAlgorithm algorithm, GraphBackend graph, FieldAccessIndex fieldAccesses){
+		this.algorithm = algorithm;
+		this.graph = graph;
+		this.fieldAccesses = fieldAccesses;
+	}
+	
+	/**
+	 * Creates a classifier for the algorithm, the type hierarchies and field accesses do not 
+	 * depend on the algorithm and may be shared between classifiers. The callsite index and 
+	 * field access index must share a node index.
+	 */
+	public Classifier(CallGraphAlgorithm algorithm, CallsiteIndex callsites, TypeHierarchyCache typeHierarchies, FieldAccessIndex fieldAccesses){
+		this(algorithm, createBackend(algorithm, callsites, typeHierarchies), fieldAccesses);
+		if(fieldAccesses.getNodeIndex() != callsites.getNodeIndex()){
+			throw new IllegalArgumentException("Callsite index and field access index do not share a node index");
+		}
+	}
+	
+	public Classifier(CallGraphAlgorithm algorithm, CallsiteIndex callsites){
+		this(algorithm, callsites, TypeHierarchyCache.getInstance(), FieldAccessIndex.build(callsites.getNodeIndex(), TypeHierarchyCache.getInstance()));
+	}
+	
+	public Classifier(CallGraphAlgorithm algorithm){
+		this(algorithm, CallsiteIndex.build(algorithm.getPerControlFlowTag(), new NodeIndex()));
+	}
+	
+	private static AtlasGraphBackend createBackend(CallGraphAlgorithm algorithm, CallsiteIndex callsites, TypeHierarchyCache typeHierarchies){
+		AtlasGraphBackend graph = new AtlasGraphBackend(callsites.getNodeIndex(), typeHierarchies);
+		graph.setCallsiteIndex(algorithm, callsites);
+		return graph;
+	}
+	
+	public CallGraphAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+	
+	public int getParallelism(){
+		return parallelism;
+	}
+	
+	/**
+	 * Sets the number of worker threads used to classify candidates, 1 classifies sequentially.
+	 * Workers only read the graph, results are tagged afterwards on the calling thread.
+	 */
+	public void setParallelism(int parallelism){
+		if(parallelism < 1){
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+	
+	public int getGuardLimit(){
+		return guardLimit;
+	}
+	
+	/**
+	 * Sets the largest number of targets of a guardable callsite, see ResolverPreferences.setGuardLimit(int)
+	 */
+	public void setGuardLimit(int guardLimit){
+		this.guardLimit = guardLimit;
+	}
+	
+	/**
+	 * Records the classification phases as "<algorithm> <phase>", for example "CHA Should Be Static",
+	 * timed once per batch of candidates a worker classifies
+	 */
+	public void setInstrumentation(Instrumentation instrumentation){
+		this.instrumentation = instrumentation;
+	}
+	
+	public GraphBackend getGraph(){
+		return graph;
+	}
+	
+	/**
+	 * Computes the should be static, rewrite/clone/unchanged and callsite 
+	 * transformable and guardable results in a single traversal of the candidates
+	 */
+	public Classification classify(Q candidateMethods, Q candidateCallsites){
+		return classify(candidateMethods, candidateCallsites, true, true);
+	}
+	
+	public Classification classifyShouldBeStatic(Q candidateMethods){
+		return classify(candidateMethods, Common.empty(), true, false);
+	}
+	
+	public Classification classifyMethods(Q candidateMethods){
+		return classify(candidateMethods, Common.empty(), false, true);
+	}
+	
+	public Classification classifyCallsites(Q candidateCallsites){
+		return classify(Common.empty(), candidateCallsites, false, false);
+	}
+	
+	/**
+	 * Classifies candidates given as backend node ids, returning the ids in each category 
+	 * (for example Classification.REWRITE). Works with any graph backend.
+	 */
+	public Map<String,BitSet> classify(int[] candidateMethods, int[] candidateCallsites){
+		return classify(candidateMethods, candidateCallsites, true, true);
+	}
+	
+	public Map<String,BitSet> classifyShouldBeStatic(int[] candidateMethods){
+		return classify(candidateMethods, new int[0], true, false);
+	}
+	
+	public Map<String,BitSet> classifyMethods(int[] candidateMethods){
+		return classify(candidateMethods, new int[0], false, true);
+	}
+	
+	public Map<String,BitSet> classifyCallsites(int[] candidateCallsites){
+		return classify(new int[0], candidateCallsites, false, false);
+	}
+	
+	private Classification classify(Q candidateMethods, Q candidateCallsites, boolean shouldBeStatic, boolean transformations){
+		AtlasGraphBackend atlas = getAtlasGraph();
+		List<Node> methods = toList(Instrumentation.eval(candidateMethods).nodes());
+		List<Node> callsites = toList(Instrumentation.eval(candidateCallsites).nodes());
+		int[] methodIds = toIds(methods, atlas);
+		int[] callsiteIds = toIds(callsites, atlas);
+		Map<String,BitSet> results = classify(methodIds, callsiteIds, shouldBeStatic, transformations);
+		
+		// report nodes in candidate order
+		Classification classification = new Classification(algorithm);
+		String[] methodCategories = { Classification.SHOULD_BE_STATIC, Classification.TRANSFORMABLE, 
+				Classification.REWRITE, Classification.CLONE, Classification.UNCHANGED };
+		for(int i=0; i<methods.size(); i++){
+			for(String category : methodCategories){
+				if(getResult(results, category).get(methodIds[i])){
+					classification.add(category, methods.get(i));
+				}
+			}
+		}
+		for(int i=0; i<callsites.size(); i++){
+			if(getResult(results, Classification.CALLSITE_TRANSFORMABLE).get(callsiteIds[i])){
+				classification.add(Classification.CALLSITE_TRANSFORMABLE, callsites.get(i));
+			} else if(getResult(results, Classification.CALLSITE_GUARDABLE).get(callsiteIds[i])){
+				classification.add(Classification.CALLSITE_GUARDABLE, callsites.get(i));
+			}
+		}
+		return classification;
+	}
+	
+	private Map<String,BitSet> classify(int[] methods, int[] callsites, boolean shouldBeStatic, boolean transformations){
+		if(parallelism == 1){
+			Map<String,BitSet> results = new LinkedHashMap<String,BitSet>();
+			classify(methods, callsites, 0, methods.length + callsites.length, shouldBeStatic, transformations, results);
+			return results;
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			return pool.invoke(new ClassificationTask(methods, callsites, 0, methods.length + callsites.length, shouldBeStatic, transformations));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * Classifies the candidates in [from,to) where methods are numbered before callsites.
+	 * Each phase is timed once for the whole range rather than per candidate, so timing
+	 * stays cheap next to the classification and workers rarely meet on a phase's statistics.
+	 */
+	private void classify(int[] methods, int[] callsites, int from, int to, boolean shouldBeStatic, boolean transformations, Map<String,BitSet> results){
+		int methodsTo = Math.min(to, methods.length);
+		if(shouldBeStatic && from < methodsTo){
+			Instrumentation.Timer timer = instrumentation.start(getPhase(Instrumentation.SHOULD_BE_STATIC));
+			for(int i=from; i<methodsTo; i++){
+				if(isShouldBeStatic(methods[i])){
+					getResult(results, Classification.SHOULD_BE_STATIC).set(methods[i]);
+				}
+			}
+			timer.stop();
+		}
+		if(transformations && from < methodsTo){
+			Instrumentation.Timer timer = instrumentation.start(getPhase(Instrumentation.METHOD_TAGGING));
+			for(int i=from; i<methodsTo; i++){
+				int method = methods[i];
+				String transformation = getTransformation(method);
+				if(!transformation.equals(Classification.UNCHANGED)){
+					getResult(results, Classification.TRANSFORMABLE).set(method);
+				}
+				getResult(results, transformation).set(method);
+			}
+			timer.stop();
+		}
+		int callsitesFrom = Math.max(from, methods.length);
+		if(callsitesFrom < to){
+			Instrumentation.Timer timer = instrumentation.start(getPhase(Instrumentation.CALLSITE_TAGGING));
+			for(int i=callsitesFrom; i<to; i++){
+				int callsite = callsites[i - methods.length];
+				if(isTransformable(callsite)){
+					getResult(results, Classification.CALLSITE_TRANSFORMABLE).set(callsite);
+				} else if(isGuardable(callsite)){
+					getResult(results, Classification.CALLSITE_GUARDABLE).set(callsite);
+				}
+			}
+			timer.stop();
+		}
+	}
+	
+	private static BitSet getResult(Map<String,BitSet> results, String category){
+		BitSet result = results.get(category);
+		if(result == null){
+			result = new BitSet();
+			results.put(category, result);
+		}
+		return result;
+	}
+	
+	private String getPhase(String phase){
+		return algorithm.getName() + " " + phase;
+	}
+	
+	/**
+	 * Classifies a range of candidates into its own result sets, which are merged with the other half's
+	 */
+	private class ClassificationTask extends RecursiveTask<Map<String,BitSet>> {
+		private static final long serialVersionUID = 1L;
+		
+		private final int[] methods;
+		private final int[] callsites;
+		private final int from;
+		private final int to;
+		private final boolean shouldBeStatic;
+		private final boolean transformations;
+		
+		private ClassificationTask(int[] methods, int[] callsites, int from, int to, boolean shouldBeStatic, boolean transformations){
+			this.methods = methods;
+			this.callsites = callsites;
+			this.from = from;
+			this.to = to;
+			this.shouldBeStatic = shouldBeStatic;
+			this.transformations = transformations;
+		}
+		
+		@Override
+		protected Map<String,BitSet> compute(){
+			if(to - from <= TASK_THRESHOLD){
+				Map<String,BitSet> results = new LinkedHashMap<String,BitSet>();
+				classify(methods, callsites, from, to, shouldBeStatic, transformations, results);
+				return results;
+			}
+			int middle = (from + to) >>> 1;
+			ClassificationTask left = new ClassificationTask(methods, callsites, from, middle, shouldBeStatic, transformations);
+			ClassificationTask right = new ClassificationTask(methods, callsites, middle, to, shouldBeStatic, transformations);
+			left.fork();
+			Map<String,BitSet> result = right.compute();
+			Map<String,BitSet> results = left.join();
+			for(Map.Entry<String,BitSet> entry : result.entrySet()){
+				getResult(results, entry.getKey()).or(entry.getValue());
+			}
+			return results;
+		}
+	}
+	
+	private AtlasGraphBackend getAtlasGraph(){
+		if(!(graph instanceof AtlasGraphBackend)){
+			throw new IllegalStateException("Classifying Atlas nodes requires an Atlas graph backend");
+		}
+		return (AtlasGraphBackend) graph;
+	}
+	
+	private static List<Node> toList(AtlasSet<Node> nodes){
+		List<Node> list = new ArrayList<Node>((int) nodes.size());
+		for(Node node : nodes){
+			list.add(node);
+		}
+		return list;
+	}
+	
+	private static int[] toIds(List<Node> nodes, AtlasGraphBackend graph){
+		int[] ids = new int[nodes.size()];
+		for(int i=0; i<ids.length; i++){
+			ids[i] = graph.getId(nodes.get(i));
+		}
+		return ids;
+	}
+	
+	public boolean isShouldBeStatic(Node method){
+		return isShouldBeStatic(getAtlasGraph().getId(method));
+	}
+	
+	/**
+	 * Returns true if the method reads and writes no instance variables, itself or 
+	 * through the static methods it calls, and makes no calls to instance methods 
+	 * of its type hierarchy
+	 */
+	public boolean isShouldBeStatic(int method){
+		int type = graph.getParent(method);
+		if(type < 0){
+			return false;
+		}
+		// ignore the method itself because a direct recursion could still be written statically
+		for(int callsite : graph.getDeclarations(method, XCSG.DynamicDispatchCallSite)){
+			for(int target : graph.getTargets(algorithm, callsite)){
+				if(target != method && graph.hasInstanceMethod(type, target)){
+					return false;
+				}
+			}
+		}
+		
+		return !fieldAccesses.touchesInstanceState(method);
+	}
+	
+	public String getTransformation(Node method){
+		return getTransformation(getAtlasGraph().getId(method));
+	}
+	
+	/**
+	 * Returns REWRITE if every callsite that may dispatch to the method has it as its only target,
+	 * CLONE if some of the callsites are polymorphic and UNCHANGED if nothing dispatches to it
+	 */
+	public String getTransformation(int method){
+		int[] methodCallsites = graph.getCallsites(algorithm, method);
+		if(methodCallsites.length == 0){
+			return Classification.UNCHANGED;
+		}
+		for(int callsite : methodCallsites){
+			if(graph.getTargetCount(algorithm, callsite) != 1){
+				return Classification.CLONE;
+			}
+		}
+		return Classification.REWRITE;
+	}
+	
+	public boolean isTransformable(Node callsite){
+		return isTransformable(getAtlasGraph().getId(callsite));
+	}
+	
+	/**
+	 * Returns true if the callsite has exactly one possible target
+	 */
+	public boolean isTransformable(int callsite){
+		return graph.getTargetCount(algorithm, callsite) == 1;
+	}
+	
+	public boolean isGuardable(Node callsite){
+		return isGuardable(getAtlasGraph().getId(callsite));
+	}
+	
+	/**
+	 * Returns true if the callsite has at least two and at most the guard limit possible targets
+	 */
+	public boolean isGuardable(int callsite){
+		int targets = graph.getTargetCount(algorithm, callsite);
+		return targets >= 2 && targets <= guardLimit;
+	}
+	
+}
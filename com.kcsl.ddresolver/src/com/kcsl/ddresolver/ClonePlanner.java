@@ -0,0 +1,239 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Chooses which CLONE methods to copy within a code size budget. Each clone costs its
+ * bytecode size plus the prologue BytecodeRewriter adds to static copies and is worth the
+ * CALLSITETRANSFORMABLE callsites it turns into static dispatches, counted once each or
+ * weighted by their loop depth. The most valuable subset is found as a 0/1 knapsack.
+ */
+public class ClonePlanner {
+	
+	/**
+	 * Bytes the receiver check and cast add to the start of each static copy
+	 */
+	public static final int COPY_PROLOGUE_SIZE = 10;
+	
+	// bounds the knapsack table, sizes are rounded up to coarser units on larger inputs
+	private static final long MAX_TABLE_CELLS = 50_000_000;
+	
+	private final BytecodeSizes sizes;
+	private HotnessEstimator loopDepths = null;
+	
+	public ClonePlanner(BytecodeSizes sizes){
+		this.sizes = sizes;
+	}
+	
+	/**
+	 * Weights each callsite by HotnessEstimator.LOOP_ITERATIONS to the power of its loop
+	 * depth instead of counting it once, null counts callsites
+	 */
+	public void setLoopDepthWeighting(HotnessEstimator loopDepths){
+		this.loopDepths = loopDepths;
+	}
+	
+	/**
+	 * A chosen subset of the CLONE methods
+	 */
+	public static class ClonePlan {
+		
+		private final CallGraphAlgorithm algorithm;
+		private final long budget;
+		private final Map<Node,Integer> copySizes;
+		private final Map<Node,List<Node>> callsites;
+		private final Map<Node,Double> benefits;
+		private final Set<Node> selected = new HashSet<Node>();
+		
+		private ClonePlan(CallGraphAlgorithm algorithm, long budget, Map<Node,Integer> copySizes, Map<Node,List<Node>> callsites, Map<Node,Double> benefits){
+			this.algorithm = algorithm;
+			this.budget = budget;
+			this.copySizes = copySizes;
+			this.callsites = callsites;
+			this.benefits = benefits;
+		}
+		
+		public long getBudget(){
+			return budget;
+		}
+		
+		/**
+		 * Returns the CLONE methods whose size is known, selected or not
+		 */
+		public List<Node> getCandidates(){
+			return new ArrayList<Node>(copySizes.keySet());
+		}
+		
+		public boolean isSelected(Node method){
+			return selected.contains(method);
+		}
+		
+		/**
+		 * Returns the bytes the selected copies add to the code
+		 */
+		public long getCodeGrowth(){
+			long growth = 0;
+			for(Node method : selected){
+				growth += copySizes.get(method);
+			}
+			return growth;
+		}
+		
+		/**
+		 * Returns the number of callsites the selected copies turn into static dispatches
+		 */
+		public int getResolvedCallsites(){
+			int resolved = 0;
+			for(Node method : selected){
+				resolved += callsites.get(method).size();
+			}
+			return resolved;
+		}
+		
+		/**
+		 * Returns the summed benefit of the selected copies
+		 */
+		public double getBenefit(){
+			double benefit = 0;
+			for(Node method : selected){
+				benefit += benefits.get(method);
+			}
+			return benefit;
+		}
+		
+		/**
+		 * Returns a copy of the classification without the CLONE methods that were not
+		 * selected, so RewritePlan.build leaves them and their callsites unchanged
+		 */
+		public Classification apply(Classification classification){
+			Classification planned = new Classification(classification.getAlgorithm());
+			Set<Node> clones = new HashSet<Node>(classification.get(Classification.CLONE));
+			for(String category : classification.getCategories()){
+				for(Node node : classification.get(category)){
+					boolean methodCategory = category.equals(Classification.CLONE) || category.equals(Classification.TRANSFORMABLE);
+					if(!methodCategory || !clones.contains(node) || selected.contains(node)){
+						planned.add(category, node);
+					}
+				}
+			}
+			return planned;
+		}
+		
+		/**
+		 * Writes each candidate's copy size, callsites, benefit and whether it was selected
+		 */
+		public void writeReport(File output) throws IOException {
+			FileWriter fw = new FileWriter(output);
+			try {
+				fw.write("Method,Algorithm,Copy Size,Resolved Callsites,Benefit,Selected\n");
+				for(Node method : copySizes.keySet()){
+					fw.write(ReportFormat.quote(NodeKeys.getSignature(method)) + "," + algorithm.getName() + ","
+							+ copySizes.get(method) + "," + callsites.get(method).size() + ","
+							+ ReportFormat.format(benefits.get(method)) + "," + selected.contains(method) + "\n");
+				}
+			} finally {
+				fw.close();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Selects the CLONE methods of the classification that save the most within the budget
+	 * (in bytes), CLONE methods without a known bytecode size are never selected
+	 */
+	public ClonePlan plan(Classification classification, long budget){
+		CallGraphAlgorithm algorithm = classification.getAlgorithm();
+		Q callGraph = Common.universe().edges(algorithm.getPerControlFlowTag());
+		Map<Node,List<Node>> callsites = new LinkedHashMap<Node,List<Node>>();
+		for(Node method : classification.get(Classification.CLONE)){
+			if(sizes.getCodeLength(method) >= 0 && !method.taggedWith(XCSG.abstractMethod)){
+				callsites.put(method, new ArrayList<Node>());
+			}
+		}
+		for(Node callsite : classification.get(Classification.CALLSITE_TRANSFORMABLE)){
+			List<Node> methodCallsites = callsites.get(callGraph.successors(Common.toQ(callsite)).eval().nodes().one());
+			if(methodCallsites != null){
+				methodCallsites.add(callsite);
+			}
+		}
+		
+		Map<Node,Integer> copySizes = new LinkedHashMap<Node,Integer>();
+		Map<Node,Double> benefits = new LinkedHashMap<Node,Double>();
+		for(Map.Entry<Node,List<Node>> method : callsites.entrySet()){
+			copySizes.put(method.getKey(), sizes.getCodeLength(method.getKey()) + COPY_PROLOGUE_SIZE);
+			double benefit = 0;
+			for(Node callsite : method.getValue()){
+				benefit += loopDepths == null ? 1 : Math.pow(HotnessEstimator.LOOP_ITERATIONS, loopDepths.getLoopDepth(callsite));
+			}
+			benefits.put(method.getKey(), benefit);
+		}
+		
+		ClonePlan plan = new ClonePlan(algorithm, budget, copySizes, callsites, benefits);
+		plan.selected.addAll(select(new ArrayList<Node>(copySizes.keySet()), copySizes, benefits, budget));
+		return plan;
+	}
+	
+	/**
+	 * Solves the 0/1 knapsack over the candidates, rounding sizes up to units of
+	 * budget / capacity bytes so the selection never exceeds the budget
+	 */
+	private static List<Node> select(List<Node> candidates, Map<Node,Integer> copySizes, Map<Node,Double> benefits, long budget){
+		long total = 0;
+		for(Node method : candidates){
+			total += copySizes.get(method);
+		}
+		if(total <= budget){
+			return candidates;
+		}
+		if(budget <= 0 || candidates.isEmpty()){
+			return Collections.emptyList();
+		}
+		int capacity = (int) Math.max(1, Math.min(budget, MAX_TABLE_CELLS / candidates.size()));
+		double unit = (double) budget / capacity;
+		int[] costs = new int[candidates.size()];
+		for(int i=0; i<costs.length; i++){
+			costs[i] = (int) Math.ceil(copySizes.get(candidates.get(i)) / unit);
+		}
+		
+		double[] best = new double[capacity + 1];
+		BitSet[] taken = new BitSet[candidates.size()];
+		for(int i=0; i<costs.length; i++){
+			taken[i] = new BitSet(capacity + 1);
+			double benefit = benefits.get(candidates.get(i));
+			for(int c=capacity; c>=costs[i]; c--){
+				if(best[c - costs[i]] + benefit > best[c]){
+					best[c] = best[c - costs[i]] + benefit;
+					taken[i].set(c);
+				}
+			}
+		}
+		
+		List<Node> selected = new ArrayList<Node>();
+		int c = capacity;
+		for(int i=costs.length-1; i>=0; i--){
+			if(taken[i].get(c)){
+				selected.add(candidates.get(i));
+				c -= costs[i];
+			}
+		}
+		Collections.reverse(selected);
+		return selected;
+	}
+	
+}
@@ -0,0 +1,277 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A table of int and string columns stored column by column. Rows are buffered into row
+ * groups of up to ROW_GROUP_SIZE rows and each group is written one column after another,
+ * so writing and reading hold a single group however many rows the table has. Strings
+ * are dictionary encoded per row group, repeated values such as file names are stored once.
+ *
+ * Layout (big endian): magic, version, column count, each column's type and name, then
+ * the row groups: row count followed by each column, either its int values or its
+ * dictionary (entry count, entries) and the ints indexing it. A row count of 0 ends the table.
+ */
+public class ColumnarFile {
+	
+	private static final int MAGIC = 0x44445244; // DDRD
+	private static final int VERSION = 1;
+	
+	public static final byte INT = 0;
+	public static final byte STRING = 1;
+	
+	/**
+	 * The largest number of rows buffered before a row group is written
+	 */
+	public static final int ROW_GROUP_SIZE = 65536;
+	
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	/**
+	 * Streams rows into a columnar file through a buffered file channel
+	 */
+	public static class Writer implements Closeable {
+		
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final byte[] types;
+		
+		// [column][row], string columns hold dictionary ids
+		private final int[][] values;
+		private final Map<String,Integer>[] dictionaries;
+		private int rows = 0;
+		
+		@SuppressWarnings("unchecked")
+		public Writer(File file, String[] names, byte[] types) throws IOException {
+			if(names.length != types.length){
+				throw new IllegalArgumentException("Expected a type for each of the " + names.length + " columns");
+			}
+			this.types = types.clone();
+			this.values = new int[types.length][ROW_GROUP_SIZE];
+			this.dictionaries = new Map[types.length];
+			for(int column=0; column<types.length; column++){
+				if(types[column] == STRING){
+					dictionaries[column] = new LinkedHashMap<String,Integer>();
+				} else if(types[column] != INT){
+					throw new IllegalArgumentException("Unknown type " + types[column] + " of column " + names[column]);
+				}
+			}
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			putInt(MAGIC);
+			putInt(VERSION);
+			putInt(names.length);
+			for(int column=0; column<names.length; column++){
+				reserve(1);
+				buffer.put(types[column]);
+				putString(names[column]);
+			}
+		}
+		
+		/**
+		 * Adds a row, int columns take Numbers and string columns take Strings (null is written as "")
+		 */
+		public void writeRow(Object... row) throws IOException {
+			if(row.length != types.length){
+				throw new IllegalArgumentException("Expected " + types.length + " values, found " + row.length);
+			}
+			for(int column=0; column<row.length; column++){
+				if(types[column] == INT){
+					values[column][rows] = ((Number) row[column]).intValue();
+				} else {
+					String value = row[column] == null ? "" : row[column].toString();
+					Integer id = dictionaries[column].get(value);
+					if(id == null){
+						id = dictionaries[column].size();
+						dictionaries[column].put(value, id);
+					}
+					values[column][rows] = id;
+				}
+			}
+			if(++rows == ROW_GROUP_SIZE){
+				writeRowGroup();
+			}
+		}
+		
+		private void writeRowGroup() throws IOException {
+			putInt(rows);
+			for(int column=0; column<types.length; column++){
+				if(types[column] == STRING){
+					putInt(dictionaries[column].size());
+					for(String value : dictionaries[column].keySet()){
+						putString(value);
+					}
+					dictionaries[column].clear();
+				}
+				for(int row=0; row<rows; row++){
+					putInt(values[column][row]);
+				}
+			}
+			rows = 0;
+		}
+		
+		private void putInt(int value) throws IOException {
+			reserve(4);
+			buffer.putInt(value);
+		}
+		
+		private void putString(String value) throws IOException {
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			for(int offset=0; offset<bytes.length; ){
+				reserve(1);
+				int length = Math.min(buffer.remaining(), bytes.length - offset);
+				buffer.put(bytes, offset, length);
+				offset += length;
+			}
+		}
+		
+		/**
+		 * Drains the buffer to the channel if fewer than the given number of bytes are left
+		 */
+		private void reserve(int bytes) throws IOException {
+			if(buffer.remaining() < bytes){
+				drain();
+			}
+		}
+		
+		private void drain() throws IOException {
+			buffer.flip();
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		
+		/**
+		 * Writes the buffered rows and the end of the table and closes the file
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				if(rows > 0){
+					writeRowGroup();
+				}
+				putInt(0);
+				drain();
+			} finally {
+				channel.close();
+			}
+		}
+		
+	}
+	
+	/**
+	 * Reads the rows of a columnar file one row group at a time
+	 */
+	public static class Reader implements Closeable {
+		
+		private final DataInputStream in;
+		private final String[] names;
+		private final byte[] types;
+		
+		// [column][row] of the current row group
+		private final Object[][] values;
+		private int rows = 0;
+		private int row = 0;
+		private boolean ended = false;
+		
+		public Reader(File file) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(FileChannel.open(file.toPath(), StandardOpenOption.READ)), BUFFER_SIZE));
+			try {
+				if(in.readInt() != MAGIC || in.readInt() != VERSION){
+					throw new IOException(file.getName() + " is not a columnar file of version " + VERSION);
+				}
+				int columns = in.readInt();
+				names = new String[columns];
+				types = new byte[columns];
+				for(int column=0; column<columns; column++){
+					types[column] = in.readByte();
+					names[column] = readString();
+				}
+			} catch (IOException e) {
+				in.close();
+				throw e;
+			}
+			values = new Object[names.length][];
+		}
+		
+		public String[] getColumns(){
+			return names.clone();
+		}
+		
+		public byte[] getTypes(){
+			return types.clone();
+		}
+		
+		/**
+		 * Returns the next row as Integers and Strings, null after the last row
+		 */
+		public Object[] readRow() throws IOException {
+			if(row == rows){
+				if(ended || !readRowGroup()){
+					return null;
+				}
+			}
+			Object[] result = new Object[names.length];
+			for(int column=0; column<names.length; column++){
+				result[column] = values[column][row];
+			}
+			row++;
+			return result;
+		}
+		
+		private boolean readRowGroup() throws IOException {
+			rows = in.readInt();
+			row = 0;
+			if(rows == 0){
+				ended = true;
+				return false;
+			}
+			for(int column=0; column<names.length; column++){
+				values[column] = new Object[rows];
+				if(types[column] == STRING){
+					String[] dictionary = new String[in.readInt()];
+					for(int i=0; i<dictionary.length; i++){
+						dictionary[i] = readString();
+					}
+					for(int i=0; i<rows; i++){
+						values[column][i] = dictionary[in.readInt()];
+					}
+				} else {
+					for(int i=0; i<rows; i++){
+						values[column][i] = in.readInt();
+					}
+				}
+			}
+			return true;
+		}
+		
+		private String readString() throws IOException {
+			int length = in.readInt();
+			if(length < 0){
+				throw new IOException("Negative string length " + length);
+			}
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+		
+	}
+	
+}
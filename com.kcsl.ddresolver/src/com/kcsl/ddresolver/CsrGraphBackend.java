@@ -0,0 +1,541 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.ensoftcorp.atlas.core.db.graph.Edge;
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * Holds a program graph in compressed sparse row arrays: each relationship is an offsets
+ * array indexed by node id into a values array. Node tags are bits of a per node mask
+ * over a table of at most 32 tags. Graphs are created with a Builder, exported from
+ * Atlas with export(Q, File) and read back with load(File), which needs no Atlas.
+ */
+public class CsrGraphBackend implements GraphBackend {
+	
+	private static final int MAGIC = 0x44444742; // DDGB
+	private static final int VERSION = 3; // 3 parents nested types by their enclosing method or type
+	
+	/**
+	 * Tags the exported types, methods and instance variables outside the context, such
+	 * as library supertypes and their methods
+	 */
+	public static final String LIBRARY = "ddresolver.library";
+	
+	/**
+	 * Tags recorded for nodes exported from Atlas
+	 */
+	private static final String[] EXPORTED_TAGS = { XCSG.Type, XCSG.Method, XCSG.InstanceMethod, XCSG.ClassMethod, XCSG.Constructor, 
+			XCSG.privateVisibility, XCSG.InstanceVariable, XCSG.CallSite, XCSG.DynamicDispatchCallSite, XCSG.StaticDispatchCallSite, 
+			XCSG.DataFlow_Node };
+	
+	private final String[] tagNames;
+	private final int[] tags;
+	private final int[] parents;
+	private final int[][] children;
+	private final int[][] declarations;
+	private final int[][] directSupertypes;
+	private final AtomicReferenceArray<int[]> supertypes;
+	private final AtomicReferenceArray<int[]> instanceMethods;
+	private final Map<CallGraphAlgorithm,CallsiteIndex> callsiteIndexes;
+	private final int[][] dataFlowSuccessors;
+	private final int[][] dataFlowPredecessors;
+	
+	// the builder is kept so the graph can be saved with the edges it was built from
+	private final Builder builder;
+	
+	private CsrGraphBackend(Builder builder){
+		this.builder = builder;
+		int size = builder.size;
+		this.tagNames = builder.tagNames.toArray(new String[builder.tagNames.size()]);
+		this.tags = Arrays.copyOf(builder.tags, size);
+		this.parents = Arrays.copyOf(builder.parents, size);
+		
+		long[] childPairs = new long[size];
+		int childCount = 0;
+		for(int node=0; node<size; node++){
+			if(parents[node] >= 0){
+				childPairs[childCount++] = ((long) parents[node] << 32) | node;
+			}
+		}
+		this.children = Csr.forward(childPairs, childCount, size);
+		
+		// declarations belong to every enclosing method, those of local and anonymous
+		// classes too since their types are parented by the method declaring them
+		int methodBit = builder.getTagBit(XCSG.Method);
+		Csr declarationPairs = new Csr();
+		for(int node=0; node<size; node++){
+			for(int container = parents[node]; container >= 0; container = parents[container]){
+				if((tags[container] & methodBit) != 0){
+					declarationPairs.add(container, node);
+				}
+			}
+		}
+		this.declarations = Csr.forward(declarationPairs.copy(), declarationPairs.size, size);
+		
+		this.directSupertypes = Csr.forward(builder.supertypes.copy(), builder.supertypes.size, size);
+		this.supertypes = new AtomicReferenceArray<int[]>(size);
+		this.instanceMethods = new AtomicReferenceArray<int[]>(size);
+		this.callsiteIndexes = new EnumMap<CallGraphAlgorithm,CallsiteIndex>(CallGraphAlgorithm.class);
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			Csr calls = builder.calls.get(algorithm);
+			callsiteIndexes.put(algorithm, CallsiteIndex.build(calls.copy(), calls.size, size, null));
+		}
+		this.dataFlowSuccessors = Csr.forward(builder.dataFlow.copy(), builder.dataFlow.size, size);
+		this.dataFlowPredecessors = Csr.reverse(builder.dataFlow.copy(), builder.dataFlow.size, size);
+	}
+	
+	@Override
+	public int size(){
+		return tags.length;
+	}
+	
+	@Override
+	public boolean hasTag(int node, String tag){
+		int bit = builder.getTagBit(tag);
+		return bit != 0 && (tags[node] & bit) != 0;
+	}
+	
+	/**
+	 * Returns the ids of every node tagged with the XCSG tag
+	 */
+	public int[] getNodes(String tag){
+		int bit = builder.getTagBit(tag);
+		int[] nodes = new int[tags.length];
+		int count = 0;
+		for(int node=0; node<tags.length; node++){
+			if(bit != 0 && (tags[node] & bit) != 0){
+				nodes[count++] = node;
+			}
+		}
+		return Arrays.copyOf(nodes, count);
+	}
+	
+	@Override
+	public int getParent(int node){
+		return parents[node];
+	}
+	
+	@Override
+	public int[] getChildren(int node, String tag){
+		return filter(children[node], tag);
+	}
+	
+	@Override
+	public int[] getDeclarations(int method, String tag){
+		return filter(declarations[method], tag);
+	}
+	
+	/**
+	 * Returns the supertype closure, computed on first use. Closures are published
+	 * through an AtomicReferenceArray so classifier threads see them fully built,
+	 * threads racing on the same type compute equal closures and keep the first.
+	 */
+	@Override
+	public int[] getSupertypes(int type){
+		int[] closure = supertypes.get(type);
+		if(closure == null){
+			// closures are small, so a linear scan of the types found so far beats a visited array
+			int[] found = new int[16];
+			int count = 0;
+			found[count++] = type;
+			for(int next=0; next<count; next++){
+				for(int supertype : directSupertypes[found[next]]){
+					if(!contains(found, count, supertype)){
+						if(count == found.length){
+							found = Arrays.copyOf(found, count * 2);
+						}
+						found[count++] = supertype;
+					}
+				}
+			}
+			closure = Arrays.copyOf(found, count);
+			Arrays.sort(closure);
+			if(!supertypes.compareAndSet(type, null, closure)){
+				closure = supertypes.get(type);
+			}
+		}
+		return closure;
+	}
+	
+	/**
+	 * Searches the sorted instance methods of the type and its supertypes, computed
+	 * on first use and published like the supertype closures
+	 */
+	@Override
+	public boolean hasInstanceMethod(int type, int method){
+		int[] methods = instanceMethods.get(type);
+		if(methods == null){
+			int[] supertypes = getSupertypes(type);
+			int[][] declared = new int[supertypes.length][];
+			int size = 0;
+			for(int i=0; i<supertypes.length; i++){
+				declared[i] = getChildren(supertypes[i], XCSG.InstanceMethod);
+				size += declared[i].length;
+			}
+			methods = new int[size];
+			size = 0;
+			for(int[] typeMethods : declared){
+				System.arraycopy(typeMethods, 0, methods, size, typeMethods.length);
+				size += typeMethods.length;
+			}
+			Arrays.sort(methods);
+			if(!instanceMethods.compareAndSet(type, null, methods)){
+				methods = instanceMethods.get(type);
+			}
+		}
+		return Arrays.binarySearch(methods, method) >= 0;
+	}
+	
+	@Override
+	public int[] getTargets(CallGraphAlgorithm algorithm, int callsite){
+		return callsiteIndexes.get(algorithm).getTargets(callsite);
+	}
+	
+	@Override
+	public int getTargetCount(CallGraphAlgorithm algorithm, int callsite){
+		return callsiteIndexes.get(algorithm).getTargetCount(callsite);
+	}
+	
+	@Override
+	public int[] getCallsites(CallGraphAlgorithm algorithm, int method){
+		return callsiteIndexes.get(algorithm).getCallsites(method);
+	}
+	
+	public CallsiteIndex getCallsiteIndex(CallGraphAlgorithm algorithm){
+		return callsiteIndexes.get(algorithm);
+	}
+	
+	@Override
+	public int[] getDataFlowSuccessors(int node){
+		return dataFlowSuccessors[node];
+	}
+	
+	@Override
+	public int[] getDataFlowPredecessors(int node){
+		return dataFlowPredecessors[node];
+	}
+	
+	private static boolean contains(int[] values, int size, int value){
+		for(int i=0; i<size; i++){
+			if(values[i] == value){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private int[] filter(int[] nodes, String tag){
+		int bit = builder.getTagBit(tag);
+		if(bit == 0){
+			return new int[0];
+		}
+		int[] filtered = new int[nodes.length];
+		int count = 0;
+		for(int node : nodes){
+			if((tags[node] & bit) != 0){
+				filtered[count++] = node;
+			}
+		}
+		return count == filtered.length ? filtered : Arrays.copyOf(filtered, count);
+	}
+	
+	/**
+	 * Adds nodes and edges, ids are assigned in the order nodes are added
+	 */
+	public static class Builder {
+		private final List<String> tagNames = new ArrayList<String>();
+		private final Map<String,Integer> tagBits = new HashMap<String,Integer>();
+		private int size = 0;
+		private int[] tags = new int[1024];
+		private int[] parents = new int[1024];
+		private final Csr supertypes = new Csr();
+		private final Map<CallGraphAlgorithm,Csr> calls = new EnumMap<CallGraphAlgorithm,Csr>(CallGraphAlgorithm.class);
+		private final Csr dataFlow = new Csr();
+		
+		public Builder(){
+			for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+				calls.put(algorithm, new Csr());
+			}
+		}
+		
+		/**
+		 * Adds a node with the tags and returns its id
+		 */
+		public int addNode(String... nodeTags){
+			if(size == tags.length){
+				tags = Arrays.copyOf(tags, size * 2);
+				parents = Arrays.copyOf(parents, size * 2);
+			}
+			int mask = 0;
+			for(String tag : nodeTags){
+				Integer bit = tagBits.get(tag);
+				if(bit == null){
+					if(tagNames.size() == Integer.SIZE){
+						throw new IllegalArgumentException("A graph may use at most " + Integer.SIZE + " tags");
+					}
+					bit = 1 << tagNames.size();
+					tagNames.add(tag);
+					tagBits.put(tag, bit);
+				}
+				mask |= bit;
+			}
+			tags[size] = mask;
+			parents[size] = -1;
+			return size++;
+		}
+		
+		public int size(){
+			return size;
+		}
+		
+		public void setParent(int child, int parent){
+			parents[child] = parent;
+		}
+		
+		public void addSupertype(int type, int supertype){
+			supertypes.add(type, supertype);
+		}
+		
+		public void addCallEdge(CallGraphAlgorithm algorithm, int callsite, int target){
+			calls.get(algorithm).add(callsite, target);
+		}
+		
+		public void addDataFlowEdge(int from, int to){
+			dataFlow.add(from, to);
+		}
+		
+		private int getTagBit(String tag){
+			Integer bit = tagBits.get(tag);
+			return bit == null ? 0 : bit;
+		}
+		
+		public CsrGraphBackend build(){
+			return new CsrGraphBackend(this);
+		}
+	}
+	
+	/**
+	 * Growable (from << 32 | to) pairs and their conversion to per node adjacency arrays
+	 */
+	private static class Csr {
+		private long[] pairs = new long[1024];
+		private int size = 0;
+		
+		private void add(int from, int to){
+			if(size == pairs.length){
+				pairs = Arrays.copyOf(pairs, size * 2);
+			}
+			pairs[size++] = ((long) from << 32) | to;
+		}
+		
+		private long[] copy(){
+			return Arrays.copyOf(pairs, size);
+		}
+		
+		private static int[][] forward(long[] pairs, int size, int nodes){
+			int[] counts = new int[nodes];
+			for(int i=0; i<size; i++){
+				counts[(int) (pairs[i] >>> 32)]++;
+			}
+			int[][] adjacency = new int[nodes][];
+			for(int node=0; node<nodes; node++){
+				adjacency[node] = new int[counts[node]];
+				counts[node] = 0;
+			}
+			Arrays.sort(pairs, 0, size);
+			for(int i=0; i<size; i++){
+				int from = (int) (pairs[i] >>> 32);
+				adjacency[from][counts[from]++] = (int) pairs[i];
+			}
+			return adjacency;
+		}
+		
+		private static int[][] reverse(long[] pairs, int size, int nodes){
+			for(int i=0; i<size; i++){
+				pairs[i] = (pairs[i] << 32) | (pairs[i] >>> 32);
+			}
+			return forward(pairs, size, nodes);
+		}
+	}
+	
+	/**
+	 * Exports the types and members of the context and their supertypes, the callsites
+	 * and data flow nodes declared in the context's methods, and the call graph and data
+	 * flow edges between them. Call graphs that have not been built are exported empty.
+	 * A declaration's parent is the closest method containing it and a nested type's parent
+	 * is the method or type declaring it, so getDeclarations includes the declarations of
+	 * local and anonymous classes like CommonQueries.localDeclarations. Supertypes and
+	 * members outside the context are tagged LIBRARY. Returns the exported nodes numbered
+	 * with their ids in the file.
+	 */
+	public static NodeIndex export(Q context, File file) throws IOException {
+		Builder builder = new Builder();
+		NodeIndex nodeIndex = new NodeIndex();
+		AtlasSet<Node> members = Instrumentation.eval(context.nodesTaggedWithAny(XCSG.Type, XCSG.Method, XCSG.InstanceVariable)).nodes();
+		
+		Q hierarchy = Common.universe().edges(XCSG.Supertype).forward(context.nodes(XCSG.Type));
+		for(Edge supertype : Instrumentation.eval(Common.universe().edges(XCSG.Supertype).forwardStep(hierarchy)).edges()){
+			builder.addSupertype(exportNode(supertype.from(), nodeIndex, builder, members), exportNode(supertype.to(), nodeIndex, builder, members));
+		}
+		for(Edge contains : Instrumentation.eval(Common.universe().edges(XCSG.Contains).forwardStep(hierarchy)).edges()){
+			if(contains.to().taggedWith(XCSG.Method) || contains.to().taggedWith(XCSG.InstanceVariable)){
+				builder.setParent(exportNode(contains.to(), nodeIndex, builder, members), exportNode(contains.from(), nodeIndex, builder, members));
+			}
+		}
+		for(Edge contains : Instrumentation.eval(Common.universe().edges(XCSG.Contains).reverseStep(hierarchy)).edges()){
+			if(contains.to().taggedWith(XCSG.Type) && (contains.from().taggedWith(XCSG.Method) || contains.from().taggedWith(XCSG.Type))){
+				builder.setParent(exportNode(contains.to(), nodeIndex, builder, members), exportNode(contains.from(), nodeIndex, builder, members));
+			}
+		}
+		
+		AtlasSet<Node> declarationNodes = new AtlasHashSet<Node>();
+		for(Node method : Instrumentation.eval(context.nodes(XCSG.Method)).nodes()){
+			int methodId = exportNode(method, nodeIndex, builder, members);
+			// declarations of methods nested in the method (of local and anonymous classes) are parented by those methods
+			Q localDeclarations = CommonQueries.localDeclarations(Common.toQ(method));
+			Q nestedDeclarations = CommonQueries.localDeclarations(localDeclarations.nodes(XCSG.Method).difference(Common.toQ(method)));
+			Q methodDeclarations = localDeclarations.difference(nestedDeclarations).nodesTaggedWithAny(XCSG.CallSite, XCSG.DataFlow_Node);
+			for(Node declaration : Instrumentation.eval(methodDeclarations).nodes()){
+				builder.setParent(exportNode(declaration, nodeIndex, builder, members), methodId);
+				declarationNodes.add(declaration);
+			}
+		}
+		Q declarations = Common.toQ(declarationNodes);
+		
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			Q calls = Common.universe().edges(algorithm.getPerControlFlowTag()).forwardStep(declarations.nodes(XCSG.CallSite));
+			for(Edge call : Instrumentation.eval(calls).edges()){
+				builder.addCallEdge(algorithm, exportNode(call.from(), nodeIndex, builder, members), exportNode(call.to(), nodeIndex, builder, members));
+			}
+		}
+		Q dataFlow = Common.universe().edges(XCSG.DataFlow_Edge);
+		for(Edge edge : Instrumentation.eval(dataFlow.forwardStep(declarations).union(dataFlow.reverseStep(declarations))).edges()){
+			builder.addDataFlowEdge(exportNode(edge.from(), nodeIndex, builder, members), exportNode(edge.to(), nodeIndex, builder, members));
+		}
+		builder.build().save(file);
+		return nodeIndex;
+	}
+	
+	/**
+	 * Returns the node's id, adding it with its exported tags the first time it is seen,
+	 * types and members not in the context's members are tagged LIBRARY
+	 */
+	private static int exportNode(Node node, NodeIndex nodeIndex, Builder builder, AtlasSet<Node> members){
+		int id = nodeIndex.add(node);
+		if(id == builder.size()){
+			List<String> nodeTags = new ArrayList<String>();
+			for(String tag : EXPORTED_TAGS){
+				if(node.taggedWith(tag)){
+					nodeTags.add(tag);
+				}
+			}
+			if((node.taggedWith(XCSG.Type) || node.taggedWith(XCSG.Method) || node.taggedWith(XCSG.InstanceVariable)) && !members.contains(node)){
+				nodeTags.add(LIBRARY);
+			}
+			builder.addNode(nodeTags.toArray(new String[nodeTags.size()]));
+		}
+		return id;
+	}
+	
+	public void save(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(tagNames.length);
+			for(String tag : tagNames){
+				out.writeUTF(tag);
+			}
+			out.writeInt(tags.length);
+			for(int node=0; node<tags.length; node++){
+				out.writeInt(tags[node]);
+				out.writeInt(parents[node]);
+			}
+			writePairs(out, builder.supertypes);
+			for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+				writePairs(out, builder.calls.get(algorithm));
+			}
+			writePairs(out, builder.dataFlow);
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Loads a graph saved by save(File) or export(Q, File)
+	 */
+	public static CsrGraphBackend load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION){
+				throw new IOException("Unrecognized graph file " + file.getName());
+			}
+			String[] tagNames = new String[in.readInt()];
+			for(int i=0; i<tagNames.length; i++){
+				tagNames[i] = in.readUTF();
+			}
+			Builder builder = new Builder();
+			int size = in.readInt();
+			List<String> nodeTags = new ArrayList<String>();
+			for(int node=0; node<size; node++){
+				int mask = in.readInt();
+				nodeTags.clear();
+				for(int bit=0; bit<tagNames.length; bit++){
+					if((mask & (1 << bit)) != 0){
+						nodeTags.add(tagNames[bit]);
+					}
+				}
+				builder.addNode(nodeTags.toArray(new String[nodeTags.size()]));
+				builder.setParent(node, in.readInt());
+			}
+			readPairs(in, builder.supertypes);
+			for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+				readPairs(in, builder.calls.get(algorithm));
+			}
+			readPairs(in, builder.dataFlow);
+			return builder.build();
+		} catch (EOFException e) {
+			throw new IOException("Truncated graph file " + file.getName(), e);
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void writePairs(DataOutputStream out, Csr edges) throws IOException {
+		out.writeInt(edges.size);
+		for(int i=0; i<edges.size; i++){
+			out.writeLong(edges.pairs[i]);
+		}
+	}
+	
+	private static void readPairs(DataInputStream in, Csr edges) throws IOException {
+		int size = in.readInt();
+		for(int i=0; i<size; i++){
+			long pair = in.readLong();
+			edges.add((int) (pair >>> 32), (int) pair);
+		}
+	}
+	
+}
@@ -0,0 +1,132 @@
+package com.kcsl.ddresolver;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Computes the names and descriptors class files use for indexed types and methods,
+ * so analysis results can be matched to bytecode. Each method returns null if a name
+ * can not be derived from the index, for example for anonymous and local classes.
+ */
+public class Descriptors {
+	
+	/**
+	 * Returns the internal name of the class, for example "java/util/Map$Entry"
+	 */
+	public static String getInternalName(Node type){
+		if(!type.taggedWith(XCSG.Type) || type.taggedWith(XCSG.Primitive) || type.taggedWith(XCSG.ArrayType)){
+			return null;
+		}
+		String name = getName(type);
+		if(name.isEmpty() || !Character.isJavaIdentifierStart(name.charAt(0))){
+			return null;
+		}
+		Node container = getParent(type);
+		if(container == null){
+			return null;
+		}
+		if(container.taggedWith(XCSG.Type)){
+			String outer = getInternalName(container);
+			return outer == null ? null : outer + "$" + name;
+		}
+		if(container.taggedWith(XCSG.Package)){
+			String packageName = getName(container);
+			return packageName.isEmpty() ? name : packageName.replace('.', '/') + "/" + name;
+		}
+		// declared inside a method
+		return null;
+	}
+	
+	/**
+	 * Returns the field descriptor of the type, for example "I" or "[Ljava/lang/String;"
+	 */
+	public static String getDescriptor(Node type){
+		if(type.taggedWith(XCSG.Primitive)){
+			switch(getName(type)){
+				case "void": return "V";
+				case "boolean": return "Z";
+				case "byte": return "B";
+				case "char": return "C";
+				case "short": return "S";
+				case "int": return "I";
+				case "long": return "J";
+				case "float": return "F";
+				case "double": return "D";
+				default: return null;
+			}
+		}
+		if(type.taggedWith(XCSG.ArrayType)){
+			Node element = Common.edges(XCSG.Java.ArrayElementType).successors(Common.toQ(type)).eval().nodes().one();
+			String elementDescriptor = element == null ? null : getDescriptor(element);
+			if(elementDescriptor == null){
+				return null;
+			}
+			if(element.taggedWith(XCSG.ArrayType)){
+				return "[" + elementDescriptor;
+			}
+			Object dimension = type.getAttr(XCSG.Java.arrayTypeDimension);
+			int dimensions = dimension instanceof Integer ? (Integer) dimension : 1;
+			StringBuilder descriptor = new StringBuilder();
+			for(int i=0; i<dimensions; i++){
+				descriptor.append("[");
+			}
+			return descriptor.append(elementDescriptor).toString();
+		}
+		String internalName = getInternalName(type);
+		return internalName == null ? null : "L" + internalName + ";";
+	}
+	
+	/**
+	 * Returns the name of the method in the class file, constructors are named "<init>"
+	 */
+	public static String getMethodName(Node method){
+		return method.taggedWith(XCSG.Constructor) ? "<init>" : getName(method);
+	}
+	
+	/**
+	 * Returns the method descriptor, for example "(ILjava/lang/String;)V". Parameters
+	 * the compiler adds, such as the outer instance of an inner class constructor,
+	 * are not in the index so such descriptors will not match the class file.
+	 */
+	public static String getMethodDescriptor(Node method){
+		Node[] parameters = new Node[(int) Common.toQ(method).children().nodes(XCSG.Parameter).eval().nodes().size()];
+		for(Node parameter : Common.toQ(method).children().nodes(XCSG.Parameter).eval().nodes()){
+			Object index = parameter.getAttr(XCSG.parameterIndex);
+			if(!(index instanceof Integer) || (Integer) index < 0 || (Integer) index >= parameters.length){
+				return null;
+			}
+			parameters[(Integer) index] = parameter;
+		}
+		StringBuilder descriptor = new StringBuilder("(");
+		for(Node parameter : parameters){
+			String parameterDescriptor = parameter == null ? null : getTypeOfDescriptor(parameter);
+			if(parameterDescriptor == null){
+				return null;
+			}
+			descriptor.append(parameterDescriptor);
+		}
+		descriptor.append(")");
+		Node returnValue = Common.toQ(method).children().nodes(XCSG.ReturnValue).eval().nodes().one();
+		if(returnValue == null || method.taggedWith(XCSG.Constructor)){
+			return descriptor.append("V").toString();
+		}
+		String returnDescriptor = getTypeOfDescriptor(returnValue);
+		return returnDescriptor == null ? null : descriptor.append(returnDescriptor).toString();
+	}
+	
+	private static String getTypeOfDescriptor(Node node){
+		Node type = Common.edges(XCSG.TypeOf).successors(Common.toQ(node)).eval().nodes().one();
+		return type == null ? null : getDescriptor(type);
+	}
+	
+	private static Node getParent(Node node){
+		return Common.toQ(node).parent().eval().nodes().one();
+	}
+	
+	private static String getName(Node node){
+		Object name = node.getAttr(XCSG.name);
+		return name == null ? "" : name.toString();
+	}
+	
+}
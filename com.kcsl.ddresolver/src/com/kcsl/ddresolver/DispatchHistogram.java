@@ -0,0 +1,150 @@
+package com.kcsl.ddresolver;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * Counts an algorithm's callsites by number of targets (1, 2, 3-8 and 9 or more), split by
+ * virtual or interface dispatch and by whether the callsite is inside a loop. Megamorphic
+ * interface callsites go through itable stubs no devirtualization removes.
+ */
+public class DispatchHistogram {
+	
+	/**
+	 * The target count buckets, labels of the columns written by getColumns(String)
+	 */
+	public static final String[] BUCKETS = { "1", "2", "3-8", "9+" };
+	
+	/**
+	 * Callsites with at least this many targets are listed by writeMegamorphic
+	 */
+	public static final int MEGAMORPHIC_TARGETS = 9;
+	
+	private final CallGraphAlgorithm algorithm;
+	
+	// [interface dispatch][inside loops][bucket]
+	private final long[][][] counts = new long[2][2][BUCKETS.length];
+	
+	private final List<MegamorphicCallsite> megamorphic = new ArrayList<MegamorphicCallsite>();
+	
+	private static class MegamorphicCallsite {
+		private final Node callsite;
+		private final int targets;
+		private final boolean interfaceDispatch;
+		private final boolean inLoop;
+		
+		private MegamorphicCallsite(Node callsite, int targets, boolean interfaceDispatch, boolean inLoop){
+			this.callsite = callsite;
+			this.targets = targets;
+			this.interfaceDispatch = interfaceDispatch;
+			this.inLoop = inLoop;
+		}
+	}
+	
+	public DispatchHistogram(CallGraphAlgorithm algorithm){
+		this.algorithm = algorithm;
+	}
+	
+	public CallGraphAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+	
+	/**
+	 * Returns the bucket of the target count, -1 for callsites without targets
+	 */
+	public static int getBucket(int targets){
+		if(targets <= 0){
+			return -1;
+		}
+		if(targets <= 2){
+			return targets - 1;
+		}
+		return targets < MEGAMORPHIC_TARGETS ? 2 : 3;
+	}
+	
+	/**
+	 * Returns the callsites whose invoked signature is declared by an interface, the callsites compiled to invokeinterface
+	 */
+	public static Q getInterfaceCallsites(Q callsites){
+		Q invokedSignature = Common.universe().edges(XCSG.InvokedSignature);
+		Q interfaceMethods = Common.universe().nodes(XCSG.Java.Interface).children().nodes(XCSG.Method);
+		return invokedSignature.predecessors(invokedSignature.successors(callsites).intersection(interfaceMethods)).intersection(callsites);
+	}
+	
+	public void add(Node callsite, int targets, boolean interfaceDispatch, boolean inLoop){
+		int bucket = getBucket(targets);
+		if(bucket < 0){
+			return;
+		}
+		counts[interfaceDispatch ? 1 : 0][inLoop ? 1 : 0][bucket]++;
+		if(targets >= MEGAMORPHIC_TARGETS){
+			megamorphic.add(new MegamorphicCallsite(callsite, targets, interfaceDispatch, inLoop));
+		}
+	}
+	
+	public long getCount(boolean interfaceDispatch, boolean inLoop, int bucket){
+		return counts[interfaceDispatch ? 1 : 0][inLoop ? 1 : 0][bucket];
+	}
+	
+	/**
+	 * Returns the column names in the order of getValues(), for example "CHA Interface Inside Loops 3-8"
+	 */
+	public static List<String> getColumns(String prefix){
+		List<String> columns = new ArrayList<String>();
+		for(String dispatch : new String[]{ "Virtual", "Interface" }){
+			for(String loops : new String[]{ "Outside Loops", "Inside Loops" }){
+				for(String bucket : BUCKETS){
+					columns.add(prefix + " " + dispatch + " " + loops + " " + bucket);
+				}
+			}
+		}
+		return columns;
+	}
+	
+	/**
+	 * Returns the counts in the order of getColumns(String)
+	 */
+	public List<Long> getValues(){
+		List<Long> values = new ArrayList<Long>();
+		for(int dispatch=0; dispatch<2; dispatch++){
+			for(int loops=0; loops<2; loops++){
+				for(int bucket=0; bucket<BUCKETS.length; bucket++){
+					values.add(counts[dispatch][loops][bucket]);
+				}
+			}
+		}
+		return values;
+	}
+	
+	/**
+	 * Writes up to the given number of callsites with the most targets, the header is
+	 * "Algorithm,Callsite,Location,Caller,Dispatch,Inside Loop,Targets"
+	 */
+	public void writeMegamorphic(FileWriter fw, int limit) throws IOException {
+		List<MegamorphicCallsite> ranked = new ArrayList<MegamorphicCallsite>(megamorphic);
+		Collections.sort(ranked, new Comparator<MegamorphicCallsite>(){
+			@Override
+			public int compare(MegamorphicCallsite a, MegamorphicCallsite b){
+				return Integer.compare(b.targets, a.targets);
+			}
+		});
+		for(MegamorphicCallsite entry : ranked.subList(0, Math.min(limit, ranked.size()))){
+			Node caller = CommonQueries.getContainingFunction(entry.callsite);
+			fw.write(algorithm.getName() + "," + ReportFormat.quote(String.valueOf(entry.callsite.getAttr(XCSG.name))) + ","
+					+ ReportFormat.quote(ReportFormat.getLocation(entry.callsite)) + ","
+					+ ReportFormat.quote(caller == null ? "" : NodeKeys.getSignature(caller)) + ","
+					+ (entry.interfaceDispatch ? "Interface" : "Virtual") + "," + entry.inLoop + "," + entry.targets + "\n");
+		}
+	}
+	
+}
@@ -0,0 +1,149 @@
+package com.kcsl.ddresolver;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Attr;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.java.commons.analysis.SetDefinitions;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * Finds the application classes and instance methods that could be declared final under
+ * the closed world assumption: concrete classes CHA finds no subtypes of and instance
+ * methods nothing overrides. Classes other code may still subclass at runtime are left
+ * open along with their methods: classes subtyped by library code, annotated classes or
+ * classes with annotated methods (which frameworks proxy by subclassing) and classes
+ * named by a string literal (which may be loaded reflectively). The methods of their
+ * superclasses are left open too, since a runtime subclass of an open class may override
+ * the methods it inherits.
+ */
+public class EffectivelyFinalAnalysis {
+	
+	public static final String EFFECTIVELY_FINAL_TYPE = "EFFECTIVELY-FINAL-TYPE";
+	public static final String EFFECTIVELY_FINAL_METHOD = "EFFECTIVELY-FINAL-METHOD";
+	
+	private final AtlasSet<Node> types = new AtlasHashSet<Node>();
+	private final AtlasSet<Node> methods = new AtlasHashSet<Node>();
+	private final AtlasSet<Node> openTypes = new AtlasHashSet<Node>();
+	
+	private EffectivelyFinalAnalysis(){}
+	
+	/**
+	 * Finds the effectively final application classes and methods
+	 */
+	public static EffectivelyFinalAnalysis run(){
+		EffectivelyFinalAnalysis analysis = new EffectivelyFinalAnalysis();
+		Q app = SetDefinitions.app();
+		Q supertypes = Common.universe().edges(XCSG.Supertype);
+		Q overrides = Common.universe().edges(XCSG.Overrides);
+		Q annotatedWith = Common.universe().edges(XCSG.Java.AnnotatedWith).retainEdges();
+		
+		Q classTypes = app.nodes(XCSG.Java.Class, XCSG.Java.AbstractClass).difference(app.nodes(XCSG.Java.Interface, XCSG.Java.Annotation));
+		Q subtyped = supertypes.successors(Common.universe().nodes(XCSG.Type)).intersection(classTypes);
+		Q annotated = classTypes.intersection(annotatedWith.union(annotatedWith.nodes(XCSG.Method).parent()));
+		for(Node type : annotated.union(supertypes.successors(SetDefinitions.libraries()).intersection(classTypes)).eval().nodes()){
+			analysis.openTypes.add(type);
+		}
+		Set<String> literals = getStringLiterals(app);
+		for(Node type : classTypes.eval().nodes()){
+			String internalName = Descriptors.getInternalName(type);
+			if(internalName != null && literals.contains(internalName.replace('/', '.'))){
+				analysis.openTypes.add(type);
+			}
+		}
+		Q open = Common.toQ(analysis.openTypes);
+		
+		Q concreteClasses = classTypes.difference(app.nodes(XCSG.Java.AbstractClass));
+		for(Node type : concreteClasses.difference(subtyped, open, app.nodes(XCSG.Java.finalClass)).eval().nodes()){
+			analysis.types.add(type);
+		}
+		
+		// methods of abstract classes qualify too, only their class stays open,
+		// methods inherited by an open class may be overridden by its runtime subclasses
+		Q instanceMethods = classTypes.difference(supertypes.forward(open)).children().nodes(XCSG.InstanceMethod).difference(
+				app.nodesTaggedWithAny(XCSG.Constructor, XCSG.privateVisibility, XCSG.abstractMethod, XCSG.Java.finalMethod, Attr.Node.IS_STATIC),
+				app.methods("<init>"));
+		Q overridden = overrides.successors(Common.universe().nodes(XCSG.Method));
+		for(Node method : instanceMethods.difference(overridden).eval().nodes()){
+			analysis.methods.add(method);
+		}
+		return analysis;
+	}
+	
+	/**
+	 * Returns the values of the application's string literals without their quotes
+	 */
+	private static Set<String> getStringLiterals(Q app){
+		Set<String> literals = new HashSet<String>();
+		for(Node literal : app.nodes(XCSG.Literal).eval().nodes()){
+			Object name = literal.getAttr(XCSG.name);
+			String value = name == null ? "" : name.toString();
+			if(value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")){
+				literals.add(value.substring(1, value.length() - 1));
+			}
+		}
+		return literals;
+	}
+	
+	/**
+	 * Returns the classes that are not final and have no subtypes or reasons to stay open
+	 */
+	public AtlasSet<Node> getTypes(){
+		return types;
+	}
+	
+	/**
+	 * Returns the instance methods that are not final and that nothing overrides, declared by classes
+	 * that are neither open nor a supertype of an open class
+	 */
+	public AtlasSet<Node> getMethods(){
+		return methods;
+	}
+	
+	/**
+	 * Returns the classes kept open because they are annotated, subtyped by library code or named by a string literal
+	 */
+	public AtlasSet<Node> getOpenTypes(){
+		return openTypes;
+	}
+	
+	/**
+	 * Tags the effectively final classes and methods
+	 */
+	public void tag(){
+		for(Node type : types){
+			type.tag(EFFECTIVELY_FINAL_TYPE);
+		}
+		for(Node method : methods){
+			method.tag(EFFECTIVELY_FINAL_METHOD);
+		}
+	}
+	
+	/**
+	 * Returns a rewriter that declares the effectively final classes and methods final
+	 */
+	public FinalModifierRewriter getRewriter(){
+		Set<String> classNames = new HashSet<String>();
+		for(Node type : types){
+			String internalName = Descriptors.getInternalName(type);
+			if(internalName != null){
+				classNames.add(internalName);
+			}
+		}
+		Set<String> methodKeys = new HashSet<String>();
+		for(Node method : methods){
+			MethodRef methodRef = RewritePlan.getMethodRef(method);
+			if(methodRef != null){
+				methodKeys.add(methodRef.getKey());
+			}
+		}
+		return new FinalModifierRewriter(classNames, methodKeys);
+	}
+	
+}
@@ -0,0 +1,144 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.query.Attr;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+import com.ensoftcorp.open.java.commons.analysis.SetDefinitions;
+
+/**
+ * The application methods execution may start from: main methods, static initializers,
+ * methods annotated (or declared by types annotated) with a handler annotation, methods
+ * listed explicitly and methods overriding library methods, which library code may call
+ * back. Candidates no entry point reaches in a call graph are dead code and need not be
+ * classified, see ResolverPreferences.enableEntryPointPruning(boolean).
+ */
+public class EntryPoints {
+	
+	private final AtlasSet<Node> methods = new AtlasHashSet<Node>();
+	private final Map<CallGraphAlgorithm,Q> reachableMethods = new HashMap<CallGraphAlgorithm,Q>();
+	
+	private EntryPoints(){}
+	
+	/**
+	 * Finds the entry points configured in ResolverPreferences
+	 */
+	public static EntryPoints find(){
+		return find(ResolverPreferences.getEntryPointAnnotations(), ResolverPreferences.getEntryPointMethods());
+	}
+	
+	/**
+	 * Finds the entry points, annotations and methods are given by qualified name, for
+	 * example "javax.ws.rs.Path" and "com.example.Main.start" (every overload)
+	 */
+	public static EntryPoints find(List<String> annotations, List<String> qualifiedMethods){
+		EntryPoints entryPoints = new EntryPoints();
+		Q app = SetDefinitions.app();
+		Q appMethods = app.nodes(XCSG.Method);
+		
+		Q mainMethods = app.methods("main").nodesTaggedWithAll(Attr.Node.IS_STATIC, XCSG.publicVisibility);
+		Q libraryMethods = SetDefinitions.libraries().nodes(XCSG.Method);
+		Q callbacks = Common.universe().edges(XCSG.Overrides).reverse(libraryMethods).intersection(appMethods);
+		Q annotated = Common.universe().edges(XCSG.Java.AnnotatedWith).predecessors(getTypes(Common.universe().nodes(XCSG.Java.Annotation), annotations));
+		Q handlers = annotated.nodes(XCSG.Method).union(annotated.nodes(XCSG.Type).children().nodes(XCSG.Method)).intersection(appMethods);
+		
+		for(Node method : mainMethods.union(app.methods("<clinit>"), callbacks, handlers, getMethods(appMethods, qualifiedMethods)).eval().nodes()){
+			entryPoints.methods.add(method);
+		}
+		return entryPoints;
+	}
+	
+	/**
+	 * Returns the types with the given qualified names
+	 */
+	private static Q getTypes(Q types, List<String> qualifiedNames){
+		Set<String> names = new HashSet<String>(qualifiedNames);
+		AtlasSet<Node> matches = new AtlasHashSet<Node>();
+		for(Node type : types.eval().nodes()){
+			String internalName = Descriptors.getInternalName(type);
+			if(internalName != null && names.contains(internalName.replace('/', '.').replace('$', '.'))){
+				matches.add(type);
+			}
+		}
+		return Common.toQ(matches);
+	}
+	
+	/**
+	 * Returns the methods with the given qualified names, warning about names no method has
+	 */
+	private static Q getMethods(Q methods, List<String> qualifiedNames){
+		Map<String,List<String>> typesByMethodName = new HashMap<String,List<String>>();
+		for(String qualifiedName : qualifiedNames){
+			int separator = qualifiedName.lastIndexOf('.');
+			if(separator <= 0){
+				throw new IllegalArgumentException("Entry point " + qualifiedName + " is not a qualified method name");
+			}
+			String methodName = qualifiedName.substring(separator + 1);
+			if(!typesByMethodName.containsKey(methodName)){
+				typesByMethodName.put(methodName, new ArrayList<String>());
+			}
+			typesByMethodName.get(methodName).add(qualifiedName.substring(0, separator));
+		}
+		AtlasSet<Node> matches = new AtlasHashSet<Node>();
+		Set<String> found = new HashSet<String>();
+		for(Map.Entry<String,List<String>> methodName : typesByMethodName.entrySet()){
+			Q named = methods.methods(methodName.getKey());
+			for(Node type : getTypes(named.parent(), methodName.getValue()).eval().nodes()){
+				for(Node method : Common.toQ(type).children().intersection(named).eval().nodes()){
+					matches.add(method);
+				}
+				found.add(Descriptors.getInternalName(type).replace('/', '.').replace('$', '.') + "." + methodName.getKey());
+			}
+		}
+		for(String qualifiedName : qualifiedNames){
+			if(!found.contains(qualifiedName)){
+				Log.warning("Entry point " + qualifiedName + " matches no application method");
+			}
+		}
+		return Common.toQ(matches);
+	}
+	
+	public AtlasSet<Node> getMethods(){
+		return methods;
+	}
+	
+	/**
+	 * Returns the methods the algorithm's call graph reaches from the entry points, including the entry points
+	 */
+	public Q getReachableMethods(CallGraphAlgorithm algorithm){
+		Q reachable = reachableMethods.get(algorithm);
+		if(reachable == null){
+			Q entryPoints = Common.toQ(methods);
+			reachable = Common.toQ(algorithm.getCallGraph().forward(entryPoints).union(entryPoints).nodes(XCSG.Method).eval().nodes());
+			reachableMethods.put(algorithm, reachable);
+		}
+		return reachable;
+	}
+	
+	/**
+	 * Returns the candidate methods the algorithm's call graph reaches from the entry points
+	 */
+	public Q pruneMethods(CallGraphAlgorithm algorithm, Q candidateMethods){
+		return candidateMethods.intersection(getReachableMethods(algorithm));
+	}
+	
+	/**
+	 * Returns the candidate callsites declared by methods the algorithm's call graph reaches from the entry points
+	 */
+	public Q pruneCallsites(CallGraphAlgorithm algorithm, Q candidateCallsites){
+		return candidateCallsites.intersection(CommonQueries.localDeclarations(getReachableMethods(algorithm)).nodes(XCSG.CallSite));
+	}
+	
+}
@@ -0,0 +1,345 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * Sampled call stacks of a profiled run, read from a Java Flight Recorder recording (.jfr)
+ * or a collapsed stack file (one "root;...;leaf count" line per stack, as written by
+ * async-profiler or flame graph tools). Frames are matched to methods by class and method
+ * name, so overloads share their samples, and a callsite is credited with the samples in
+ * which its method directly calls a method with the invoked name.
+ */
+public class ExecutionProfile {
+	
+	private static final String EXECUTION_SAMPLE = "jdk.ExecutionSample";
+	
+	// distinct stacks, root frame first, and the number of samples of each
+	private final List<String[]> stacks = new ArrayList<String[]>();
+	private final List<Long> stackSamples = new ArrayList<Long>();
+	private long totalSamples = 0;
+	
+	// "owner.name" -> samples with the method anywhere on the stack
+	private final Map<String,Long> methodSamples = new HashMap<String,Long>();
+	
+	// "caller owner.name>callee name" -> samples with the caller directly calling the callee
+	private final Map<String,Long> callSamples = new HashMap<String,Long>();
+	
+	private ExecutionProfile(){}
+	
+	/**
+	 * Loads a flight recording if the file name ends with ".jfr", otherwise a collapsed stack file
+	 */
+	public static ExecutionProfile load(File file) throws IOException {
+		ExecutionProfile profile = new ExecutionProfile();
+		Map<String,Integer> stackIndex = new HashMap<String,Integer>();
+		if(file.getName().endsWith(".jfr")){
+			profile.loadRecording(file, stackIndex);
+		} else {
+			profile.loadCollapsedStacks(file, stackIndex);
+		}
+		profile.index();
+		Log.info("Loaded " + profile.totalSamples + " samples in " + profile.stacks.size() + " distinct stacks from " + file.getName());
+		return profile;
+	}
+	
+	private void loadCollapsedStacks(File file, Map<String,Integer> stackIndex) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+		try {
+			String line;
+			while((line = reader.readLine()) != null){
+				line = line.trim();
+				int separator = line.lastIndexOf(' ');
+				if(line.isEmpty() || line.startsWith("#") || separator < 0){
+					continue;
+				}
+				long samples;
+				try {
+					samples = Long.parseLong(line.substring(separator + 1));
+				} catch (NumberFormatException e){
+					throw new IOException("Malformed collapsed stack line: " + line);
+				}
+				String[] frames = line.substring(0, separator).split(";");
+				for(int i=0; i<frames.length; i++){
+					frames[i] = normalize(frames[i]);
+				}
+				addStack(frames, samples, stackIndex);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Reads the execution samples through the jdk.jfr.consumer API, which is looked up
+	 * reflectively because it is not part of every Java 8 runtime
+	 */
+	private void loadRecording(File file, Map<String,Integer> stackIndex) throws IOException {
+		try {
+			Class<?> recordingFileClass = Class.forName("jdk.jfr.consumer.RecordingFile");
+			Object recordingFile = recordingFileClass.getConstructor(Path.class).newInstance(file.toPath());
+			Method hasMoreEvents = recordingFileClass.getMethod("hasMoreEvents");
+			Method readEvent = recordingFileClass.getMethod("readEvent");
+			try {
+				while((Boolean) hasMoreEvents.invoke(recordingFile)){
+					Object event = readEvent.invoke(recordingFile);
+					if(!EXECUTION_SAMPLE.equals(invoke(invoke(event, "getEventType"), "getName"))){
+						continue;
+					}
+					Object stackTrace = invoke(event, "getStackTrace");
+					if(stackTrace == null){
+						continue;
+					}
+					List<?> recordedFrames = (List<?>) invoke(stackTrace, "getFrames");
+					List<String> frames = new ArrayList<String>();
+					// recorded frames start at the top of the stack
+					for(int i=recordedFrames.size()-1; i>=0; i--){
+						Object method = invoke(recordedFrames.get(i), "getMethod");
+						if(method != null){
+							String type = (String) invoke(invoke(method, "getType"), "getName");
+							frames.add(type.replace('.', '/') + "." + invoke(method, "getName"));
+						}
+					}
+					addStack(frames.toArray(new String[frames.size()]), 1, stackIndex);
+				}
+			} finally {
+				recordingFileClass.getMethod("close").invoke(recordingFile);
+			}
+		} catch (ClassNotFoundException e){
+			throw new IOException("Reading flight recordings requires the jdk.jfr module, convert the recording to collapsed stacks instead");
+		} catch (InvocationTargetException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Could not read flight recording " + file.getName(), e.getCause());
+		} catch (ReflectiveOperationException e){
+			throw new IOException("Could not read flight recording " + file.getName(), e);
+		}
+	}
+	
+	private static Object invoke(Object target, String method) throws ReflectiveOperationException {
+		return target.getClass().getMethod(method).invoke(target);
+	}
+	
+	/**
+	 * Returns the frame as "owner.name" with the owner's internal name, dropping the
+	 * descriptor, line and frame type annotations profilers append, for example
+	 * "p.A.get(I)I:12_[j]" becomes "p/A.get"
+	 */
+	private static String normalize(String frame){
+		int annotation = frame.lastIndexOf("_[");
+		if(annotation > 0 && frame.endsWith("]")){
+			frame = frame.substring(0, annotation);
+		}
+		int descriptor = frame.indexOf('(');
+		if(descriptor > 0){
+			frame = frame.substring(0, descriptor);
+		}
+		int line = frame.indexOf(':');
+		if(line > 0){
+			frame = frame.substring(0, line);
+		}
+		int name = frame.lastIndexOf('.');
+		if(name <= 0){
+			return frame;
+		}
+		return frame.substring(0, name).replace('.', '/') + frame.substring(name);
+	}
+	
+	private void addStack(String[] frames, long samples, Map<String,Integer> stackIndex){
+		String key = String.join(";", frames);
+		Integer index = stackIndex.get(key);
+		if(index == null){
+			stackIndex.put(key, stacks.size());
+			stacks.add(frames);
+			stackSamples.add(samples);
+		} else {
+			stackSamples.set(index, stackSamples.get(index) + samples);
+		}
+		totalSamples += samples;
+	}
+	
+	private void index(){
+		for(int i=0; i<stacks.size(); i++){
+			String[] frames = stacks.get(i);
+			long samples = stackSamples.get(i);
+			// recursive stacks count once per method and call
+			Set<String> methods = new HashSet<String>();
+			Set<String> calls = new HashSet<String>();
+			for(int frame=0; frame<frames.length; frame++){
+				methods.add(frames[frame]);
+				if(frame + 1 < frames.length){
+					calls.add(frames[frame] + ">" + getName(frames[frame+1]));
+				}
+			}
+			for(String method : methods){
+				add(methodSamples, method, samples);
+			}
+			for(String call : calls){
+				add(callSamples, call, samples);
+			}
+		}
+	}
+	
+	private static void add(Map<String,Long> counts, String key, long samples){
+		Long count = counts.get(key);
+		counts.put(key, count == null ? samples : count + samples);
+	}
+	
+	private static String getName(String frame){
+		return frame.substring(frame.lastIndexOf('.') + 1);
+	}
+	
+	/**
+	 * Returns the method's frame name, for example "java/util/Map$Entry.getKey", or null
+	 * if the method's class has no binary name
+	 */
+	private static String getFrame(Node method){
+		Node type = Common.toQ(method).parent().eval().nodes().one();
+		String owner = type == null ? null : Descriptors.getInternalName(type);
+		return owner == null ? null : owner + "." + Descriptors.getMethodName(method);
+	}
+	
+	/**
+	 * Returns the caller frame and invoked method name identifying the callsite's calls, or null
+	 */
+	private static String getCall(Node callsite){
+		Node caller = CommonQueries.getContainingFunction(callsite);
+		Node signature = Common.universe().edges(XCSG.InvokedSignature, XCSG.InvokedFunction).successors(Common.toQ(callsite)).eval().nodes().one();
+		String callerFrame = caller == null ? null : getFrame(caller);
+		return callerFrame == null || signature == null ? null : callerFrame + ">" + Descriptors.getMethodName(signature);
+	}
+	
+	public long getTotalSamples(){
+		return totalSamples;
+	}
+	
+	/**
+	 * Returns the number of samples with the method anywhere on the stack
+	 */
+	public long getMethodSamples(Node method){
+		String frame = getFrame(method);
+		Long samples = frame == null ? null : methodSamples.get(frame);
+		return samples == null ? 0 : samples;
+	}
+	
+	/**
+	 * Returns the number of samples in which the callsite's method directly calls a method with the invoked name
+	 */
+	public long getCallSamples(Node callsite){
+		String call = getCall(callsite);
+		Long samples = call == null ? null : callSamples.get(call);
+		return samples == null ? 0 : samples;
+	}
+	
+	/**
+	 * Returns the sampled methods' samples, for example as the target weights of RewritePlan.build
+	 */
+	public Map<Node,Long> getMethodWeights(Collection<Node> methods){
+		Map<Node,Long> weights = new HashMap<Node,Long>();
+		for(Node method : methods){
+			long samples = getMethodSamples(method);
+			if(samples > 0){
+				weights.put(method, samples);
+			}
+		}
+		return weights;
+	}
+	
+	/**
+	 * Returns the fraction of samples taken beneath at least one of the callsites,
+	 * the share of the sampled time devirtualizing the callsites may speed up
+	 */
+	public double getCoveredShare(Collection<Node> callsites){
+		if(totalSamples == 0){
+			return 0;
+		}
+		Set<String> calls = new HashSet<String>();
+		for(Node callsite : callsites){
+			String call = getCall(callsite);
+			if(call != null){
+				calls.add(call);
+			}
+		}
+		long covered = 0;
+		for(int i=0; i<stacks.size(); i++){
+			String[] frames = stacks.get(i);
+			for(int frame=0; frame+1<frames.length; frame++){
+				if(calls.contains(frames[frame] + ">" + getName(frames[frame+1]))){
+					covered += stackSamples.get(i);
+					break;
+				}
+			}
+		}
+		return (double) covered / totalSamples;
+	}
+	
+	/**
+	 * Returns the CALLSITETRANSFORMABLE and CALLSITEGUARDABLE callsites, most sampled calls first
+	 */
+	public List<Node> rankCallsites(Classification classification){
+		final Map<Node,Long> samples = new LinkedHashMap<Node,Long>();
+		for(String category : new String[]{ Classification.CALLSITE_TRANSFORMABLE, Classification.CALLSITE_GUARDABLE }){
+			for(Node callsite : classification.get(category)){
+				samples.put(callsite, getCallSamples(callsite));
+			}
+		}
+		List<Node> ranked = new ArrayList<Node>(samples.keySet());
+		Collections.sort(ranked, new Comparator<Node>(){
+			@Override
+			public int compare(Node a, Node b){
+				return Long.compare(samples.get(b), samples.get(a));
+			}
+		});
+		return ranked;
+	}
+	
+	/**
+	 * Writes the callsites ranked by sampled calls and their share of the sampled time as a percentage
+	 */
+	public void writeReport(Classification classification, File output) throws IOException {
+		Set<Node> transformable = new HashSet<Node>(classification.get(Classification.CALLSITE_TRANSFORMABLE));
+		FileWriter fw = new FileWriter(output);
+		try {
+			fw.write("Rank,Callsite,Location,Caller,Category,Sampled Calls,Sampled Share (%)\n");
+			int rank = 1;
+			for(Node callsite : rankCallsites(classification)){
+				Node caller = CommonQueries.getContainingFunction(callsite);
+				String category = transformable.contains(callsite) ? Classification.CALLSITE_TRANSFORMABLE : Classification.CALLSITE_GUARDABLE;
+				long samples = getCallSamples(callsite);
+				fw.write(rank++ + "," + ReportFormat.quote(String.valueOf(callsite.getAttr(XCSG.name))) + ","
+						+ ReportFormat.quote(ReportFormat.getLocation(callsite)) + ","
+						+ ReportFormat.quote(caller == null ? "" : NodeKeys.getSignature(caller)) + ","
+						+ classification.getAlgorithm().getTag(category) + "," + samples + ","
+						+ ReportFormat.format(totalSamples == 0 ? 0 : 100.0 * samples / totalSamples) + "\n");
+			}
+		} finally {
+			fw.close();
+		}
+	}
+	
+}
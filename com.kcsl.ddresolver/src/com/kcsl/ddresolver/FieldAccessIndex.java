@@ -0,0 +1,324 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Edge;
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Records the instance variables each method reads and writes, built in one pass 
+ * over the data flow edges. A method is also credited with the accesses of the static 
+ * methods it calls, transitively, as data flow through callees was followed before the 
+ * index existed. Static calls have a single target under every algorithm, so a single 
+ * index serves every analysis. The index is read only once built and may be shared 
+ * between threads as long as its node index is not modified.
+ */
+public class FieldAccessIndex {
+
+	/**
+	 * The instance variable accesses made by the declarations of a single method
+	 */
+	public static class FieldAccesses {
+		private int[] read = new int[0];
+		private int[] written = new int[0];
+		private boolean touchesInstanceState = false;
+		
+		/**
+		 * Returns the ids of the instance variables the method reads
+		 */
+		public int[] getRead(){
+			return read;
+		}
+		
+		/**
+		 * Returns the ids of the instance variables the method writes
+		 */
+		public int[] getWritten(){
+			return written;
+		}
+		
+		/**
+		 * Returns true if the method reads or writes an instance variable 
+		 * declared by its type or one of its supertypes
+		 */
+		public boolean touchesInstanceState(){
+			return touchesInstanceState;
+		}
+	}
+	
+	private static final FieldAccesses NO_ACCESSES = new FieldAccesses();
+	
+	private final NodeIndex nodeIndex;
+	
+	// method id -> accesses
+	private final Map<Integer,FieldAccesses> accesses = new HashMap<Integer,FieldAccesses>();
+	
+	private FieldAccessIndex(NodeIndex nodeIndex){
+		this.nodeIndex = nodeIndex;
+	}
+	
+	/**
+	 * Builds the index from Atlas, numbering methods and instance variables with the node index
+	 */
+	public static FieldAccessIndex build(NodeIndex nodeIndex, TypeHierarchyCache typeHierarchies){
+		FieldAccessIndex index = new FieldAccessIndex(nodeIndex);
+		Map<Node,Node[]> containingMethods = new HashMap<Node,Node[]>();
+		for(Edge edge : Instrumentation.eval(Common.universe().edges(XCSG.DataFlow_Edge)).edges()){
+			Node from = edge.from();
+			Node to = edge.to();
+			if(to.taggedWith(XCSG.InstanceVariable)){
+				for(Node method : getContainingMethods(from, containingMethods)){
+					FieldAccesses methodAccesses = index.getOrCreate(nodeIndex.add(method));
+					methodAccesses.written = add(methodAccesses.written, nodeIndex.add(to));
+				}
+			}
+			if(from.taggedWith(XCSG.InstanceVariable)){
+				for(Node method : getContainingMethods(to, containingMethods)){
+					FieldAccesses methodAccesses = index.getOrCreate(nodeIndex.add(method));
+					methodAccesses.read = add(methodAccesses.read, nodeIndex.add(from));
+				}
+			}
+		}
+		
+		Map<Integer,int[]> staticCallers = new HashMap<Integer,int[]>();
+		for(Edge edge : Instrumentation.eval(Common.universe().edges(XCSG.InvokedFunction).forwardStep(Common.universe().nodes(XCSG.StaticDispatchCallSite))).edges()){
+			if(edge.to().taggedWith(XCSG.ClassMethod)){
+				int callee = nodeIndex.add(edge.to());
+				for(Node method : getContainingMethods(edge.from(), containingMethods)){
+					addStaticCaller(staticCallers, callee, nodeIndex.add(method));
+				}
+			}
+		}
+		index.propagate(staticCallers);
+		
+		for(Map.Entry<Integer,FieldAccesses> entry : index.accesses.entrySet()){
+			Node type = Instrumentation.eval(Common.toQ(nodeIndex.getNode(entry.getKey())).parent()).nodes().one();
+			if(type != null){
+				FieldAccesses methodAccesses = entry.getValue();
+				AtlasSet<Node> instanceVariables = typeHierarchies.get(type).getInstanceVariables();
+				methodAccesses.touchesInstanceState = containsAny(instanceVariables, methodAccesses.read, nodeIndex) 
+						|| containsAny(instanceVariables, methodAccesses.written, nodeIndex);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns every method whose local declarations include the node, nested 
+	 * methods (for example of anonymous classes) count for their enclosing methods
+	 */
+	private static Node[] getContainingMethods(Node node, Map<Node,Node[]> containingMethods){
+		Node[] methods = containingMethods.get(node);
+		if(methods == null){
+			AtlasSet<Node> containers = Instrumentation.eval(Common.toQ(node).containers().nodes(XCSG.Method)).nodes();
+			methods = new Node[(int) containers.size()];
+			int i = 0;
+			for(Node method : containers){
+				methods[i++] = method;
+			}
+			containingMethods.put(node, methods);
+		}
+		return methods;
+	}
+	
+	/**
+	 * Builds the index from a graph backend's data flow adjacency, ids are the backend's node ids
+	 */
+	public static FieldAccessIndex build(GraphBackend graph){
+		FieldAccessIndex index = new FieldAccessIndex(null);
+		for(int node=0; node<graph.size(); node++){
+			if(!graph.hasTag(node, XCSG.InstanceVariable)){
+				continue;
+			}
+			for(int writer : graph.getDataFlowPredecessors(node)){
+				for(int method : getContainingMethods(graph, writer)){
+					FieldAccesses methodAccesses = index.getOrCreate(method);
+					methodAccesses.written = add(methodAccesses.written, node);
+				}
+			}
+			for(int reader : graph.getDataFlowSuccessors(node)){
+				for(int method : getContainingMethods(graph, reader)){
+					FieldAccesses methodAccesses = index.getOrCreate(method);
+					methodAccesses.read = add(methodAccesses.read, node);
+				}
+			}
+		}
+		
+		Map<Integer,int[]> staticCallers = new HashMap<Integer,int[]>();
+		for(int callsite=0; callsite<graph.size(); callsite++){
+			if(graph.hasTag(callsite, XCSG.StaticDispatchCallSite)){
+				for(int callee : graph.getTargets(CallGraphAlgorithm.CHA, callsite)){
+					if(graph.hasTag(callee, XCSG.ClassMethod)){
+						for(int method : getContainingMethods(graph, callsite)){
+							addStaticCaller(staticCallers, callee, method);
+						}
+					}
+				}
+			}
+		}
+		index.propagate(staticCallers);
+		
+		Map<Integer,int[]> typeInstanceVariables = new HashMap<Integer,int[]>();
+		for(Map.Entry<Integer,FieldAccesses> entry : index.accesses.entrySet()){
+			int type = graph.getParent(entry.getKey());
+			if(type >= 0){
+				int[] instanceVariables = typeInstanceVariables.get(type);
+				if(instanceVariables == null){
+					instanceVariables = new int[0];
+					for(int supertype : graph.getSupertypes(type)){
+						for(int instanceVariable : graph.getChildren(supertype, XCSG.InstanceVariable)){
+							instanceVariables = add(instanceVariables, instanceVariable);
+						}
+					}
+					typeInstanceVariables.put(type, instanceVariables);
+				}
+				FieldAccesses methodAccesses = entry.getValue();
+				methodAccesses.touchesInstanceState = containsAny(instanceVariables, methodAccesses.read) 
+						|| containsAny(instanceVariables, methodAccesses.written);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns the ids of every method enclosing the node, nested methods (for example of
+	 * anonymous classes) count for their enclosing methods through their type's parent
+	 */
+	private static int[] getContainingMethods(GraphBackend graph, int node){
+		int[] methods = new int[0];
+		for(int container = graph.getParent(node); container >= 0; container = graph.getParent(container)){
+			if(graph.hasTag(container, XCSG.Method)){
+				methods = Arrays.copyOf(methods, methods.length + 1);
+				methods[methods.length - 1] = container;
+			}
+		}
+		return methods;
+	}
+	
+	private static void addStaticCaller(Map<Integer,int[]> staticCallers, int callee, int caller){
+		int[] callers = staticCallers.get(callee);
+		staticCallers.put(callee, add(callers == null ? new int[0] : callers, caller));
+	}
+	
+	/**
+	 * Adds the accesses of each static method to its callers until no method gains an
+	 * access, so accesses reach callers through chains and cycles of static calls
+	 */
+	private void propagate(Map<Integer,int[]> staticCallers){
+		Deque<Integer> changed = new ArrayDeque<Integer>();
+		Set<Integer> queued = new HashSet<Integer>();
+		for(Integer callee : staticCallers.keySet()){
+			if(accesses.containsKey(callee)){
+				changed.add(callee);
+				queued.add(callee);
+			}
+		}
+		while(!changed.isEmpty()){
+			int callee = changed.poll();
+			queued.remove(callee);
+			FieldAccesses calleeAccesses = getAccesses(callee);
+			for(int caller : staticCallers.get(callee)){
+				if(caller == callee){
+					continue;
+				}
+				FieldAccesses callerAccesses = getOrCreate(caller);
+				int[] read = addAll(callerAccesses.read, calleeAccesses.read);
+				int[] written = addAll(callerAccesses.written, calleeAccesses.written);
+				if(read != callerAccesses.read || written != callerAccesses.written){
+					callerAccesses.read = read;
+					callerAccesses.written = written;
+					if(staticCallers.containsKey(caller) && queued.add(caller)){
+						changed.add(caller);
+					}
+				}
+			}
+		}
+	}
+	
+	private FieldAccesses getOrCreate(int method){
+		FieldAccesses methodAccesses = accesses.get(method);
+		if(methodAccesses == null){
+			methodAccesses = new FieldAccesses();
+			accesses.put(method, methodAccesses);
+		}
+		return methodAccesses;
+	}
+	
+	/**
+	 * Adds the id to the sorted array if it is not already present
+	 */
+	private static int[] add(int[] ids, int id){
+		int position = Arrays.binarySearch(ids, id);
+		if(position >= 0){
+			return ids;
+		}
+		position = -position - 1;
+		int[] result = new int[ids.length + 1];
+		System.arraycopy(ids, 0, result, 0, position);
+		result[position] = id;
+		System.arraycopy(ids, position, result, position + 1, ids.length - position);
+		return result;
+	}
+	
+	/**
+	 * Adds the ids to the sorted array, returning the array itself if all were present
+	 */
+	private static int[] addAll(int[] ids, int[] added){
+		for(int id : added){
+			ids = add(ids, id);
+		}
+		return ids;
+	}
+	
+	private static boolean containsAny(int[] sortedIds, int[] ids){
+		for(int id : ids){
+			if(Arrays.binarySearch(sortedIds, id) >= 0){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean containsAny(AtlasSet<Node> nodes, int[] ids, NodeIndex nodeIndex){
+		for(int id : ids){
+			if(nodes.contains(nodeIndex.getNode(id))){
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the node index numbering methods and instance variables, null if the index was built from a graph backend
+	 */
+	public NodeIndex getNodeIndex(){
+		return nodeIndex;
+	}
+	
+	public FieldAccesses getAccesses(Node method){
+		return nodeIndex == null ? NO_ACCESSES : getAccesses(nodeIndex.getId(method));
+	}
+	
+	public FieldAccesses getAccesses(int method){
+		FieldAccesses methodAccesses = accesses.get(method);
+		return methodAccesses == null ? NO_ACCESSES : methodAccesses;
+	}
+	
+	public boolean touchesInstanceState(Node method){
+		return getAccesses(method).touchesInstanceState();
+	}
+	
+	public boolean touchesInstanceState(int method){
+		return getAccesses(method).touchesInstanceState();
+	}
+	
+}
@@ -0,0 +1,198 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import com.ensoftcorp.atlas.core.log.Log;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * Adds ACC_FINAL to classes and methods in a jar so HotSpot can bind their calls without
+ * relying on class hierarchy analysis and deoptimization. The jar's own classes are checked
+ * first: a class another class in the jar extends, or a method a subclass in the jar
+ * declares again, is left unchanged even if the analysis found no subtype or override.
+ */
+public class FinalModifierRewriter {
+	
+	private final Set<String> classNames;
+	private final Set<String> methodKeys;
+	
+	private final Set<String> finalClasses = new HashSet<String>();
+	private final Set<String> finalMethods = new HashSet<String>();
+	
+	/**
+	 * Creates a rewriter for the classes with the given internal names and the methods with
+	 * the given keys, see RewritePlan.MethodRef.getKey()
+	 */
+	public FinalModifierRewriter(Set<String> classNames, Set<String> methodKeys){
+		this.classNames = classNames;
+		this.methodKeys = methodKeys;
+	}
+	
+	/**
+	 * Returns the number of classes declared final in the last rewritten jar
+	 */
+	public int getFinalClasses(){
+		return finalClasses.size();
+	}
+	
+	/**
+	 * Returns the number of methods declared final in the last rewritten jar
+	 */
+	public int getFinalMethods(){
+		return finalMethods.size();
+	}
+	
+	/**
+	 * Rewrites the classes of the input jar into the output jar, other entries are copied
+	 */
+	public void rewrite(File input, File output) throws IOException {
+		if(input.getCanonicalFile().equals(output.getCanonicalFile())){
+			throw new IllegalArgumentException("Rewritten jar must not overwrite " + input.getName());
+		}
+		finalClasses.clear();
+		finalMethods.clear();
+		
+		JarFile jar = new JarFile(input);
+		try {
+			check(jar);
+			int signatures = 0;
+			JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+			try {
+				Enumeration<JarEntry> entries = jar.entries();
+				while(entries.hasMoreElements()){
+					JarEntry entry = entries.nextElement();
+					if(BytecodeRewriter.isSignature(entry.getName())){
+						signatures++;
+						continue;
+					}
+					byte[] bytes = BytecodeRewriter.read(jar, entry);
+					if(entry.getName().endsWith(".class")){
+						bytes = rewrite(bytes);
+					}
+					JarEntry copy = new JarEntry(entry.getName());
+					copy.setTime(entry.getTime());
+					out.putNextEntry(copy);
+					out.write(bytes);
+					out.closeEntry();
+				}
+			} finally {
+				out.close();
+			}
+			if(signatures > 0){
+				Log.warning("Dropped " + signatures + " signature files from " + input.getName());
+			}
+		} finally {
+			jar.close();
+		}
+		Log.info("Declared " + finalClasses.size() + " classes and " + finalMethods.size() + " methods final in " + output.getName());
+	}
+	
+	/**
+	 * Finds the planned classes and methods that no class in the jar extends or overrides
+	 */
+	private void check(JarFile jar) throws IOException {
+		Map<String,String> superNames = new HashMap<String,String>();
+		Map<String,Set<String>> declaredMethods = new HashMap<String,Set<String>>();
+		Set<String> classes = new HashSet<String>();
+		Set<String> methodsInJar = new HashSet<String>();
+		Enumeration<JarEntry> entries = jar.entries();
+		while(entries.hasMoreElements()){
+			JarEntry entry = entries.nextElement();
+			if(!entry.getName().endsWith(".class")){
+				continue;
+			}
+			ClassNode classNode = new ClassNode();
+			new ClassReader(BytecodeRewriter.read(jar, entry)).accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+			classes.add(classNode.name);
+			if(classNode.superName != null){
+				superNames.put(classNode.name, classNode.superName);
+			}
+			Set<String> methods = new HashSet<String>();
+			for(MethodNode method : classNode.methods){
+				methodsInJar.add(MethodRef.getKey(classNode.name, method.name, method.desc));
+				if((method.access & (Opcodes.ACC_STATIC | Opcodes.ACC_PRIVATE)) == 0 && !method.name.startsWith("<")){
+					methods.add(method.name + method.desc);
+				}
+			}
+			declaredMethods.put(classNode.name, methods);
+		}
+		
+		Set<String> extended = new HashSet<String>(superNames.values());
+		Set<String> overridden = new HashSet<String>();
+		for(Map.Entry<String,Set<String>> declared : declaredMethods.entrySet()){
+			for(String superName = superNames.get(declared.getKey()); superName != null; superName = superNames.get(superName)){
+				for(String method : declared.getValue()){
+					int descriptor = method.indexOf('(');
+					overridden.add(MethodRef.getKey(superName, method.substring(0, descriptor), method.substring(descriptor)));
+				}
+			}
+		}
+		for(String className : classNames){
+			if(classes.contains(className) && !extended.contains(className)){
+				finalClasses.add(className);
+			}
+		}
+		for(String methodKey : methodKeys){
+			if(methodsInJar.contains(methodKey) && !overridden.contains(methodKey)){
+				finalMethods.add(methodKey);
+			}
+		}
+	}
+	
+	private byte[] rewrite(byte[] bytes){
+		ClassReader reader = new ClassReader(bytes);
+		ClassWriter writer = new ClassWriter(reader, 0);
+		reader.accept(new FinalizingClassVisitor(writer), 0);
+		return writer.toByteArray();
+	}
+	
+	private class FinalizingClassVisitor extends ClassVisitor {
+		
+		private String className;
+		
+		public FinalizingClassVisitor(ClassVisitor cv){
+			super(Opcodes.ASM9, cv);
+		}
+		
+		@Override
+		public void visit(int version, int access, String name, String signature, String superName, String[] interfaces){
+			className = name;
+			super.visit(version, finalClasses.contains(name) ? access | Opcodes.ACC_FINAL : access, name, signature, superName, interfaces);
+		}
+		
+		@Override
+		public void visitInnerClass(String name, String outerName, String innerName, int access){
+			// reflection reads a nested class's modifiers from its InnerClasses entry
+			super.visitInnerClass(name, outerName, innerName, finalClasses.contains(name) ? access | Opcodes.ACC_FINAL : access);
+		}
+		
+		@Override
+		public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions){
+			if(finalMethods.contains(MethodRef.getKey(className, name, descriptor))){
+				access |= Opcodes.ACC_FINAL;
+			}
+			return super.visitMethod(access, name, descriptor, signature, exceptions);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,71 @@
+package com.kcsl.ddresolver;
+
+/**
+ * The graph operations the classifier needs, over dense integer node ids.
+ * AtlasGraphBackend answers them with Atlas queries, CsrGraphBackend from
+ * primitive arrays that can be saved and loaded without Atlas.
+ */
+public interface GraphBackend {
+	
+	/**
+	 * Returns the number of node ids, ids run from 0 to size() - 1
+	 */
+	int size();
+	
+	/**
+	 * Returns true if the node is tagged with the XCSG tag
+	 */
+	boolean hasTag(int node, String tag);
+	
+	/**
+	 * Returns the id of the node's container or -1 if it has none
+	 */
+	int getParent(int node);
+	
+	/**
+	 * Returns the ids of the node's direct children tagged with the XCSG tag
+	 */
+	int[] getChildren(int node, String tag);
+	
+	/**
+	 * Returns the ids of the nodes tagged with the XCSG tag declared anywhere inside the method,
+	 * including inside its local and anonymous classes, see CommonQueries.localDeclarations
+	 */
+	int[] getDeclarations(int method, String tag);
+	
+	/**
+	 * Returns the ids of the type and all of its supertypes
+	 */
+	int[] getSupertypes(int type);
+	
+	/**
+	 * Returns true if the method is an instance method the type declares or inherits
+	 */
+	boolean hasInstanceMethod(int type, int method);
+	
+	/**
+	 * Returns the ids of the methods the callsite may dispatch to under the algorithm
+	 */
+	int[] getTargets(CallGraphAlgorithm algorithm, int callsite);
+	
+	/**
+	 * Returns the number of methods the callsite may dispatch to under the algorithm
+	 */
+	int getTargetCount(CallGraphAlgorithm algorithm, int callsite);
+	
+	/**
+	 * Returns the ids of the callsites that may dispatch to the method under the algorithm
+	 */
+	int[] getCallsites(CallGraphAlgorithm algorithm, int method);
+	
+	/**
+	 * Returns the ids of the nodes the node's value flows to
+	 */
+	int[] getDataFlowSuccessors(int node);
+	
+	/**
+	 * Returns the ids of the nodes whose values flow to the node
+	 */
+	int[] getDataFlowPredecessors(int node);
+	
+}
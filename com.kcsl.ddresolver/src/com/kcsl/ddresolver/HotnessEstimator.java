@@ -0,0 +1,367 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Edge;
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+import com.ensoftcorp.open.java.commons.analysis.SetDefinitions;
+
+/**
+ * Statically estimates how often methods and callsites run so devirtualization candidates
+ * can be ranked by the dynamic dispatches they save. A callsite runs as often as its method
+ * times LOOP_ITERATIONS for each loop it is nested in, and a method runs as often as the
+ * callsites that may dispatch to it, each callsite's frequency split evenly between its
+ * targets. Methods without callers run once, calls back into a method that is still on
+ * the call chain (recursion) are not counted.
+ */
+public class HotnessEstimator {
+	
+	/**
+	 * The number of times each loop is assumed to iterate
+	 */
+	public static final double LOOP_ITERATIONS = 10;
+	
+	// keeps deep call chains through nested loops from overflowing
+	private static final double MAX_FREQUENCY = 1e18;
+	
+	private final CallGraphAlgorithm algorithm;
+	private final CallsiteIndex callsites;
+	
+	// control flow node -> the loop header it is a loop child of
+	private Map<Node,Node> loopHeaders;
+	private final Map<Node,Integer> loopDepths = new HashMap<Node,Integer>();
+	
+	private final Map<Node,Integer> callsiteLoopDepths = new HashMap<Node,Integer>();
+	private final Map<Node,Double> callsiteFrequencies = new HashMap<Node,Double>();
+	private final Map<Node,Double> methodFrequencies = new HashMap<Node,Double>();
+	
+	/**
+	 * Creates an estimator that follows the algorithm's resolved call graph,
+	 * the callsite index must index the algorithm's per control flow edges
+	 */
+	public HotnessEstimator(CallGraphAlgorithm algorithm, CallsiteIndex callsites){
+		this.algorithm = algorithm;
+		this.callsites = callsites;
+	}
+	
+	public HotnessEstimator(CallGraphAlgorithm algorithm){
+		this(algorithm, CallsiteIndex.build(algorithm.getPerControlFlowTag(), new NodeIndex()));
+	}
+	
+	public CallGraphAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+	
+	/**
+	 * Estimates the frequencies of the application methods and their callsites
+	 */
+	public HotnessEstimator estimate(){
+		return estimate(SetDefinitions.app().nodes(XCSG.Method));
+	}
+	
+	/**
+	 * Estimates the frequencies of the methods and their callsites,
+	 * only calls between the given methods are propagated
+	 */
+	public HotnessEstimator estimate(Q methods){
+		callsiteLoopDepths.clear();
+		callsiteFrequencies.clear();
+		methodFrequencies.clear();
+		
+		Map<Node,List<Node>> methodCallsites = new LinkedHashMap<Node,List<Node>>();
+		for(Node method : methods.eval().nodes()){
+			List<Node> localCallsites = new ArrayList<Node>();
+			for(Node callsite : CommonQueries.localDeclarations(Common.toQ(method)).nodes(XCSG.CallSite).eval().nodes()){
+				localCallsites.add(callsite);
+				callsiteLoopDepths.put(callsite, getLoopDepth(callsite));
+			}
+			methodCallsites.put(method, localCallsites);
+		}
+		
+		// visiting methods in reverse post order means every caller not on a cycle through
+		// the method is final before the method's own callsites are propagated
+		List<Node> order = getReversePostOrder(methodCallsites);
+		Map<Node,Integer> positions = new HashMap<Node,Integer>();
+		for(int i=0; i<order.size(); i++){
+			positions.put(order.get(i), i);
+		}
+		for(Node method : order){
+			Double frequency = methodFrequencies.get(method);
+			if(frequency == null){
+				// nothing earlier in the order calls the method, treat it as an entry point
+				frequency = 1.0;
+				methodFrequencies.put(method, frequency);
+			}
+			int position = positions.get(method);
+			for(Node callsite : methodCallsites.get(method)){
+				double callsiteFrequency = Math.min(MAX_FREQUENCY, frequency * Math.pow(LOOP_ITERATIONS, callsiteLoopDepths.get(callsite)));
+				callsiteFrequencies.put(callsite, callsiteFrequency);
+				int[] targets = callsites.getTargets(callsite);
+				for(int target : targets){
+					Node targetMethod = callsites.getNodeIndex().getNode(target);
+					Integer targetPosition = positions.get(targetMethod);
+					if(targetPosition != null && targetPosition > position){
+						Double targetFrequency = methodFrequencies.get(targetMethod);
+						double share = callsiteFrequency / targets.length;
+						methodFrequencies.put(targetMethod, Math.min(MAX_FREQUENCY, targetFrequency == null ? share : targetFrequency + share));
+					}
+				}
+			}
+		}
+		return this;
+	}
+	
+	/**
+	 * Orders the methods so callers come before callees, starting from the methods without callers
+	 */
+	private List<Node> getReversePostOrder(Map<Node,List<Node>> methodCallsites){
+		List<Node> roots = new ArrayList<Node>();
+		List<Node> others = new ArrayList<Node>();
+		for(Node method : methodCallsites.keySet()){
+			// only callsites of the estimated methods have a loop depth
+			boolean called = false;
+			for(int callsite : callsites.getCallsites(method)){
+				if(callsiteLoopDepths.containsKey(callsites.getNodeIndex().getNode(callsite))){
+					called = true;
+					break;
+				}
+			}
+			(called ? others : roots).add(method);
+		}
+		roots.addAll(others);
+		
+		List<Node> postOrder = new ArrayList<Node>();
+		Set<Node> visited = new HashSet<Node>();
+		Deque<Node> stack = new ArrayDeque<Node>();
+		Deque<Iterator<Node>> successors = new ArrayDeque<Iterator<Node>>();
+		for(Node root : roots){
+			if(!visited.add(root)){
+				continue;
+			}
+			stack.push(root);
+			successors.push(getCallees(root, methodCallsites).iterator());
+			while(!stack.isEmpty()){
+				Node next = null;
+				Iterator<Node> callees = successors.peek();
+				while(next == null && callees.hasNext()){
+					Node callee = callees.next();
+					if(visited.add(callee)){
+						next = callee;
+					}
+				}
+				if(next == null){
+					postOrder.add(stack.pop());
+					successors.pop();
+				} else {
+					stack.push(next);
+					successors.push(getCallees(next, methodCallsites).iterator());
+				}
+			}
+		}
+		Collections.reverse(postOrder);
+		return postOrder;
+	}
+	
+	private Iterable<Node> getCallees(Node method, Map<Node,List<Node>> methodCallsites){
+		Set<Node> callees = new LinkedHashSet<Node>();
+		for(Node callsite : methodCallsites.get(method)){
+			for(int target : callsites.getTargets(callsite)){
+				Node callee = callsites.getNodeIndex().getNode(target);
+				if(methodCallsites.containsKey(callee)){
+					callees.add(callee);
+				}
+			}
+		}
+		return callees;
+	}
+	
+	/**
+	 * Returns the number of loops the callsite is nested in
+	 */
+	public int getLoopDepth(Node callsite){
+		Integer depth = callsiteLoopDepths.get(callsite);
+		if(depth != null){
+			return depth;
+		}
+		Node statement = Common.toQ(callsite).containers().nodes(XCSG.ControlFlow_Node).eval().nodes().one();
+		return statement == null ? 0 : getStatementLoopDepth(statement);
+	}
+	
+	private int getStatementLoopDepth(Node statement){
+		if(loopHeaders == null){
+			loopHeaders = new HashMap<Node,Node>();
+			for(Edge loopChild : SetDefinitions.app().edges(XCSG.LoopChild).eval().edges()){
+				loopHeaders.put(loopChild.to(), loopChild.from());
+			}
+		}
+		Integer depth = loopDepths.get(statement);
+		if(depth == null){
+			Node header = loopHeaders.get(statement);
+			depth = (header == null ? 0 : getStatementLoopDepth(header)) + (statement.taggedWith(XCSG.Loop) ? 1 : 0);
+			loopDepths.put(statement, depth);
+		}
+		return depth;
+	}
+	
+	/**
+	 * Returns the estimated number of times the callsite runs, 0 if it was not estimated
+	 */
+	public double getCallsiteFrequency(Node callsite){
+		Double frequency = callsiteFrequencies.get(callsite);
+		return frequency == null ? 0 : frequency;
+	}
+	
+	/**
+	 * Returns the estimated number of times the method runs, 0 if it was not estimated
+	 */
+	public double getMethodFrequency(Node method){
+		Double frequency = methodFrequencies.get(method);
+		return frequency == null ? 0 : frequency;
+	}
+	
+	/**
+	 * Returns the estimated dispatches saved by transforming the method, the
+	 * frequency of the CALLSITETRANSFORMABLE callsites that may only dispatch to it
+	 */
+	public double getMethodSavings(Node method, Classification classification){
+		Double savings = getMethodSavings(classification).get(method);
+		return savings == null ? 0 : savings;
+	}
+	
+	private Map<Node,Double> getMethodSavings(Classification classification){
+		Map<Node,Double> savings = new HashMap<Node,Double>();
+		for(Node callsite : classification.get(Classification.CALLSITE_TRANSFORMABLE)){
+			for(int target : callsites.getTargets(callsite)){
+				Node method = callsites.getNodeIndex().getNode(target);
+				Double methodSavings = savings.get(method);
+				savings.put(method, (methodSavings == null ? 0 : methodSavings) + getCallsiteFrequency(callsite));
+			}
+		}
+		return savings;
+	}
+	
+	/**
+	 * Returns the CALLSITETRANSFORMABLE and CALLSITEGUARDABLE callsites, most frequent first
+	 */
+	public List<Node> rankCallsites(Classification classification){
+		List<Node> ranked = new ArrayList<Node>(classification.get(Classification.CALLSITE_TRANSFORMABLE));
+		ranked.addAll(classification.get(Classification.CALLSITE_GUARDABLE));
+		Collections.sort(ranked, new Comparator<Node>(){
+			@Override
+			public int compare(Node a, Node b){
+				return Double.compare(getCallsiteFrequency(b), getCallsiteFrequency(a));
+			}
+		});
+		return ranked;
+	}
+	
+	/**
+	 * Returns the REWRITE and CLONE methods, most estimated savings first
+	 */
+	public List<Node> rankMethods(Classification classification){
+		final Map<Node,Double> savings = getMethodSavings(classification);
+		List<Node> ranked = new ArrayList<Node>(classification.get(Classification.REWRITE));
+		ranked.addAll(classification.get(Classification.CLONE));
+		Collections.sort(ranked, new Comparator<Node>(){
+			@Override
+			public int compare(Node a, Node b){
+				Double aSavings = savings.get(a);
+				Double bSavings = savings.get(b);
+				return Double.compare(bSavings == null ? 0 : bSavings, aSavings == null ? 0 : aSavings);
+			}
+		});
+		return ranked;
+	}
+	
+	/**
+	 * Returns a copy of the classification that only keeps the given number of most
+	 * frequent transformable and guardable callsites and the methods they dispatch to
+	 */
+	public Classification limit(Classification classification, int callsiteLimit){
+		List<Node> ranked = rankCallsites(classification);
+		Set<Node> kept = new HashSet<Node>(ranked.subList(0, Math.min(callsiteLimit, ranked.size())));
+		Set<Node> targets = new HashSet<Node>();
+		for(Node callsite : kept){
+			for(int target : callsites.getTargets(callsite)){
+				targets.add(callsites.getNodeIndex().getNode(target));
+			}
+		}
+		Classification limited = new Classification(classification.getAlgorithm());
+		for(String category : classification.getCategories()){
+			for(Node node : classification.get(category)){
+				boolean keep;
+				if(category.equals(Classification.CALLSITE_TRANSFORMABLE) || category.equals(Classification.CALLSITE_GUARDABLE)){
+					keep = kept.contains(node);
+				} else if(category.equals(Classification.TRANSFORMABLE) || category.equals(Classification.REWRITE) || category.equals(Classification.CLONE)){
+					keep = targets.contains(node);
+				} else {
+					keep = true;
+				}
+				if(keep){
+					limited.add(category, node);
+				}
+			}
+		}
+		return limited;
+	}
+	
+	/**
+	 * Writes the ranked callsites to the output and the ranked methods next to it as <output>.methods.csv
+	 */
+	public void writeReport(Classification classification, File output) throws IOException {
+		Set<Node> transformable = new HashSet<Node>(classification.get(Classification.CALLSITE_TRANSFORMABLE));
+		FileWriter fw = new FileWriter(output);
+		try {
+			fw.write("Rank,Callsite,Location,Caller,Category,Targets,Loop Depth,Estimated Frequency\n");
+			int rank = 1;
+			for(Node callsite : rankCallsites(classification)){
+				Node caller = CommonQueries.getContainingFunction(callsite);
+				String category = transformable.contains(callsite) ? Classification.CALLSITE_TRANSFORMABLE : Classification.CALLSITE_GUARDABLE;
+				fw.write(rank++ + "," + ReportFormat.quote(String.valueOf(callsite.getAttr(XCSG.name))) + ","
+						+ ReportFormat.quote(ReportFormat.getLocation(callsite)) + ","
+						+ ReportFormat.quote(caller == null ? "" : NodeKeys.getSignature(caller)) + ","
+						+ algorithm.getTag(category) + "," + callsites.getTargetCount(callsite) + ","
+						+ getLoopDepth(callsite) + "," + ReportFormat.format(getCallsiteFrequency(callsite)) + "\n");
+			}
+		} finally {
+			fw.close();
+		}
+		
+		Map<Node,Double> savings = getMethodSavings(classification);
+		Set<Node> clones = new HashSet<Node>(classification.get(Classification.CLONE));
+		fw = new FileWriter(new File(output.getPath() + ".methods.csv"));
+		try {
+			fw.write("Rank,Method,Category,Estimated Frequency,Estimated Savings\n");
+			int rank = 1;
+			for(Node method : rankMethods(classification)){
+				Double methodSavings = savings.get(method);
+				fw.write(rank++ + "," + ReportFormat.quote(NodeKeys.getSignature(method)) + ","
+						+ algorithm.getTag(clones.contains(method) ? Classification.CLONE : Classification.REWRITE) + ","
+						+ ReportFormat.format(getMethodFrequency(method)) + ","
+						+ ReportFormat.format(methodSavings == null ? 0 : methodSavings) + "\n");
+			}
+		} finally {
+			fw.close();
+		}
+	}
+	
+}
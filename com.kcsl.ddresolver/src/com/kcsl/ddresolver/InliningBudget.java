@@ -0,0 +1,95 @@
+package com.kcsl.ddresolver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * Classifies single target callsites by whether HotSpot could inline their target once the
+ * callsite is a static dispatch. Targets of at most MaxInlineSize bytes are inlined at any
+ * callsite, targets of at most FreqInlineSize bytes only at frequently executed callsites.
+ */
+public class InliningBudget {
+	
+	public static final String INLINABLE = "INLINABLE";
+	public static final String HOT_INLINABLE = "HOT-INLINABLE";
+	public static final String TOO_LARGE = "TOO-LARGE";
+	public static final String UNKNOWN_SIZE = "UNKNOWN-SIZE";
+	
+	private final BytecodeSizes sizes;
+	private int maxInlineSize = ResolverPreferences.getMaxInlineSize();
+	private int freqInlineSize = ResolverPreferences.getFreqInlineSize();
+	
+	public InliningBudget(BytecodeSizes sizes){
+		this.sizes = sizes;
+	}
+	
+	public int getMaxInlineSize(){
+		return maxInlineSize;
+	}
+	
+	public void setMaxInlineSize(int maxInlineSize){
+		this.maxInlineSize = maxInlineSize;
+	}
+	
+	public int getFreqInlineSize(){
+		return freqInlineSize;
+	}
+	
+	public void setFreqInlineSize(int freqInlineSize){
+		this.freqInlineSize = freqInlineSize;
+	}
+	
+	public BytecodeSizes getSizes(){
+		return sizes;
+	}
+	
+	/**
+	 * Returns the method's inlining category, UNKNOWN_SIZE if its bytecode was not loaded or it has no code
+	 */
+	public String classify(Node method){
+		return classify(RewritePlan.getMethodRef(method));
+	}
+	
+	/**
+	 * Returns the class file method's inlining category, UNKNOWN_SIZE if it is null, 
+	 * its bytecode was not loaded or it has no code
+	 */
+	public String classify(MethodRef method){
+		int size = method == null ? -1 : sizes.getCodeLength(method.getOwner(), method.getName(), method.getDescriptor());
+		if(size < 0){
+			return UNKNOWN_SIZE;
+		}
+		if(size <= maxInlineSize){
+			return INLINABLE;
+		}
+		return size <= freqInlineSize ? HOT_INLINABLE : TOO_LARGE;
+	}
+	
+	/**
+	 * Returns the single method the indexed callsite dispatches to, or null
+	 */
+	public static Node getTarget(CallsiteIndex callsites, Node callsite){
+		int[] targets = callsites.getTargets(callsite);
+		return targets.length == 1 ? callsites.getNodeIndex().getNode(targets[0]) : null;
+	}
+	
+	/**
+	 * Returns the number of callsite targets in each category, in the order INLINABLE,
+	 * HOT_INLINABLE, TOO_LARGE, UNKNOWN_SIZE. A null target counts as UNKNOWN_SIZE.
+	 */
+	public Map<String,Integer> count(Iterable<MethodRef> targets){
+		Map<String,Integer> counts = new LinkedHashMap<String,Integer>();
+		for(String category : new String[]{ INLINABLE, HOT_INLINABLE, TOO_LARGE, UNKNOWN_SIZE }){
+			counts.put(category, 0);
+		}
+		for(MethodRef target : targets){
+			String category = classify(target);
+			counts.put(category, counts.get(category) + 1);
+		}
+		return counts;
+	}
+	
+}
@@ -0,0 +1,235 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Graph;
+import com.ensoftcorp.atlas.core.query.Q;
+
+/**
+ * Collects per phase wall time (monotonic nanoseconds), thread CPU time, thread allocated 
+ * bytes and the number of Q evaluations made. A phase may be timed many times from many 
+ * threads, each timing measures the thread it was started on.
+ */
+public class Instrumentation {
+
+	public static final String CALL_GRAPH_CONSTRUCTION = "Call Graph Construction";
+	public static final String CALLSITE_INDEXING = "Callsite Indexing";
+	public static final String FIELD_ACCESS_INDEXING = "Field Access Indexing";
+	public static final String SHOULD_BE_STATIC = "Should Be Static";
+	public static final String METHOD_TAGGING = "Method Tagging";
+	public static final String CALLSITE_TAGGING = "Callsite Tagging";
+	public static final String LOOP_FILTERING = "Loop Filtering";
+	public static final String VENN_COMPUTATION = "Venn Computation";
+	public static final String RESULT_CACHE = "Result Cache";
+	public static final String INCREMENTAL_DIFF = "Incremental Diff";
+	public static final String CASCADE_RESOLUTION = "Cascade Resolution";
+	
+	/**
+	 * An instrumentation that records nothing
+	 */
+	public static final Instrumentation DISABLED = new Instrumentation(false);
+	
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	
+	// the timers running on each thread, evaluations are credited to the innermost
+	private static final ThreadLocal<Deque<Timer>> ACTIVE_TIMERS = new ThreadLocal<Deque<Timer>>(){
+		@Override
+		protected Deque<Timer> initialValue(){
+			return new ArrayDeque<Timer>();
+		}
+	};
+	
+	/**
+	 * The accumulated measurements of a phase
+	 */
+	public static class PhaseStatistics {
+		private final String phase;
+		private long wallTime = 0;
+		private long cpuTime = 0;
+		private long allocatedBytes = 0;
+		private long evaluations = 0;
+		private long timings = 0;
+		
+		private PhaseStatistics(String phase){
+			this.phase = phase;
+		}
+		
+		public String getPhase(){
+			return phase;
+		}
+		
+		public synchronized long getWallTime(){
+			return wallTime;
+		}
+		
+		/**
+		 * Returns the CPU nanoseconds used by the timed threads, or -1 if the JVM does not measure thread CPU time
+		 */
+		public synchronized long getCpuTime(){
+			return cpuTime;
+		}
+		
+		/**
+		 * Returns the bytes allocated by the timed threads, or -1 if the JVM does not measure thread allocations
+		 */
+		public synchronized long getAllocatedBytes(){
+			return allocatedBytes;
+		}
+		
+		public synchronized long getEvaluations(){
+			return evaluations;
+		}
+		
+		/**
+		 * Returns the number of times the phase was timed
+		 */
+		public synchronized long getTimings(){
+			return timings;
+		}
+		
+		private synchronized void add(Timer timer, long wallTime, long cpuTime, long allocatedBytes){
+			this.wallTime += wallTime;
+			this.cpuTime = (cpuTime < 0 || this.cpuTime < 0) ? -1 : this.cpuTime + cpuTime;
+			this.allocatedBytes = (allocatedBytes < 0 || this.allocatedBytes < 0) ? -1 : this.allocatedBytes + allocatedBytes;
+			this.evaluations += timer.evaluations;
+			this.timings++;
+		}
+	}
+	
+	/**
+	 * A single running measurement of a phase, must be stopped on the thread that started it
+	 */
+	public static class Timer {
+		private final PhaseStatistics statistics;
+		private final long wallStart;
+		private final long cpuStart;
+		private final long allocatedStart;
+		private long evaluations = 0;
+		
+		private Timer(PhaseStatistics statistics){
+			this.statistics = statistics;
+			if(statistics != null){
+				ACTIVE_TIMERS.get().push(this);
+				this.cpuStart = getCurrentThreadCpuTime();
+				this.allocatedStart = getCurrentThreadAllocatedBytes();
+				this.wallStart = System.nanoTime();
+			} else {
+				this.cpuStart = 0;
+				this.allocatedStart = 0;
+				this.wallStart = 0;
+			}
+		}
+		
+		public void stop(){
+			if(statistics != null){
+				long wallTime = System.nanoTime() - wallStart;
+				long cpuTime = cpuStart < 0 ? -1 : getCurrentThreadCpuTime() - cpuStart;
+				long allocatedBytes = allocatedStart < 0 ? -1 : getCurrentThreadAllocatedBytes() - allocatedStart;
+				ACTIVE_TIMERS.get().remove(this);
+				statistics.add(this, wallTime, cpuTime, allocatedBytes);
+			}
+		}
+	}
+	
+	private static final Timer NO_TIMER = new Timer(null);
+	
+	private final boolean enabled;
+	private final Map<String,PhaseStatistics> phases = new LinkedHashMap<String,PhaseStatistics>();
+	
+	public Instrumentation(){
+		this(true);
+	}
+	
+	private Instrumentation(boolean enabled){
+		this.enabled = enabled;
+	}
+	
+	public boolean isEnabled(){
+		return enabled;
+	}
+	
+	/**
+	 * Starts timing the phase on the current thread
+	 */
+	public Timer start(String phase){
+		if(!enabled){
+			return NO_TIMER;
+		}
+		PhaseStatistics statistics;
+		synchronized(phases){
+			statistics = phases.get(phase);
+			if(statistics == null){
+				statistics = new PhaseStatistics(phase);
+				phases.put(phase, statistics);
+			}
+		}
+		return new Timer(statistics);
+	}
+	
+	/**
+	 * Returns the statistics of the phase or null if it was never timed
+	 */
+	public PhaseStatistics getStatistics(String phase){
+		synchronized(phases){
+			return phases.get(phase);
+		}
+	}
+	
+	public List<PhaseStatistics> getStatistics(){
+		synchronized(phases){
+			return new ArrayList<PhaseStatistics>(phases.values());
+		}
+	}
+	
+	/**
+	 * Evaluates the query, counting the evaluation against the innermost phase timed on this thread
+	 */
+	public static Graph eval(Q q){
+		Timer timer = ACTIVE_TIMERS.get().peek();
+		if(timer != null){
+			timer.evaluations++;
+		}
+		return q.eval();
+	}
+	
+	/**
+	 * Writes one CSV row per phase
+	 */
+	public void write(File output) throws IOException {
+		FileWriter fw = new FileWriter(output);
+		fw.write("Phase,Wall Time (ns),CPU Time (ns),Allocated Bytes,Q Evaluations,Timings\n");
+		for(PhaseStatistics statistics : getStatistics()){
+			fw.write(statistics.getPhase() + "," + statistics.getWallTime() + "," + statistics.getCpuTime() + "," 
+					+ statistics.getAllocatedBytes() + "," + statistics.getEvaluations() + "," + statistics.getTimings() + "\n");
+		}
+		fw.close();
+	}
+	
+	private static long getCurrentThreadCpuTime(){
+		if(THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()){
+			return THREADS.getCurrentThreadCpuTime();
+		}
+		return -1;
+	}
+	
+	private static long getCurrentThreadAllocatedBytes(){
+		if(THREADS instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()){
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+	
+}
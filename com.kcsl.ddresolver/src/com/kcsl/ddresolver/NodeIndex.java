@@ -0,0 +1,46 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+
+/**
+ * Assigns dense integer ids to graph nodes so per-node data can be kept in primitive arrays. 
+ * An index may be shared between threads, nodes added concurrently get distinct ids.
+ */
+public class NodeIndex {
+
+	private final HashMap<Node,Integer> ids = new HashMap<Node,Integer>();
+	private final ArrayList<Node> nodes = new ArrayList<Node>();
+	
+	/**
+	 * Returns the id of the node, assigning the next free id if the node has not been seen
+	 */
+	public synchronized int add(Node node){
+		Integer id = ids.get(node);
+		if(id == null){
+			id = nodes.size();
+			ids.put(node, id);
+			nodes.add(node);
+		}
+		return id;
+	}
+	
+	/**
+	 * Returns the id of the node or -1 if the node has not been indexed
+	 */
+	public synchronized int getId(Node node){
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+	
+	public synchronized Node getNode(int id){
+		return nodes.get(id);
+	}
+	
+	public synchronized int size(){
+		return nodes.size();
+	}
+	
+}
@@ -0,0 +1,115 @@
+package com.kcsl.ddresolver;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.index.common.SourceCorrespondence;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Computes keys for nodes that stay the same when a project is indexed again, 
+ * so results can be saved in one run and matched to nodes in a later run
+ */
+public class NodeKeys {
+
+	/**
+	 * Returns the key of the node built from its source location (when it has one) 
+	 * and the names of the node and its containers
+	 */
+	public static String getKey(Node node){
+		return getKey(node, getQualifiedName(node));
+	}
+	
+	private static String getKey(Node node, String qualifiedName){
+		StringBuilder key = new StringBuilder();
+		Object sc = node.getAttr(XCSG.sourceCorrespondence);
+		if(sc instanceof SourceCorrespondence){
+			SourceCorrespondence sourceCorrespondence = (SourceCorrespondence) sc;
+			if(sourceCorrespondence.sourceFile != null){
+				key.append(sourceCorrespondence.sourceFile.getFullPath().toString());
+			}
+			key.append(":").append(sourceCorrespondence.offset).append(":").append(sourceCorrespondence.length);
+		}
+		key.append("#").append(qualifiedName);
+		return key.toString();
+	}
+	
+	/**
+	 * Computes the same keys as getKey(Node) but remembers the qualified names of the 
+	 * containers of the nodes it names, so containers shared by many keyed nodes are each 
+	 * looked up only once. The names of the keyed nodes themselves are not kept, so the 
+	 * cache grows with the containers rather than with the nodes keyed. Not thread safe.
+	 */
+	public static class KeyCache {
+		// the qualified name of each container seen
+		private final Map<Node,String> containerNames = new HashMap<Node,String>();
+		
+		public String getKey(Node node){
+			return NodeKeys.getKey(node, getQualifiedName(node));
+		}
+		
+		public String getQualifiedName(Node node){
+			Node container = Common.toQ(node).parent().eval().nodes().one();
+			return container == null || container.taggedWith(XCSG.Project) ? getName(node) : getContainerName(container) + "/" + getName(node);
+		}
+		
+		private String getContainerName(Node container){
+			String name = containerNames.get(container);
+			if(name == null){
+				name = getQualifiedName(container);
+				containerNames.put(container, name);
+			}
+			return name;
+		}
+	}
+	
+	/**
+	 * Returns the names of the node's containers and the node separated by "/"
+	 */
+	public static String getQualifiedName(Node node){
+		StringBuilder name = new StringBuilder(getName(node));
+		Node container = Common.toQ(node).parent().eval().nodes().one();
+		while(container != null && !container.taggedWith(XCSG.Project)){
+			name.insert(0, getName(container) + "/");
+			container = Common.toQ(container).parent().eval().nodes().one();
+		}
+		return name.toString();
+	}
+	
+	/**
+	 * Returns a key for a type or method that does not depend on source offsets, methods 
+	 * include their parameter types so overloads are told apart
+	 */
+	public static String getSignature(Node node){
+		if(!node.taggedWith(XCSG.Method)){
+			return getQualifiedName(node);
+		}
+		Node[] parameters = new Node[0];
+		for(Node parameter : Common.toQ(node).children().nodes(XCSG.Parameter).eval().nodes()){
+			Object index = parameter.getAttr(XCSG.parameterIndex);
+			int position = index instanceof Integer ? (Integer) index : parameters.length;
+			if(position >= parameters.length){
+				parameters = Arrays.copyOf(parameters, position + 1);
+			}
+			parameters[position] = parameter;
+		}
+		StringBuilder signature = new StringBuilder(getQualifiedName(node)).append("(");
+		for(int i=0; i<parameters.length; i++){
+			if(i > 0){
+				signature.append(",");
+			}
+			Node type = parameters[i] == null ? null : Common.edges(XCSG.TypeOf).successors(Common.toQ(parameters[i])).eval().nodes().one();
+			signature.append(type == null ? "?" : getQualifiedName(type));
+		}
+		return signature.append(")").toString();
+	}
+	
+	private static String getName(Node node){
+		Object name = node.getAttr(XCSG.name);
+		return name == null ? "" : name.toString();
+	}
+	
+}
@@ -0,0 +1,299 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.ensoftcorp.atlas.core.db.graph.Edge;
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.index.common.SourceCorrespondence;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Records the parts of a program that callsite target sets depend on: the direct
+ * supertypes, methods and instance variables of each type, the instantiated types
+ * (RRTA) and a hash of each method body (0CFA data flow). Snapshots are saved next
+ * to the result cache and compared with the previous run's snapshot to find what
+ * an incremental run has to reclassify. Types and members are keyed by
+ * NodeKeys.getSignature(Node).
+ */
+public class ProgramSnapshot {
+	
+	private static final int MAGIC = 0x44445350; // DDSP
+	private static final int VERSION = 1;
+	
+	/**
+	 * Body hash of methods without source, such methods are always treated as changed
+	 */
+	private static final long UNKNOWN_BODY = 0;
+	
+	private final Map<String,Set<String>> supertypes = new TreeMap<String,Set<String>>();
+	private final Map<String,Set<String>> members = new TreeMap<String,Set<String>>();
+	private final Set<String> instantiatedTypes = new TreeSet<String>();
+	private final Map<String,Long> bodies = new TreeMap<String,Long>();
+	private final Map<String,String> invokedSignatures = new TreeMap<String,String>();
+	
+	// signatures of the current program's nodes, not saved
+	private final Map<String,Node> nodes = new HashMap<String,Node>();
+	
+	private ProgramSnapshot(){}
+	
+	/**
+	 * Captures the types and methods of the context and the methods invoked by the callsites,
+	 * callsites are keyed by NodeKeys.getKey(Node) since they have no signature of their own
+	 */
+	public static ProgramSnapshot capture(Q context, Q callsites){
+		ProgramSnapshot snapshot = new ProgramSnapshot();
+		
+		for(Node type : context.nodes(XCSG.Type).eval().nodes()){
+			String signature = snapshot.addNode(type);
+			snapshot.supertypes.put(signature, new TreeSet<String>());
+			snapshot.members.put(signature, new TreeSet<String>());
+		}
+		for(Edge supertype : Common.edges(XCSG.Supertype).forwardStep(context.nodes(XCSG.Type)).eval().edges()){
+			String signature = NodeKeys.getSignature(supertype.from());
+			if(snapshot.supertypes.containsKey(signature)){
+				snapshot.supertypes.get(signature).add(NodeKeys.getSignature(supertype.to()));
+			}
+		}
+		
+		Map<File,byte[]> sources = new HashMap<File,byte[]>();
+		for(Node member : context.nodesTaggedWithAny(XCSG.Method, XCSG.InstanceVariable).eval().nodes()){
+			String signature = snapshot.addNode(member);
+			Node type = Common.toQ(member).parent().eval().nodes().one();
+			if(type != null && snapshot.members.containsKey(NodeKeys.getSignature(type))){
+				snapshot.members.get(NodeKeys.getSignature(type)).add(signature);
+			}
+			if(member.taggedWith(XCSG.Method)){
+				snapshot.bodies.put(signature, hashBody(member, sources));
+			}
+		}
+		
+		Q instantiations = context.contained().nodes(XCSG.Instantiation);
+		for(Node type : Common.edges(XCSG.TypeOf).successors(instantiations).eval().nodes()){
+			snapshot.instantiatedTypes.add(NodeKeys.getSignature(type));
+		}
+		
+		Q invocations = Common.edges(XCSG.InvokedSignature, XCSG.InvokedFunction);
+		for(Edge invocation : invocations.forwardStep(callsites).eval().edges()){
+			snapshot.invokedSignatures.put(NodeKeys.getKey(invocation.from()), NodeKeys.getSignature(invocation.to()));
+		}
+		return snapshot;
+	}
+	
+	private String addNode(Node node){
+		String signature = NodeKeys.getSignature(node);
+		nodes.put(signature, node);
+		return signature;
+	}
+	
+	/**
+	 * Hashes the source text of the method, sources are read once per file
+	 */
+	private static long hashBody(Node method, Map<File,byte[]> sources){
+		Object sc = method.getAttr(XCSG.sourceCorrespondence);
+		if(!(sc instanceof SourceCorrespondence)){
+			return UNKNOWN_BODY;
+		}
+		SourceCorrespondence sourceCorrespondence = (SourceCorrespondence) sc;
+		if(sourceCorrespondence.sourceFile == null || sourceCorrespondence.sourceFile.getLocation() == null){
+			return UNKNOWN_BODY;
+		}
+		File file = sourceCorrespondence.sourceFile.getLocation().toFile();
+		byte[] source = sources.get(file);
+		if(source == null){
+			try {
+				source = Files.readAllBytes(file.toPath());
+			} catch (IOException e) {
+				source = new byte[0];
+			}
+			sources.put(file, source);
+		}
+		int start = sourceCorrespondence.offset;
+		int end = start + sourceCorrespondence.length;
+		if(start < 0 || end > source.length){
+			return UNKNOWN_BODY;
+		}
+		long hash = 1125899906842597L;
+		for(int i=start; i<end; i++){
+			hash = 31 * hash + source[i];
+		}
+		return hash == UNKNOWN_BODY ? 1 : hash;
+	}
+	
+	/**
+	 * Returns the node of the current program with the signature or null
+	 */
+	public Node getNode(String signature){
+		return nodes.get(signature);
+	}
+	
+	/**
+	 * Returns the types that were added, removed, gained or lost a direct supertype, 
+	 * method or instance variable, or that were instantiated in only one of the snapshots
+	 */
+	public Set<String> getChangedTypes(ProgramSnapshot previous){
+		Set<String> changed = new HashSet<String>();
+		Set<String> types = new HashSet<String>(supertypes.keySet());
+		types.addAll(previous.supertypes.keySet());
+		for(String type : types){
+			if(!equal(supertypes.get(type), previous.supertypes.get(type))
+					|| !equal(members.get(type), previous.members.get(type))
+					|| instantiatedTypes.contains(type) != previous.instantiatedTypes.contains(type)){
+				changed.add(type);
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Returns the methods of the current program whose body is new, changed or unknown
+	 */
+	public Set<String> getChangedMethods(ProgramSnapshot previous){
+		Set<String> changed = new HashSet<String>();
+		for(Map.Entry<String,Long> body : bodies.entrySet()){
+			Long previousBody = previous.bodies.get(body.getKey());
+			if(body.getValue() == UNKNOWN_BODY || previousBody == null || !previousBody.equals(body.getValue())){
+				changed.add(body.getKey());
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Returns the signatures invoked by callsites of the previous snapshot that are not callsites of this one
+	 */
+	public Set<String> getRemovedInvocations(ProgramSnapshot previous){
+		Set<String> removed = new HashSet<String>();
+		for(Map.Entry<String,String> invocation : previous.invokedSignatures.entrySet()){
+			if(!invokedSignatures.containsKey(invocation.getKey())){
+				removed.add(invocation.getValue());
+			}
+		}
+		return removed;
+	}
+	
+	private static boolean equal(Set<String> a, Set<String> b){
+		return a == null ? b == null : a.equals(b);
+	}
+	
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeSets(out, supertypes);
+			writeSets(out, members);
+			out.writeInt(instantiatedTypes.size());
+			for(String type : instantiatedTypes){
+				writeString(out, type);
+			}
+			out.writeInt(bodies.size());
+			for(Map.Entry<String,Long> body : bodies.entrySet()){
+				writeString(out, body.getKey());
+				out.writeLong(body.getValue());
+			}
+			out.writeInt(invokedSignatures.size());
+			for(Map.Entry<String,String> invocation : invokedSignatures.entrySet()){
+				writeString(out, invocation.getKey());
+				writeString(out, invocation.getValue());
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	/**
+	 * Loads a saved snapshot, returns null if the file is missing or unreadable
+	 */
+	public static ProgramSnapshot load(File file) throws IOException {
+		if(!file.exists()){
+			return null;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+		try {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION){
+				Log.warning("Ignoring unrecognized program snapshot " + file.getName());
+				return null;
+			}
+			ProgramSnapshot snapshot = new ProgramSnapshot();
+			readSets(in, snapshot.supertypes);
+			readSets(in, snapshot.members);
+			int size = in.readInt();
+			for(int i=0; i<size; i++){
+				snapshot.instantiatedTypes.add(readString(in));
+			}
+			size = in.readInt();
+			for(int i=0; i<size; i++){
+				snapshot.bodies.put(readString(in), in.readLong());
+			}
+			size = in.readInt();
+			for(int i=0; i<size; i++){
+				snapshot.invokedSignatures.put(readString(in), readString(in));
+			}
+			return snapshot;
+		} catch (EOFException | NegativeArraySizeException e) {
+			Log.warning("Ignoring corrupt program snapshot " + file.getName());
+			return null;
+		} finally {
+			in.close();
+		}
+	}
+	
+	private static void writeSets(DataOutputStream out, Map<String,Set<String>> sets) throws IOException {
+		out.writeInt(sets.size());
+		for(Map.Entry<String,Set<String>> set : sets.entrySet()){
+			writeString(out, set.getKey());
+			out.writeInt(set.getValue().size());
+			for(String value : set.getValue()){
+				writeString(out, value);
+			}
+		}
+	}
+	
+	private static void readSets(DataInputStream in, Map<String,Set<String>> sets) throws IOException {
+		int size = in.readInt();
+		for(int i=0; i<size; i++){
+			String key = readString(in);
+			Set<String> set = new TreeSet<String>();
+			int values = in.readInt();
+			for(int j=0; j<values; j++){
+				set.add(readString(in));
+			}
+			sets.put(key, set);
+		}
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+}
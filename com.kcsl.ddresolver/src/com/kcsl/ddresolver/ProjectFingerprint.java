@@ -0,0 +1,158 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+
+import com.ensoftcorp.atlas.core.log.Log;
+
+/**
+ * Computes a SHA-256 fingerprint of a workspace project's sources and class files, 
+ * the libraries on its resolved classpath and a description of the analysis configuration
+ */
+public class ProjectFingerprint {
+
+	private static final String[] EXTENSIONS = { ".java", ".class", ".jar", ".jimple" };
+	
+	/**
+	 * Returns the fingerprint of the workspace project or null if the project can not be found on 
+	 * disk or its classpath can not be resolved
+	 */
+	public static byte[] compute(String projectName, String configuration) throws IOException {
+		IWorkspaceRoot workspaceRoot = ResourcesPlugin.getWorkspace().getRoot();
+		IProject project = workspaceRoot.getProject(projectName);
+		if(project == null || !project.exists() || project.getLocation() == null){
+			return null;
+		}
+		File directory = project.getLocation().toFile();
+		List<File> libraries = new ArrayList<File>();
+		IJavaProject javaProject = JavaCore.create(project);
+		if(javaProject != null && javaProject.exists()){
+			try {
+				for(IClasspathEntry entry : javaProject.getResolvedClasspath(true)){
+					if(entry.getEntryKind() != IClasspathEntry.CPE_LIBRARY){
+						continue;
+					}
+					// library paths are workspace relative if the library is in the workspace
+					IResource resource = workspaceRoot.findMember(entry.getPath());
+					File library = resource != null && resource.getLocation() != null ? resource.getLocation().toFile() : entry.getPath().toFile();
+					if(!library.toPath().toAbsolutePath().startsWith(directory.toPath().toAbsolutePath())){
+						libraries.add(library);
+					}
+				}
+			} catch (JavaModelException e) {
+				Log.warning("Could not resolve the classpath of " + projectName, e);
+				return null;
+			}
+		}
+		return compute(directory, libraries, configuration);
+	}
+	
+	/**
+	 * Hashes the relative path and contents of every source, class and jar file under the 
+	 * directory in sorted path order, followed by the configuration
+	 */
+	public static byte[] compute(File directory, String configuration) throws IOException {
+		return compute(directory, Collections.<File>emptyList(), configuration);
+	}
+	
+	/**
+	 * Hashes the relative path and contents of every source, class and jar file under the 
+	 * directory in sorted path order, then the absolute path, size and modification time of 
+	 * each library jar or of the class files in each library directory, followed by the configuration
+	 */
+	public static byte[] compute(File directory, List<File> libraries, String configuration) throws IOException {
+		Path root = directory.toPath();
+		List<Path> files = getFiles(root);
+		
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		for(Path file : files){
+			digest.update(root.relativize(file).toString().replace(File.separatorChar, '/').getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			InputStream input = Files.newInputStream(file);
+			try {
+				int read;
+				while((read = input.read(buffer)) != -1){
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				input.close();
+			}
+		}
+		
+		// libraries outside the project are too large to read on every run, so only their metadata is hashed
+		List<Path> libraryFiles = new ArrayList<Path>();
+		for(File library : libraries){
+			if(library.isDirectory()){
+				libraryFiles.addAll(getFiles(library.toPath()));
+			} else {
+				libraryFiles.add(library.toPath());
+			}
+		}
+		Collections.sort(libraryFiles);
+		for(Path file : libraryFiles){
+			File library = file.toFile();
+			digest.update(library.getAbsolutePath().replace(File.separatorChar, '/').getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update((library.length() + ":" + library.lastModified()).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		digest.update(configuration.getBytes(StandardCharsets.UTF_8));
+		return digest.digest();
+	}
+	
+	/**
+	 * Returns the source, class and jar files under the directory in sorted path order, skipping hidden directories
+	 */
+	private static List<Path> getFiles(final Path root) throws IOException {
+		final List<Path> files = new ArrayList<Path>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>(){
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs){
+				String name = dir.getFileName() == null ? "" : dir.getFileName().toString();
+				return (!dir.equals(root) && name.startsWith(".")) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+			}
+			
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs){
+				String name = file.getFileName().toString();
+				for(String extension : EXTENSIONS){
+					if(name.endsWith(extension)){
+						files.add(file);
+						break;
+					}
+				}
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(files);
+		return files;
+	}
+	
+}
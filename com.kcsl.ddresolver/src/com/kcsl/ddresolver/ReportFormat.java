@@ -0,0 +1,62 @@
+package com.kcsl.ddresolver;
+
+import java.util.Locale;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.index.common.SourceCorrespondence;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+
+/**
+ * Formats the values written to the per candidate CSV reports
+ */
+public class ReportFormat {
+	
+	/**
+	 * Returns the value as a CSV field, quoting it if it contains a separator, quote or line break
+	 */
+	public static String quote(String value){
+		if(value == null){
+			return "";
+		}
+		if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0){
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+	
+	/**
+	 * Returns the source file and line of the node, for example "/project/src/p/A.java:12",
+	 * or an empty string if the node has no source correspondence
+	 */
+	public static String getLocation(Node node){
+		int line = getLine(node);
+		return line < 0 ? "" : getSourceFile(node) + ":" + line;
+	}
+	
+	/**
+	 * Returns the path of the node's source file, or an empty string if it is unknown
+	 */
+	public static String getSourceFile(Node node){
+		Object sc = node.getAttr(XCSG.sourceCorrespondence);
+		if(!(sc instanceof SourceCorrespondence) || ((SourceCorrespondence) sc).sourceFile == null){
+			return "";
+		}
+		return ((SourceCorrespondence) sc).sourceFile.getFullPath().toString();
+	}
+	
+	/**
+	 * Returns the line the node starts on, or -1 if the node has no source correspondence
+	 */
+	public static int getLine(Node node){
+		Object sc = node.getAttr(XCSG.sourceCorrespondence);
+		return sc instanceof SourceCorrespondence ? ((SourceCorrespondence) sc).startLine : -1;
+	}
+	
+	/**
+	 * Formats an estimate with two decimal places independent of the default locale
+	 */
+	public static String format(double value){
+		return String.format(Locale.ROOT, "%.2f", value);
+	}
+	
+}
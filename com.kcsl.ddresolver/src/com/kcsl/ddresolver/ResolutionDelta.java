@@ -0,0 +1,130 @@
+package com.kcsl.ddresolver;
+
+import java.util.BitSet;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * The candidates whose classification may differ from a previous run, found by comparing
+ * program snapshots. A callsite is dirty if it is new, may call a method of a changed type
+ * or of one of its supertypes, or is in or one call away from a method whose body changed.
+ * A method is dirty if it is new, belongs to a changed type, its body changed, it contains
+ * or may be called by a dirty callsite, or it may have been called by a removed callsite.
+ *
+ * Call targets are taken from the CHA call graph, which contains the RRTA and 0CFA call
+ * graphs, so the CHA call graph must be built before the delta is computed. Data flow
+ * changes are followed one call deep, changes that reach a callsite's receiver through
+ * fields or longer call chains are only picked up by a full run.
+ */
+public class ResolutionDelta {
+	
+	private final AtlasSet<Node> methods;
+	private final AtlasSet<Node> callsites;
+	private final long candidates;
+	
+	private ResolutionDelta(AtlasSet<Node> methods, AtlasSet<Node> callsites, long candidates){
+		this.methods = methods;
+		this.callsites = callsites;
+		this.candidates = candidates;
+	}
+	
+	/**
+	 * Returns the candidate methods that must be classified again
+	 */
+	public AtlasSet<Node> getMethods(){
+		return methods;
+	}
+	
+	/**
+	 * Returns the candidate callsites that must be classified again
+	 */
+	public AtlasSet<Node> getCallsites(){
+		return callsites;
+	}
+	
+	/**
+	 * Returns the fraction of candidates that must be classified again
+	 */
+	public double getFraction(){
+		return candidates == 0 ? 0 : (double) (methods.size() + callsites.size()) / candidates;
+	}
+	
+	/**
+	 * Computes the dirty candidates from the snapshots and the previous run's cached results,
+	 * candidates without cached results are always dirty
+	 */
+	public static ResolutionDelta compute(ProgramSnapshot previous, ProgramSnapshot current, ResultCache cache, Q context, Q candidateMethods, Q candidateCallsites){
+		Q cha = Common.universe().edges(CallGraphAlgorithm.CHA.getPerControlFlowTag());
+		Q supertypes = Common.universe().edges(XCSG.Supertype);
+		
+		Q changedTypes = toQ(current, current.getChangedTypes(previous));
+		Q affectedTypes = supertypes.forward(changedTypes).intersection(context.nodes(XCSG.Type));
+		Q affectedMethods = affectedTypes.children().nodes(XCSG.Method);
+		Q changedMethods = toQ(current, current.getChangedMethods(previous));
+		Q removedInvocations = toQ(current, current.getRemovedInvocations(previous));
+		
+		// data flow into and out of a changed method reaches its callees and callers
+		Q dataFlowMethods = changedMethods.union(cha.successors(localCallsites(changedMethods)),
+				CommonQueries.getContainingFunctions(cha.predecessors(changedMethods)));
+		
+		Q dirtyCallsites = candidateCallsites.intersection(cha.predecessors(affectedMethods)
+				.union(Common.universe().edges(XCSG.InvokedSignature).predecessors(affectedMethods), localCallsites(dataFlowMethods)))
+				.union(uncached(cache, candidateCallsites.eval().nodes(), true));
+		
+		Q overriders = Common.universe().edges(XCSG.Overrides).reverse(removedInvocations);
+		Q dirtyMethods = candidateMethods.intersection(affectedMethods.union(changedMethods, overriders,
+				cha.successors(dirtyCallsites), CommonQueries.getContainingFunctions(dirtyCallsites)))
+				.union(uncached(cache, candidateMethods.eval().nodes(), false));
+		
+		long candidates = candidateMethods.eval().nodes().size() + candidateCallsites.eval().nodes().size();
+		return new ResolutionDelta(new AtlasHashSet<Node>(dirtyMethods.eval().nodes()), new AtlasHashSet<Node>(dirtyCallsites.eval().nodes()), candidates);
+	}
+	
+	private static Q localCallsites(Q methods){
+		return CommonQueries.localDeclarations(methods).nodes(XCSG.CallSite);
+	}
+	
+	private static Q toQ(ProgramSnapshot snapshot, Set<String> signatures){
+		AtlasSet<Node> nodes = new AtlasHashSet<Node>();
+		for(String signature : signatures){
+			Node node = snapshot.getNode(signature);
+			if(node != null){
+				nodes.add(node);
+			}
+		}
+		return Common.toQ(nodes);
+	}
+	
+	/**
+	 * Returns the nodes without cached target counts (callsites) or classifications (methods)
+	 */
+	private static Q uncached(ResultCache cache, AtlasSet<Node> nodes, boolean callsites){
+		BitSet classified = cache.getResults().getAll();
+		NodeIndex nodeIndex = cache.getResults().getNodeIndex();
+		AtlasSet<Node> uncached = new AtlasHashSet<Node>();
+		for(Node node : nodes){
+			if(callsites){
+				for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+					if(cache.getTargetCount(algorithm, node) < 0){
+						uncached.add(node);
+						break;
+					}
+				}
+			} else {
+				int id = nodeIndex.getId(node);
+				if(id < 0 || !classified.get(id)){
+					uncached.add(node);
+				}
+			}
+		}
+		return Common.toQ(uncached);
+	}
+	
+}
@@ -0,0 +1,928 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.query.Attr;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.cg.analysis.ClassHierarchyAnalysis;
+import com.ensoftcorp.open.cg.analysis.RapidTypeAnalysis;
+import com.ensoftcorp.open.cg.analysis.ReallyRapidTypeAnalysis;
+import com.ensoftcorp.open.cg.analysis.ZeroControlFlowAnalysis;
+import com.ensoftcorp.open.cg.preferences.CallGraphPreferences;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+import com.ensoftcorp.open.commons.filters.InvalidFilterParameterException;
+import com.ensoftcorp.open.commons.filters.LoopChildFilter;
+import com.ensoftcorp.open.pointsto.preferences.PointsToPreferences;
+import com.kcsl.ddresolver.CascadeResolver.CascadeResult;
+import com.kcsl.ddresolver.ClonePlanner.ClonePlan;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * The metrics, rewriting and reporting pipeline shared by Resolver and JimpleResolver,
+ * which differ only in the application set and the query finding the callsites of the
+ * potentially transformable methods. Results, cache files and the cache fingerprint are
+ * named after the resolver class.
+ */
+public abstract class ResolverPipeline {
+	
+	/**
+	 * Result tag of the potentially transformable callsites inside loops
+	 */
+	public static final String CALLSITE_IN_LOOP = "CALLSITE-IN-LOOP";
+	
+	/**
+	 * Result tag of the potentially transformable callsites invoking an interface method
+	 */
+	public static final String CALLSITE_INTERFACE = "CALLSITE-INTERFACE";
+	
+	// callsites listed per algorithm in <output>.megamorphic.csv
+	private static final int MEGAMORPHIC_CALLSITE_LIMIT = 100;
+	
+	private final Class<?> resolver;
+	
+	protected ResolverPipeline(Class<?> resolver){
+		this.resolver = resolver;
+	}
+	
+	/**
+	 * Returns the application the candidates are drawn from
+	 */
+	protected abstract Q getApplication();
+	
+	/**
+	 * Returns the callsites that may dispatch to the methods
+	 */
+	protected abstract Q getCallsites(Q methods);
+	
+	public static void resetPreferences(){
+		PointsToPreferences.restoreDefaults();
+		PointsToPreferences.setJavaPointsToAnalysisMode();
+		PointsToPreferences.enabledPointsToAnalysis(true);
+		
+		CallGraphPreferences.restoreDefaults();
+		CallGraphPreferences.enableReallyRapidTypeAnalysis(true);
+		CallGraphPreferences.enableZeroCFAAnalysis(true);
+		
+		ResolverPreferences.restoreDefaults();
+	}
+	
+	public Instrumentation collectMetrics(File output) throws IOException, InvalidFilterParameterException{
+		return collectMetrics(output, 1);
+	}
+	
+	/**
+	 * Collects the transformation metrics, classifying candidates on the given number of worker threads. 
+	 * The per phase instrumentation is returned and also written next to the output as <output>.phases.csv,
+	 * the callsites with the most targets are listed in <output>.megamorphic.csv. Only the candidates
+	 * reachable from the entry points are classified if entry point pruning is enabled, see EntryPoints.
+	 * Each candidate's record is written to <output>.details.ddrd or .csv if a detail format is set.
+	 */
+	public Instrumentation collectMetrics(File output, int parallelism) throws IOException, InvalidFilterParameterException{
+		String projectName = Common.universe().nodes(XCSG.Project).eval().nodes().one().getAttr(XCSG.name).toString();
+		Log.info("Starting to collect transformation metrics for "+projectName);
+		Instrumentation instrumentation = new Instrumentation();
+		
+		FileWriter fw = new FileWriter(output);
+		
+		// overall application statistics
+		fw.write("Total Application Methods,");
+		fw.write("Total Potentially Transformable Application Methods,"); // not static, private or a constructor
+		fw.write("Total Potentially Transformable Application Method Callsites,");
+		
+		// callsites in loops
+		fw.write("Callsites Inside Loops,");
+		fw.write("Callsites Outside Loops,");
+		
+		// break down of each analysis
+		fw.write("CHA Time,CHA CG Size (nodes),CHA CG Size (edges),CHA Rewrite,CHA Clone,CHA Unchanged,Should Be Static,");
+		fw.write("RRTA Time,RRTA CG Size (nodes),RRTA CG Size (edges),RRTA Rewrite,RRTA Clone,RRTA Unchanged,Should Be Static,");
+		fw.write("0CFA Time,0CFA CG Size (nodes),0CFA CG Size (edges),0CFA Rewrite,0CFA Clone,0CFA Unchanged,Should Be Static,");
+		
+		CallGraphAlgorithm[] algorithms = CallGraphAlgorithm.values();
+		String[] algorithmNames = new String[algorithms.length];
+		for(int i=0; i<algorithms.length; i++){
+			algorithmNames[i] = algorithms[i].getName();
+		}
+		
+		// rewrite or clone (transformable) methods
+		for(int region : ResultStore.getVennRegions(algorithms.length)){
+			fw.write(ResultStore.getVennLabel(region, "", algorithmNames) + ",");
+		}
+		
+		// callsites with one target
+		for(int region : ResultStore.getVennRegions(algorithms.length)){
+			fw.write(ResultStore.getVennLabel(region, "c1", algorithmNames) + ",");
+		}
+		
+		// callsites transformed inside loops
+		fw.write("ctlCHA,");
+		fw.write("ctlRRTA,");
+		fw.write("ctlCFA,");
+		
+		// callsites with two up to the guard limit targets
+		for(CallGraphAlgorithm algorithm : algorithms){
+			fw.write(algorithm.getName() + " Guardable,");
+		}
+		
+		// percentage of the profiled run's samples beneath resolvable callsites
+		for(CallGraphAlgorithm algorithm : algorithms){
+			fw.write(algorithm.getName() + " Sampled Share (%),");
+		}
+		
+		// transformable callsites whose target HotSpot could inline at any callsite, only at hot callsites or not at all
+		for(CallGraphAlgorithm algorithm : algorithms){
+			fw.write(algorithm.getName() + " Inlinable," + algorithm.getName() + " Hot Inlinable," + algorithm.getName() + " Too Large,");
+		}
+		
+		// callsites by number of targets, dispatch instruction and loop membership
+		for(CallGraphAlgorithm algorithm : algorithms){
+			for(String column : DispatchHistogram.getColumns(algorithm.getName())){
+				fw.write(column + ",");
+			}
+		}
+		
+		// candidate methods and callsites no entry point reaches
+		fw.write("Pruned Candidates,");
+		
+		// time the call graph analyses ran concurrently
+		fw.write("Analysis Overlap Time\n");
+		
+		// general app stats
+		Q context = getApplication();
+		Q applicationMethods = context.nodes(XCSG.Method);
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		long prunedCandidateCount = 0;
+		EnumMap<CallGraphAlgorithm,Long> callGraphTimes = new EnumMap<CallGraphAlgorithm,Long>(CallGraphAlgorithm.class);
+		if(ResolverPreferences.isEntryPointPruningEnabled()){
+			CallGraphAlgorithm algorithm = ResolverPreferences.getEntryPointAlgorithm();
+			buildCallGraph(algorithm, callGraphTimes, instrumentation);
+			EntryPoints entryPoints = EntryPoints.find();
+			long candidateCount = potentiallyTransformableMethods.eval().nodes().size() + potentiallyTransformableMethodCallsites.eval().nodes().size();
+			potentiallyTransformableMethods = entryPoints.pruneMethods(algorithm, potentiallyTransformableMethods);
+			potentiallyTransformableMethodCallsites = entryPoints.pruneCallsites(algorithm, potentiallyTransformableMethodCallsites);
+			prunedCandidateCount = candidateCount - potentiallyTransformableMethods.eval().nodes().size() - potentiallyTransformableMethodCallsites.eval().nodes().size();
+			Log.info("Pruned " + prunedCandidateCount + " candidates unreachable from " + entryPoints.getMethods().size() + " entry points in the " + algorithm.getName() + " call graph");
+		}
+		long potentiallyTransformableMethodCallsiteCount = potentiallyTransformableMethodCallsites.eval().nodes().size();
+		
+		// reuse the results of a previous run if the project and configuration have not changed
+		Instrumentation.Timer timer = instrumentation.start(Instrumentation.RESULT_CACHE);
+		NodeIndex nodeIndex = new NodeIndex();
+		byte[] fingerprint = null;
+		File cacheFile = new File(ResolverPreferences.getResultCacheDirectory(), projectName + "-" + resolver.getSimpleName() + ".ddrc");
+		ResultCache cache = null;
+		if(ResolverPreferences.isResultCacheEnabled()){
+			fingerprint = ProjectFingerprint.compute(projectName, getConfiguration());
+			if(fingerprint != null){
+				cache = ResultCache.load(cacheFile, fingerprint, potentiallyTransformableMethods.eval().nodes(), potentiallyTransformableMethodCallsites.eval().nodes(), nodeIndex);
+			}
+		}
+		timer.stop();
+		if(cache != null){
+			Log.info("Loaded cached transformation metrics for "+projectName);
+		} else {
+			// reclassify only what changed since the previous run if a snapshot of it was saved
+			File snapshotFile = new File(cacheFile.getPath() + ".snapshot");
+			ProgramSnapshot snapshot = null;
+			if(fingerprint != null && ResolverPreferences.isIncrementalResolutionEnabled()){
+				timer = instrumentation.start(Instrumentation.INCREMENTAL_DIFF);
+				snapshot = ProgramSnapshot.capture(context, potentiallyTransformableMethodCallsites);
+				timer.stop();
+				cache = analyzeIncrementally(cacheFile, snapshotFile, snapshot, potentiallyTransformableMethods, potentiallyTransformableMethodCallsites, nodeIndex, callGraphTimes, parallelism, instrumentation);
+			}
+			if(cache == null){
+				cache = new ResultCache(new ResultStore(nodeIndex));
+				analyze(cache, potentiallyTransformableMethods, potentiallyTransformableMethodCallsites, false, callGraphTimes, parallelism, instrumentation);
+			}
+			if(fingerprint != null){
+				timer = instrumentation.start(Instrumentation.RESULT_CACHE);
+				if(!cache.save(cacheFile, fingerprint)){
+					Log.warning("Result cache for " + projectName + " not saved, the next run analyzes the project again");
+				}
+				if(snapshot != null){
+					snapshot.save(snapshotFile);
+				}
+				timer.stop();
+			}
+		}
+		ResultStore results = cache.getResults();
+		
+		// venn breakdowns of the transformable methods and callsites with one target by algorithm
+		timer = instrumentation.start(Instrumentation.VENN_COMPUTATION);
+		String[] transformableTags = new String[algorithms.length];
+		String[] callsiteTransformableTags = new String[algorithms.length];
+		for(int i=0; i<algorithms.length; i++){
+			transformableTags[i] = algorithms[i].getTag(Classification.TRANSFORMABLE);
+			callsiteTransformableTags[i] = algorithms[i].getTag(Classification.CALLSITE_TRANSFORMABLE);
+		}
+		long[] transformableVenn = results.venn(transformableTags);
+		long[] callsiteTransformableVenn = results.venn(callsiteTransformableTags);
+		BitSet callsitesInLoopsSet = results.get(CALLSITE_IN_LOOP);
+		timer.stop();
+		
+		// write out the counts
+		fw.write(applicationMethods.eval().nodes().size() + ",");
+		fw.write(potentiallyTransformableMethods.eval().nodes().size() + ",");
+		fw.write(potentiallyTransformableMethodCallsiteCount + ",");
+		
+		fw.write(callsitesInLoopsSet.cardinality() + ",");
+		fw.write((potentiallyTransformableMethodCallsiteCount - callsitesInLoopsSet.cardinality()) + ",");
+		
+		for(CallGraphAlgorithm algorithm : algorithms){
+			fw.write(cache.getMetric(algorithm.getName() + " Time") + "," + cache.getMetric(algorithm.getName() + " CG Nodes") + "," + cache.getMetric(algorithm.getName() + " CG Edges") + "," + getCounts(results, algorithm) + ",");
+		}
+		
+		for(int region : ResultStore.getVennRegions(algorithms.length)){
+			fw.write(transformableVenn[region] + ",");
+		}
+		for(int region : ResultStore.getVennRegions(algorithms.length)){
+			fw.write(callsiteTransformableVenn[region] + ",");
+		}
+		
+		for(int i=0; i<algorithms.length; i++){
+			fw.write(results.count(callsiteTransformableTags[i], callsitesInLoopsSet) + ",");
+		}
+		
+		for(CallGraphAlgorithm algorithm : algorithms){
+			fw.write(results.count(algorithm.getTag(Classification.CALLSITE_GUARDABLE)) + ",");
+		}
+		
+		ExecutionProfile profile = ResolverPreferences.getProfile() == null ? null : ExecutionProfile.load(ResolverPreferences.getProfile());
+		for(CallGraphAlgorithm algorithm : algorithms){
+			if(profile != null){
+				BitSet resolvable = (BitSet) results.get(algorithm.getTag(Classification.CALLSITE_TRANSFORMABLE)).clone();
+				resolvable.or(results.get(algorithm.getTag(Classification.CALLSITE_GUARDABLE)));
+				List<Node> resolvableCallsites = new ArrayList<Node>();
+				for(int id=resolvable.nextSetBit(0); id>=0; id=resolvable.nextSetBit(id+1)){
+					resolvableCallsites.add(results.getNodeIndex().getNode(id));
+				}
+				fw.write(ReportFormat.format(100 * profile.getCoveredShare(resolvableCallsites)));
+			}
+			fw.write(",");
+		}
+		
+		InliningBudget inliningBudget = ResolverPreferences.getApplicationBytecode() == null ? null : new InliningBudget(BytecodeSizes.load(ResolverPreferences.getApplicationBytecode()));
+		for(CallGraphAlgorithm algorithm : algorithms){
+			if(inliningBudget == null){
+				fw.write(",,,");
+				continue;
+			}
+			// the cache holds each single target, so cached results need no call graph
+			List<MethodRef> targets = new ArrayList<MethodRef>();
+			BitSet transformable = results.get(algorithm.getTag(Classification.CALLSITE_TRANSFORMABLE));
+			for(int id=transformable.nextSetBit(0); id>=0; id=transformable.nextSetBit(id+1)){
+				targets.add(cache.getTarget(algorithm, id));
+			}
+			Map<String,Integer> inlining = inliningBudget.count(targets);
+			fw.write(inlining.get(InliningBudget.INLINABLE) + "," + inlining.get(InliningBudget.HOT_INLINABLE) + "," + inlining.get(InliningBudget.TOO_LARGE) + ",");
+		}
+		
+		BitSet interfaceCallsitesSet = results.get(CALLSITE_INTERFACE);
+		List<DispatchHistogram> histograms = new ArrayList<DispatchHistogram>();
+		for(CallGraphAlgorithm algorithm : algorithms){
+			DispatchHistogram histogram = new DispatchHistogram(algorithm);
+			for(int id=0; id<nodeIndex.size(); id++){
+				int targets = cache.getTargetCount(algorithm, id);
+				if(targets >= 0){
+					histogram.add(nodeIndex.getNode(id), targets, interfaceCallsitesSet.get(id), callsitesInLoopsSet.get(id));
+				}
+			}
+			for(long count : histogram.getValues()){
+				fw.write(count + ",");
+			}
+			histograms.add(histogram);
+		}
+		
+		fw.write(prunedCandidateCount + ",");
+		
+		fw.write(cache.getMetric("Analysis Overlap Time") + "\n");
+		
+		fw.close();
+		instrumentation.write(new File(output.getPath() + ".phases.csv"));
+		
+		// the most megamorphic callsites of each algorithm
+		fw = new FileWriter(new File(output.getPath() + ".megamorphic.csv"));
+		fw.write("Algorithm,Callsite,Location,Caller,Dispatch,Inside Loop,Targets\n");
+		for(DispatchHistogram histogram : histograms){
+			histogram.writeMegamorphic(fw, MEGAMORPHIC_CALLSITE_LIMIT);
+		}
+		fw.close();
+		
+		// one record per candidate method and callsite
+		if(ResolverPreferences.getDetailFormat() != null){
+			CandidateDetails.Format format = ResolverPreferences.getDetailFormat();
+			CandidateDetails.write(cache, potentiallyTransformableMethods, potentiallyTransformableMethodCallsites, new File(output.getPath() + ".details" + format.getExtension()), format);
+		}
+		
+		if(ResolverPreferences.isTagResultsEnabled()){
+			results.tag();
+		}
+		Log.info("Finished collecting transformation metrics for "+projectName);
+		return instrumentation;
+	}
+	
+	/**
+	 * Loads the previous run's results and reclassifies the candidates affected by the changes 
+	 * between the previous run's snapshot and the current one. Returns null if there are no 
+	 * previous results or too many candidates are affected.
+	 */
+	private ResultCache analyzeIncrementally(File cacheFile, File snapshotFile, ProgramSnapshot snapshot, Q potentiallyTransformableMethods, Q potentiallyTransformableMethodCallsites, NodeIndex nodeIndex, EnumMap<CallGraphAlgorithm,Long> callGraphTimes, int parallelism, Instrumentation instrumentation) throws IOException, InvalidFilterParameterException {
+		Instrumentation.Timer timer = instrumentation.start(Instrumentation.INCREMENTAL_DIFF);
+		ProgramSnapshot previous = ProgramSnapshot.load(snapshotFile);
+		ResultCache cache = null;
+		if(previous != null){
+			cache = ResultCache.load(cacheFile, null, potentiallyTransformableMethods.eval().nodes(), potentiallyTransformableMethodCallsites.eval().nodes(), nodeIndex);
+		}
+		if(cache == null){
+			timer.stop();
+			return null;
+		}
+		
+		// the delta follows CHA call edges, the CHA pipeline reuses the call graph built here
+		timer.stop();
+		buildCallGraph(CallGraphAlgorithm.CHA, callGraphTimes, instrumentation);
+		timer = instrumentation.start(Instrumentation.INCREMENTAL_DIFF);
+		ResolutionDelta delta = ResolutionDelta.compute(previous, snapshot, cache, getApplication(), potentiallyTransformableMethods, potentiallyTransformableMethodCallsites);
+		timer.stop();
+		if(delta.getFraction() > ResolverPreferences.getIncrementalResolutionLimit()){
+			Log.info("Changes affect " + Math.round(delta.getFraction() * 100) + "% of the candidates, classifying every candidate");
+			return null;
+		}
+		Log.info("Reclassifying " + delta.getMethods().size() + " methods and " + delta.getCallsites().size() + " callsites affected by changes");
+		
+		for(Node method : delta.getMethods()){
+			cache.remove(method);
+		}
+		for(Node callsite : delta.getCallsites()){
+			cache.remove(callsite);
+		}
+		analyze(cache, Common.toQ(delta.getMethods()), Common.toQ(delta.getCallsites()), true, callGraphTimes, parallelism, instrumentation);
+		return cache;
+	}
+	
+	/**
+	 * Runs the call graph analyses and classifies the candidates, adding the results, the 
+	 * callsites inside loops, the callsite target counts and the analysis metrics to the cache. 
+	 * If restrictedIndex is true only the callsites needed to classify the given candidates 
+	 * are indexed, see AnalysisPipeline.setRestrictedIndex(boolean). The call graph times of 
+	 * call graphs built before the analyses started are added to the algorithms' time metrics.
+	 */
+	private static void analyze(ResultCache cache, Q potentiallyTransformableMethods, Q potentiallyTransformableMethodCallsites, boolean restrictedIndex, EnumMap<CallGraphAlgorithm,Long> callGraphTimes, int parallelism, Instrumentation instrumentation) throws InvalidFilterParameterException {
+		if(ResolverPreferences.getHeapBudget() > 0){
+			analyzeInChunks(cache, potentiallyTransformableMethods, potentiallyTransformableMethodCallsites, callGraphTimes, parallelism, instrumentation);
+			return;
+		}
+		ResultStore results = cache.getResults();
+		
+		// loops
+		Instrumentation.Timer timer = instrumentation.start(Instrumentation.LOOP_FILTERING);
+		LoopChildFilter filter = new LoopChildFilter();
+		Q callsitesInLoops = filter.filter(potentiallyTransformableMethodCallsites, new HashMap<String,Object>());
+		for(Node callsite : Instrumentation.eval(callsitesInLoops).nodes()){
+			results.add(CALLSITE_IN_LOOP, callsite);
+		}
+		timer.stop();
+		addInterfaceCallsites(results, potentiallyTransformableMethodCallsites);
+		
+		// each analysis pays for a single pass over its per control flow edges and candidates,
+		// type hierarchies and field accesses do not depend on the call graph and are shared by all analyses
+		TypeHierarchyCache.reset();
+		timer = instrumentation.start(Instrumentation.FIELD_ACCESS_INDEXING);
+		FieldAccessIndex fieldAccesses = FieldAccessIndex.build(new NodeIndex(), TypeHierarchyCache.getInstance());
+		timer.stop();
+		
+		// run tagging operations, each analysis starts as soon as its call graph is ready
+		List<AnalysisPipeline> pipelines = new ArrayList<AnalysisPipeline>();
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			AnalysisPipeline pipeline = new AnalysisPipeline(algorithm, potentiallyTransformableMethods, potentiallyTransformableMethodCallsites, TypeHierarchyCache.getInstance(), fieldAccesses);
+			pipeline.setParallelism(parallelism);
+			pipeline.setInstrumentation(instrumentation);
+			pipeline.setRestrictedIndex(restrictedIndex);
+			pipelines.add(pipeline);
+		}
+		AnalysisPipeline.run(pipelines, ResolverPreferences.isConcurrentCallGraphsEnabled());
+		
+		AtlasSet<Node> callsites = potentiallyTransformableMethodCallsites.eval().nodes();
+		for(AnalysisPipeline pipeline : pipelines){
+			CallGraphAlgorithm algorithm = pipeline.getAlgorithm();
+			results.add(pipeline.getClassification());
+			for(Node callsite : callsites){
+				setTargets(cache, algorithm, callsite, pipeline.getCallsiteIndex());
+			}
+			Q cg = pipeline.getCallGraph();
+			cache.setMetric(algorithm.getName() + " Time", TimeUnit.NANOSECONDS.toMillis(pipeline.getTime() + getCallGraphTime(callGraphTimes, algorithm)));
+			cache.setMetric(algorithm.getName() + " CG Nodes", cg.retainEdges().eval().nodes().size());
+			cache.setMetric(algorithm.getName() + " CG Edges", cg.eval().edges().size());
+		}
+		cache.setMetric("Analysis Overlap Time", TimeUnit.NANOSECONDS.toMillis(AnalysisPipeline.getOverlap(pipelines)));
+	}
+	
+	/**
+	 * Classifies the candidates like analyze, but a chunk of packages or types at a time so only one 
+	 * chunk's callsite indexes and classifications are held at once, see CandidateChunker. The 
+	 * algorithms run one after another on each chunk, only the call graphs are kept between chunks.
+	 */
+	private static void analyzeInChunks(ResultCache cache, Q potentiallyTransformableMethods, Q potentiallyTransformableMethodCallsites, EnumMap<CallGraphAlgorithm,Long> callGraphTimes, int parallelism, Instrumentation instrumentation) throws InvalidFilterParameterException {
+		TypeHierarchyCache.reset();
+		Instrumentation.Timer timer = instrumentation.start(Instrumentation.FIELD_ACCESS_INDEXING);
+		FieldAccessIndex fieldAccesses = FieldAccessIndex.build(new NodeIndex(), TypeHierarchyCache.getInstance());
+		timer.stop();
+		
+		CandidateChunker chunker = new CandidateChunker(potentiallyTransformableMethods, potentiallyTransformableMethodCallsites, 
+				ResolverPreferences.getChunkGranularity(), ResolverPreferences.getChunkSize(), ResolverPreferences.getHeapBudget());
+		CallGraphAlgorithm[] algorithms = CallGraphAlgorithm.values();
+		long[] times = new long[algorithms.length];
+		while(chunker.hasNext()){
+			analyzeChunk(cache, chunker.next(), fieldAccesses, times, parallelism, instrumentation);
+		}
+		Log.info("Classified the candidates in " + chunker.getChunks() + " chunks");
+		
+		for(int i=0; i<algorithms.length; i++){
+			Q cg = algorithms[i].getCallGraph();
+			cache.setMetric(algorithms[i].getName() + " Time", TimeUnit.NANOSECONDS.toMillis(times[i] + getCallGraphTime(callGraphTimes, algorithms[i])));
+			cache.setMetric(algorithms[i].getName() + " CG Nodes", cg.retainEdges().eval().nodes().size());
+			cache.setMetric(algorithms[i].getName() + " CG Edges", cg.eval().edges().size());
+		}
+		cache.setMetric("Analysis Overlap Time", 0);
+	}
+	
+	/**
+	 * Builds the algorithm's call graph before its analysis starts, timing it as the algorithm's 
+	 * call graph construction phase and adding the nanoseconds to callGraphTimes
+	 */
+	private static void buildCallGraph(CallGraphAlgorithm algorithm, EnumMap<CallGraphAlgorithm,Long> callGraphTimes, Instrumentation instrumentation){
+		long start = System.nanoTime();
+		Instrumentation.Timer timer = instrumentation.start(algorithm.getName() + " " + Instrumentation.CALL_GRAPH_CONSTRUCTION);
+		algorithm.getCallGraph();
+		timer.stop();
+		callGraphTimes.put(algorithm, getCallGraphTime(callGraphTimes, algorithm) + System.nanoTime() - start);
+	}
+	
+	private static long getCallGraphTime(EnumMap<CallGraphAlgorithm,Long> callGraphTimes, CallGraphAlgorithm algorithm){
+		Long time = callGraphTimes.get(algorithm);
+		return time == null ? 0 : time;
+	}
+	
+	/**
+	 * Classifies one chunk under every algorithm, adding the algorithms' times to times
+	 */
+	private static void analyzeChunk(ResultCache cache, CandidateChunker.Chunk chunk, FieldAccessIndex fieldAccesses, long[] times, int parallelism, Instrumentation instrumentation) throws InvalidFilterParameterException {
+		ResultStore results = cache.getResults();
+		Instrumentation.Timer timer = instrumentation.start(Instrumentation.LOOP_FILTERING);
+		Q callsitesInLoops = new LoopChildFilter().filter(chunk.getCallsites(), new HashMap<String,Object>());
+		for(Node callsite : Instrumentation.eval(callsitesInLoops).nodes()){
+			results.add(CALLSITE_IN_LOOP, callsite);
+		}
+		timer.stop();
+		addInterfaceCallsites(results, chunk.getCallsites());
+		
+		CallGraphAlgorithm[] algorithms = CallGraphAlgorithm.values();
+		AtlasSet<Node> callsites = chunk.getCallsites().eval().nodes();
+		for(int i=0; i<algorithms.length; i++){
+			AnalysisPipeline pipeline = new AnalysisPipeline(algorithms[i], chunk.getMethods(), chunk.getCallsites(), TypeHierarchyCache.getInstance(), fieldAccesses);
+			pipeline.setParallelism(parallelism);
+			pipeline.setInstrumentation(instrumentation);
+			pipeline.setRestrictedIndex(true);
+			pipeline.call();
+			results.add(pipeline.getClassification());
+			for(Node callsite : callsites){
+				setTargets(cache, algorithms[i], callsite, pipeline.getCallsiteIndex());
+			}
+			times[i] += pipeline.getTime();
+		}
+	}
+	
+	/**
+	 * Caches the callsite's target count and its target if it has a single one
+	 */
+	private static void setTargets(ResultCache cache, CallGraphAlgorithm algorithm, Node callsite, CallsiteIndex callsites){
+		int targets = callsites.getTargetCount(callsite);
+		cache.setTargetCount(algorithm, callsite, targets);
+		if(targets == 1){
+			cache.setTarget(algorithm, callsite, callsites.getNodeIndex().getNode(callsites.getTargets(callsite)[0]));
+		}
+	}
+	
+	/**
+	 * Adds the callsites invoking an interface method to the CALLSITE_INTERFACE results, 
+	 * the dispatch histograms read them from the results instead of querying every candidate callsite
+	 */
+	private static void addInterfaceCallsites(ResultStore results, Q callsites){
+		for(Node callsite : DispatchHistogram.getInterfaceCallsites(callsites).eval().nodes()){
+			results.add(CALLSITE_INTERFACE, callsite);
+		}
+	}
+	
+	/**
+	 * Describes the settings the cached results depend on, part of the result cache fingerprint:
+	 * the resolver, the algorithms classified and the call graph each is read from, the guard
+	 * limit and the entry points if pruning is enabled
+	 */
+	private String getConfiguration(){
+		StringBuilder configuration = new StringBuilder(resolver.getName());
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			configuration.append(";").append(algorithm.getName()).append("=").append(algorithm.getPerControlFlowTag());
+		}
+		configuration.append(";guardlimit=").append(ResolverPreferences.getGuardLimit());
+		if(ResolverPreferences.isEntryPointPruningEnabled()){
+			configuration.append(";entrypoints=").append(ResolverPreferences.getEntryPointAlgorithm().getName())
+					.append(ResolverPreferences.getEntryPointAnnotations()).append(ResolverPreferences.getEntryPointMethods());
+		}
+		return configuration.toString();
+	}
+	
+	/**
+	 * Returns the application methods that are not static, private or a constructor
+	 */
+	public Q getPotentiallyTransformableMethods(){
+		Q context = getApplication();
+		return context.nodes(XCSG.Method).difference(
+				context.nodesTaggedWithAny(XCSG.Constructor, XCSG.privateVisibility, Attr.Node.IS_STATIC),
+				context.methods("<init>"), context.methods("<clinit>"));
+	}
+	
+	/**
+	 * Builds every call graph and exports the application graph for classification without 
+	 * Atlas, see CsrGraphBackend.load(File) and BatchResolver
+	 */
+	public void exportGraph(File output) throws IOException {
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			algorithm.getCallGraph();
+		}
+		CsrGraphBackend.export(getApplication(), output);
+	}
+	
+	/**
+	 * Exports the application graph like exportGraph, loads it back and classifies the candidates 
+	 * BatchResolver finds in it with both the Atlas and the exported graph backend. Logs each 
+	 * candidate the backends classify differently and returns their number, 0 if they agree.
+	 */
+	public long compareBackends(File output) throws IOException {
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			algorithm.getCallGraph();
+		}
+		NodeIndex exported = CsrGraphBackend.export(getApplication(), output);
+		CsrGraphBackend graph = CsrGraphBackend.load(output);
+		int[] methods = BatchResolver.getPotentiallyTransformableMethods(graph);
+		int[] callsites = BatchResolver.getPotentiallyTransformableMethodCallsites(graph, methods);
+		Q candidateMethods = toQ(exported, methods);
+		Q candidateCallsites = toQ(exported, callsites);
+		FieldAccessIndex fieldAccesses = FieldAccessIndex.build(graph);
+		
+		long differences = 0;
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			Map<String,BitSet> exportedResults = new Classifier(algorithm, graph, fieldAccesses).classify(methods, callsites);
+			Classification atlasResults = new Classifier(algorithm).classify(candidateMethods, candidateCallsites);
+			for(Map.Entry<String,BitSet> category : exportedResults.entrySet()){
+				BitSet different = new BitSet();
+				for(Node node : atlasResults.get(category.getKey())){
+					different.set(exported.getId(node));
+				}
+				different.xor(category.getValue());
+				for(int id=different.nextSetBit(0); id>=0; id=different.nextSetBit(id+1)){
+					Node node = exported.getNode(id);
+					Log.warning(algorithm.getName() + " " + category.getKey() + " differs between the backends for " 
+							+ node.getAttr(XCSG.name) + " " + ReportFormat.getLocation(node));
+					differences++;
+				}
+			}
+		}
+		Log.info("The Atlas and exported graph backends classify " + differences + " candidates differently");
+		return differences;
+	}
+	
+	private static Q toQ(NodeIndex nodeIndex, int[] ids){
+		AtlasSet<Node> nodes = new AtlasHashSet<Node>();
+		for(int id : ids){
+			nodes.add(nodeIndex.getNode(id));
+		}
+		return Common.toQ(nodes);
+	}
+	
+	/**
+	 * Classifies the potentially transformable methods and callsites with the algorithm and
+	 * writes a copy of the application jar with the resolvable callsites changed to static
+	 * dispatches, see RewritePlan and BytecodeRewriter. Only the most frequent callsites are
+	 * changed if a limit is set, see ResolverPreferences.setHotCallsiteLimit(int), only the CLONE
+	 * methods ClonePlanner selects are copied if a clone budget is set, and guards are ordered by
+	 * the profiled samples of their targets if a profile is set.
+	 */
+	public BytecodeRewriter rewrite(File inputJar, File outputJar, CallGraphAlgorithm algorithm) throws IOException {
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		algorithm.getCallGraph();
+		CallsiteIndex callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), new NodeIndex());
+		Classification classification = new Classifier(algorithm, callsites).classify(potentiallyTransformableMethods, potentiallyTransformableMethodCallsites);
+		if(ResolverPreferences.getHotCallsiteLimit() > 0){
+			classification = new HotnessEstimator(algorithm, callsites).estimate().limit(classification, ResolverPreferences.getHotCallsiteLimit());
+		}
+		if(ResolverPreferences.getCloneBudget() >= 0){
+			classification = new ClonePlanner(BytecodeSizes.load(inputJar)).plan(classification, ResolverPreferences.getCloneBudget()).apply(classification);
+		}
+		Map<Node,Long> targetWeights = null;
+		if(ResolverPreferences.getProfile() != null){
+			List<Node> targets = new ArrayList<Node>(classification.get(Classification.REWRITE));
+			targets.addAll(classification.get(Classification.CLONE));
+			targetWeights = ExecutionProfile.load(ResolverPreferences.getProfile()).getMethodWeights(targets);
+		}
+		BytecodeRewriter rewriter = new BytecodeRewriter(RewritePlan.build(classification, targetWeights));
+		rewriter.rewrite(inputJar, outputJar);
+		return rewriter;
+	}
+	
+	/**
+	 * Ranks the algorithm's transformable and guardable callsites by their estimated frequency
+	 * and writes the ranking to the output, the REWRITE and CLONE methods are ranked by the
+	 * dispatches they save in <output>.methods.csv, see HotnessEstimator
+	 */
+	public HotnessEstimator rankCandidates(File output, CallGraphAlgorithm algorithm) throws IOException {
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		algorithm.getCallGraph();
+		CallsiteIndex callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), new NodeIndex());
+		Classification classification = new Classifier(algorithm, callsites).classify(potentiallyTransformableMethods, potentiallyTransformableMethodCallsites);
+		HotnessEstimator estimator = new HotnessEstimator(algorithm, callsites).estimate();
+		estimator.writeReport(classification, output);
+		return estimator;
+	}
+	
+	/**
+	 * Ranks the algorithm's transformable and guardable callsites by the calls sampled
+	 * in the profile and writes the ranking to the output, see ExecutionProfile
+	 */
+	public ExecutionProfile rankProfiledCandidates(File profile, File output, CallGraphAlgorithm algorithm) throws IOException {
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		algorithm.getCallGraph();
+		Classification classification = new Classifier(algorithm).classify(potentiallyTransformableMethods, potentiallyTransformableMethodCallsites);
+		ExecutionProfile executionProfile = ExecutionProfile.load(profile);
+		executionProfile.writeReport(classification, output);
+		Log.info("Resolvable " + algorithm.getName() + " callsites cover " + ReportFormat.format(100 * executionProfile.getCoveredShare(executionProfile.rankCallsites(classification))) + "% of the sampled time");
+		return executionProfile;
+	}
+	
+	/**
+	 * Writes the inlining category of the target of each algorithm's transformable callsites,
+	 * measuring the targets' bytecode size in the application jar or class directory, see InliningBudget
+	 */
+	public void reportInlining(File bytecode, File output) throws IOException {
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		InliningBudget inliningBudget = new InliningBudget(BytecodeSizes.load(bytecode));
+		FileWriter fw = new FileWriter(output);
+		try {
+			fw.write("Callsite,Location,Caller,Algorithm,Target,Target Size,Inlining\n");
+			for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+				algorithm.getCallGraph();
+				CallsiteIndex callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), new NodeIndex());
+				Classification classification = new Classifier(algorithm, callsites).classifyCallsites(potentiallyTransformableMethodCallsites);
+				for(Node callsite : classification.get(Classification.CALLSITE_TRANSFORMABLE)){
+					Node caller = CommonQueries.getContainingFunction(callsite);
+					Node target = InliningBudget.getTarget(callsites, callsite);
+					fw.write(ReportFormat.quote(String.valueOf(callsite.getAttr(XCSG.name))) + ","
+							+ ReportFormat.quote(ReportFormat.getLocation(callsite)) + ","
+							+ ReportFormat.quote(caller == null ? "" : NodeKeys.getSignature(caller)) + ","
+							+ algorithm.getName() + "," + ReportFormat.quote(target == null ? "" : NodeKeys.getSignature(target)) + ","
+							+ (target == null ? -1 : inliningBudget.getSizes().getCodeLength(target)) + ","
+							+ (target == null ? InliningBudget.UNKNOWN_SIZE : inliningBudget.classify(target)) + "\n");
+				}
+			}
+		} finally {
+			fw.close();
+		}
+	}
+	
+	/**
+	 * Chooses the algorithm's CLONE methods worth copying within the budget (in bytes), weighting
+	 * callsites by their loop depth, and writes the candidates and choices to the output, see ClonePlanner
+	 */
+	public ClonePlan planClones(File bytecode, File output, CallGraphAlgorithm algorithm, long budget) throws IOException {
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		algorithm.getCallGraph();
+		CallsiteIndex callsites = CallsiteIndex.build(algorithm.getPerControlFlowTag(), new NodeIndex());
+		Classification classification = new Classifier(algorithm, callsites).classify(potentiallyTransformableMethods, potentiallyTransformableMethodCallsites);
+		ClonePlanner planner = new ClonePlanner(BytecodeSizes.load(bytecode));
+		planner.setLoopDepthWeighting(new HotnessEstimator(algorithm, callsites));
+		ClonePlan plan = planner.plan(classification, budget);
+		plan.writeReport(output);
+		Log.info("Selected clones grow the code by " + plan.getCodeGrowth() + " of " + budget + " bytes and turn " 
+				+ plan.getResolvedCallsites() + " " + algorithm.getName() + " callsites into static dispatches");
+		return plan;
+	}
+	
+	/**
+	 * Finds the application classes and methods that could be declared final, tagging them 
+	 * if results are tagged, see EffectivelyFinalAnalysis
+	 */
+	public EffectivelyFinalAnalysis findEffectivelyFinal(){
+		EffectivelyFinalAnalysis analysis = EffectivelyFinalAnalysis.run();
+		Log.info("Found " + analysis.getTypes().size() + " effectively final classes and " + analysis.getMethods().size() 
+				+ " effectively final methods, " + analysis.getOpenTypes().size() + " classes may be subclassed at runtime");
+		if(ResolverPreferences.isTagResultsEnabled()){
+			analysis.tag();
+		}
+		return analysis;
+	}
+	
+	/**
+	 * Writes a copy of the application jar with the effectively final classes and methods declared final
+	 */
+	public FinalModifierRewriter sealEffectivelyFinal(File inputJar, File outputJar) throws IOException {
+		FinalModifierRewriter rewriter = findEffectivelyFinal().getRewriter();
+		rewriter.rewrite(inputJar, outputJar);
+		return rewriter;
+	}
+	
+	/**
+	 * Converts the SHOULD-BE-STATIC methods of each algorithm to static methods, writing one jar
+	 * per algorithm (<jar name>-<algorithm>.jar) and a report of the conversions, see
+	 * RewritePlan.buildShouldBeStatic(Classification)
+	 */
+	public void convertShouldBeStatic(File inputJar, File outputDirectory) throws IOException {
+		Q potentiallyTransformableMethods = getPotentiallyTransformableMethods();
+		Q potentiallyTransformableMethodCallsites = getCallsites(potentiallyTransformableMethods);
+		String jarName = inputJar.getName().replaceFirst("\\.jar$", "");
+		FileWriter fw = new FileWriter(new File(outputDirectory, jarName + "-should-be-static.csv"));
+		try {
+			fw.write("Algorithm,Should Be Static,Converted,Bridged,Replaced,Converted Callsites,Skipped (Not Dispatched To),Converted (Polymorphic Callsites Only)\n");
+			for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+				algorithm.getCallGraph();
+				Classification classification = new Classifier(algorithm).classify(potentiallyTransformableMethods, potentiallyTransformableMethodCallsites);
+				RewritePlan plan = RewritePlan.buildShouldBeStatic(classification);
+				BytecodeRewriter rewriter = new BytecodeRewriter(plan);
+				rewriter.rewrite(inputJar, new File(outputDirectory, jarName + "-" + algorithm.getName() + ".jar"));
+				int polymorphicOnly = 0;
+				for(MethodRef method : plan.getMethods()){
+					if(plan.getTargetGroups(method.getKey()).isEmpty()){
+						polymorphicOnly++;
+					}
+				}
+				fw.write(algorithm.getName() + "," + classification.get(Classification.SHOULD_BE_STATIC).size() + ","
+						+ rewriter.getConvertedMethods() + "," + rewriter.getBridgedMethods() + ","
+						+ (rewriter.getConvertedMethods() - rewriter.getBridgedMethods()) + "," + rewriter.getRewrittenCallsites() + ","
+						+ plan.getSkippedMethods().size() + "," + polymorphicOnly + "\n");
+			}
+		} finally {
+			fw.close();
+		}
+	}
+	
+	/**
+	 * Resolves the potentially transformable method callsites with the cheapest algorithm 
+	 * that finds a single target. The RRTA and 0CFA stages are skipped when no callsites are 
+	 * left for them, but a stage that runs builds its whole-program call graph even if a single 
+	 * callsite reached it. Each stage's phases are written to <output>.phases.csv and the 
+	 * algorithm that resolved each callsite, or UNRESOLVED, to <output>.callsites.csv.
+	 */
+	public CascadeResult resolveCascade(File output) throws IOException {
+		String projectName = Common.universe().nodes(XCSG.Project).eval().nodes().one().getAttr(XCSG.name).toString();
+		Log.info("Starting cascading resolution for "+projectName);
+		
+		Q potentiallyTransformableMethodCallsites = getCallsites(getPotentiallyTransformableMethods());
+		AtlasSet<Node> callsites = potentiallyTransformableMethodCallsites.eval().nodes();
+		
+		NodeIndex nodeIndex = new NodeIndex();
+		Instrumentation instrumentation = new Instrumentation();
+		CascadeResolver cascadeResolver = new CascadeResolver(nodeIndex);
+		cascadeResolver.setInstrumentation(instrumentation);
+		CascadeResult result = cascadeResolver.resolve(callsites);
+		ResultStore results = new ResultStore(nodeIndex);
+		result.addTo(results);
+		
+		FileWriter fw = new FileWriter(output);
+		fw.write("Total Potentially Transformable Application Method Callsites,");
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			fw.write(algorithm.getName() + " Analyzed," + algorithm.getName() + " Resolved," + algorithm.getName() + " Time,");
+		}
+		fw.write("Unresolved\n");
+		
+		fw.write(callsites.size() + ",");
+		for(CallGraphAlgorithm algorithm : CallGraphAlgorithm.values()){
+			fw.write(result.getAnalyzedCount(algorithm) + "," + results.count(algorithm.getTag(CascadeResolver.CASCADE_RESOLVED)) + "," + result.getTime(algorithm) + ",");
+		}
+		fw.write(result.getUnresolved().size() + "\n");
+		fw.close();
+		instrumentation.write(new File(output.getPath() + ".phases.csv"));
+		
+		fw = new FileWriter(new File(output.getPath() + ".callsites.csv"));
+		try {
+			fw.write("Callsite,Location,Caller,Resolved By\n");
+			for(Node callsite : callsites){
+				Node caller = CommonQueries.getContainingFunction(callsite);
+				CallGraphAlgorithm algorithm = result.getResolvingAlgorithm(callsite);
+				fw.write(ReportFormat.quote(String.valueOf(callsite.getAttr(XCSG.name))) + ","
+						+ ReportFormat.quote(ReportFormat.getLocation(callsite)) + ","
+						+ ReportFormat.quote(caller == null ? "" : NodeKeys.getSignature(caller)) + ","
+						+ (algorithm == null ? CascadeResolver.UNRESOLVED : algorithm.getName()) + "\n");
+			}
+		} finally {
+			fw.close();
+		}
+		
+		if(ResolverPreferences.isTagResultsEnabled()){
+			results.tag();
+		}
+		Log.info("Finished cascading resolution for "+projectName);
+		return result;
+	}
+	
+	/**
+	 * Returns the rewrite, clone, unchanged and should be static counts of the algorithm
+	 */
+	private static String getCounts(ResultStore results, CallGraphAlgorithm algorithm){
+		return results.count(algorithm.getTag(Classification.REWRITE)) + "," 
+				+ results.count(algorithm.getTag(Classification.CLONE)) + "," 
+				+ results.count(algorithm.getTag(Classification.UNCHANGED)) + "," 
+				+ results.count(algorithm.getTag(Classification.SHOULD_BE_STATIC));
+	}
+	
+	public static void tagShouldBeStaticMethodsCHA(Q candidateMethods){
+		new Classifier(CallGraphAlgorithm.CHA).classifyShouldBeStatic(candidateMethods).tag();
+	}
+	
+	public static void tagShouldBeStaticMethodsCHA(Q candidateMethods, CallsiteIndex chaCallsites){
+		new Classifier(CallGraphAlgorithm.CHA, chaCallsites).classifyShouldBeStatic(candidateMethods).tag();
+	}
+	
+	public static void tagShouldBeStaticMethodsRRTA(Q candidateMethods){
+		new Classifier(CallGraphAlgorithm.RRTA).classifyShouldBeStatic(candidateMethods).tag();
+	}
+	
+	public static void tagShouldBeStaticMethodsRRTA(Q candidateMethods, CallsiteIndex rrtaCallsites){
+		new Classifier(CallGraphAlgorithm.RRTA, rrtaCallsites).classifyShouldBeStatic(candidateMethods).tag();
+	}
+	
+	public static void tagShouldBeStaticMethods0CFA(Q candidateMethods){
+		new Classifier(CallGraphAlgorithm.ZERO_CFA).classifyShouldBeStatic(candidateMethods).tag();
+	}
+	
+	public static void tagShouldBeStaticMethods0CFA(Q candidateMethods, CallsiteIndex zerocfaCallsites){
+		new Classifier(CallGraphAlgorithm.ZERO_CFA, zerocfaCallsites).classifyShouldBeStatic(candidateMethods).tag();
+	}
+	
+	public static void tagMethodsCHA(Q candidateMethods){
+		new Classifier(CallGraphAlgorithm.CHA).classifyMethods(candidateMethods).tag();
+	}
+	
+	public static void tagMethodsCHA(Q candidateMethods, CallsiteIndex chaCallsites){
+		new Classifier(CallGraphAlgorithm.CHA, chaCallsites).classifyMethods(candidateMethods).tag();
+	}
+	
+	public static void tagMethodsRRTA(Q candidateMethods){
+		new Classifier(CallGraphAlgorithm.RRTA).classifyMethods(candidateMethods).tag();
+	}
+	
+	public static void tagMethodsRRTA(Q candidateMethods, CallsiteIndex rrtaCallsites){
+		new Classifier(CallGraphAlgorithm.RRTA, rrtaCallsites).classifyMethods(candidateMethods).tag();
+	}
+	
+	public static void tagMethods0CFA(Q candidateMethods){
+		new Classifier(CallGraphAlgorithm.ZERO_CFA).classifyMethods(candidateMethods).tag();
+	}
+	
+	public static void tagMethods0CFA(Q candidateMethods, CallsiteIndex zerocfaCallsites){
+		new Classifier(CallGraphAlgorithm.ZERO_CFA, zerocfaCallsites).classifyMethods(candidateMethods).tag();
+	}
+	
+	public static void tagTransformableCallsitesCHA(Q candidateCallsites){
+		new Classifier(CallGraphAlgorithm.CHA).classifyCallsites(candidateCallsites).tag();
+	}
+	
+	public static void tagTransformableCallsitesCHA(Q candidateCallsites, CallsiteIndex chaCallsites){
+		new Classifier(CallGraphAlgorithm.CHA, chaCallsites).classifyCallsites(candidateCallsites).tag();
+	}
+	
+	public static void tagTransformableCallsitesRRTA(Q candidateCallsites){
+		new Classifier(CallGraphAlgorithm.RRTA).classifyCallsites(candidateCallsites).tag();
+	}
+	
+	public static void tagTransformableCallsitesRRTA(Q candidateCallsites, CallsiteIndex rrtaCallsites){
+		new Classifier(CallGraphAlgorithm.RRTA, rrtaCallsites).classifyCallsites(candidateCallsites).tag();
+	}
+	
+	public static void tagTransformableCallsites0CFA(Q candidateCallsites){
+		new Classifier(CallGraphAlgorithm.ZERO_CFA).classifyCallsites(candidateCallsites).tag();
+	}
+	
+	public static void tagTransformableCallsites0CFA(Q candidateCallsites, CallsiteIndex zerocfaCallsites){
+		new Classifier(CallGraphAlgorithm.ZERO_CFA, zerocfaCallsites).classifyCallsites(candidateCallsites).tag();
+	}
+	
+}
@@ -0,0 +1,374 @@
+package com.kcsl.ddresolver;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Options that control how the resolver runs, see Resolver.resetPreferences()
+ */
+public class ResolverPreferences {
+
+	public static final boolean TAG_RESULTS_DEFAULT = true;
+	private static boolean tagResults = TAG_RESULTS_DEFAULT;
+	
+	/**
+	 * Enables or disables exporting the results as tags on the graph (for example "CHA-REWRITE")
+	 * once metrics have been collected
+	 */
+	public static void enableTagResults(boolean enabled){
+		tagResults = enabled;
+	}
+	
+	public static boolean isTagResultsEnabled(){
+		return tagResults;
+	}
+	
+	public static final long TYPE_HIERARCHY_CACHE_CAPACITY_DEFAULT = 5_000_000;
+	private static long typeHierarchyCacheCapacity = TYPE_HIERARCHY_CACHE_CAPACITY_DEFAULT;
+	
+	/**
+	 * Sets the maximum number of nodes held across all the sets cached by the 
+	 * TypeHierarchyCache, takes effect when the cache is next created
+	 */
+	public static void setTypeHierarchyCacheCapacity(long capacity){
+		typeHierarchyCacheCapacity = capacity;
+	}
+	
+	public static long getTypeHierarchyCacheCapacity(){
+		return typeHierarchyCacheCapacity;
+	}
+	
+	public static final boolean CONCURRENT_CALL_GRAPHS_DEFAULT = false;
+	private static boolean concurrentCallGraphs = CONCURRENT_CALL_GRAPHS_DEFAULT;
+	
+	/**
+	 * Enables or disables building the call graphs of each algorithm on separate threads, 
+	 * each algorithm's candidates are classified as soon as its call graph is ready.
+	 * Disabled by default, the call graphs are then built one after another: each cg toolbox
+	 * analysis is a lazily created singleton (see CallGraphAlgorithm.getCallGraph()) that
+	 * writes its per control flow edges and tags into the shared Atlas index the first time
+	 * it runs, and neither the toolbox nor Atlas documents those writes as safe while other
+	 * threads build another call graph or evaluate universe queries, as CallsiteIndex.build
+	 * does. Enable it only where that has been verified for the Atlas version in use.
+	 */
+	public static void enableConcurrentCallGraphs(boolean enabled){
+		concurrentCallGraphs = enabled;
+	}
+	
+	public static boolean isConcurrentCallGraphsEnabled(){
+		return concurrentCallGraphs;
+	}
+	
+	public static final boolean RESULT_CACHE_DEFAULT = false;
+	private static boolean resultCache = RESULT_CACHE_DEFAULT;
+	
+	/**
+	 * Enables or disables saving results to disk and reusing them while the project fingerprint is unchanged.
+	 * Disabled by default, nothing is written to the result cache directory unless it is enabled.
+	 */
+	public static void enableResultCache(boolean enabled){
+		resultCache = enabled;
+	}
+	
+	public static boolean isResultCacheEnabled(){
+		return resultCache;
+	}
+	
+	public static final File RESULT_CACHE_DIRECTORY_DEFAULT = new File(System.getProperty("user.home"), ".ddresolver");
+	private static File resultCacheDirectory = RESULT_CACHE_DIRECTORY_DEFAULT;
+	
+	public static void setResultCacheDirectory(File directory){
+		resultCacheDirectory = directory;
+	}
+	
+	public static File getResultCacheDirectory(){
+		return resultCacheDirectory;
+	}
+	
+	public static final boolean INCREMENTAL_RESOLUTION_DEFAULT = false;
+	private static boolean incrementalResolution = INCREMENTAL_RESOLUTION_DEFAULT;
+	
+	/**
+	 * Enables or disables reclassifying only the candidates affected by changes since the 
+	 * previous run when the result cache is stale, requires the result cache to be enabled
+	 */
+	public static void enableIncrementalResolution(boolean enabled){
+		incrementalResolution = enabled;
+	}
+	
+	public static boolean isIncrementalResolutionEnabled(){
+		return incrementalResolution;
+	}
+	
+	public static final double INCREMENTAL_RESOLUTION_LIMIT_DEFAULT = 0.5;
+	private static double incrementalResolutionLimit = INCREMENTAL_RESOLUTION_LIMIT_DEFAULT;
+	
+	/**
+	 * Sets the fraction of candidates above which an incremental run falls back to classifying every candidate
+	 */
+	public static void setIncrementalResolutionLimit(double limit){
+		incrementalResolutionLimit = limit;
+	}
+	
+	public static double getIncrementalResolutionLimit(){
+		return incrementalResolutionLimit;
+	}
+	
+	public static final int GUARD_LIMIT_DEFAULT = 3;
+	private static int guardLimit = GUARD_LIMIT_DEFAULT;
+	
+	/**
+	 * Sets the largest number of targets a callsite may have to be devirtualized behind type 
+	 * guards, callsites with two up to this many targets are classified CALLSITEGUARDABLE. 
+	 * Limits below 2 disable guarded devirtualization.
+	 */
+	public static void setGuardLimit(int limit){
+		guardLimit = limit;
+	}
+	
+	public static int getGuardLimit(){
+		return guardLimit;
+	}
+	
+	public static final int HOT_CALLSITE_LIMIT_DEFAULT = 0;
+	private static int hotCallsiteLimit = HOT_CALLSITE_LIMIT_DEFAULT;
+	
+	/**
+	 * Sets the number of transformable and guardable callsites, most frequent first by
+	 * HotnessEstimator, that Resolver.rewrite changes. 0 rewrites every callsite.
+	 */
+	public static void setHotCallsiteLimit(int limit){
+		hotCallsiteLimit = limit;
+	}
+	
+	public static int getHotCallsiteLimit(){
+		return hotCallsiteLimit;
+	}
+	
+	public static final File PROFILE_DEFAULT = null;
+	private static File profile = PROFILE_DEFAULT;
+	
+	/**
+	 * Sets the flight recording or collapsed stack file of a profiled run used to weight 
+	 * candidates by their sampled calls, see ExecutionProfile. null disables profile weighting.
+	 */
+	public static void setProfile(File file){
+		profile = file;
+	}
+	
+	public static File getProfile(){
+		return profile;
+	}
+	
+	public static final File APPLICATION_BYTECODE_DEFAULT = null;
+	private static File applicationBytecode = APPLICATION_BYTECODE_DEFAULT;
+	
+	/**
+	 * Sets the jar or class directory of the indexed application, used to measure the bytecode 
+	 * size of resolved targets, see InliningBudget. null disables the inlining counts.
+	 */
+	public static void setApplicationBytecode(File jarOrDirectory){
+		applicationBytecode = jarOrDirectory;
+	}
+	
+	public static File getApplicationBytecode(){
+		return applicationBytecode;
+	}
+	
+	public static final int MAX_INLINE_SIZE_DEFAULT = 35;
+	private static int maxInlineSize = MAX_INLINE_SIZE_DEFAULT;
+	
+	/**
+	 * Sets the largest bytecode size of a target inlined at any callsite, HotSpot's -XX:MaxInlineSize
+	 */
+	public static void setMaxInlineSize(int size){
+		maxInlineSize = size;
+	}
+	
+	public static int getMaxInlineSize(){
+		return maxInlineSize;
+	}
+	
+	public static final int FREQ_INLINE_SIZE_DEFAULT = 325;
+	private static int freqInlineSize = FREQ_INLINE_SIZE_DEFAULT;
+	
+	/**
+	 * Sets the largest bytecode size of a target inlined at frequently executed callsites, HotSpot's -XX:FreqInlineSize
+	 */
+	public static void setFreqInlineSize(int size){
+		freqInlineSize = size;
+	}
+	
+	public static int getFreqInlineSize(){
+		return freqInlineSize;
+	}
+	
+	public static final long CLONE_BUDGET_DEFAULT = -1;
+	private static long cloneBudget = CLONE_BUDGET_DEFAULT;
+	
+	/**
+	 * Sets the bytes Resolver.rewrite may add by copying CLONE methods, chosen by ClonePlanner. 
+	 * A negative budget copies every CLONE method.
+	 */
+	public static void setCloneBudget(long bytes){
+		cloneBudget = bytes;
+	}
+	
+	public static long getCloneBudget(){
+		return cloneBudget;
+	}
+	
+	public static final boolean ENTRY_POINT_PRUNING_DEFAULT = false;
+	private static boolean entryPointPruning = ENTRY_POINT_PRUNING_DEFAULT;
+	
+	/**
+	 * Enables or disables classifying only the candidates reachable from the entry points 
+	 * in the entry point algorithm's call graph, see EntryPoints
+	 */
+	public static void enableEntryPointPruning(boolean enabled){
+		entryPointPruning = enabled;
+	}
+	
+	public static boolean isEntryPointPruningEnabled(){
+		return entryPointPruning;
+	}
+	
+	public static final CallGraphAlgorithm ENTRY_POINT_ALGORITHM_DEFAULT = CallGraphAlgorithm.CHA;
+	private static CallGraphAlgorithm entryPointAlgorithm = ENTRY_POINT_ALGORITHM_DEFAULT;
+	
+	/**
+	 * Sets the algorithm whose call graph decides which candidates the entry points reach, 
+	 * CHA's call graph is the largest and prunes the fewest candidates
+	 */
+	public static void setEntryPointAlgorithm(CallGraphAlgorithm algorithm){
+		entryPointAlgorithm = algorithm;
+	}
+	
+	public static CallGraphAlgorithm getEntryPointAlgorithm(){
+		return entryPointAlgorithm;
+	}
+	
+	public static final List<String> ENTRY_POINT_ANNOTATIONS_DEFAULT = Collections.unmodifiableList(Arrays.asList(
+			"javax.servlet.annotation.WebServlet", "jakarta.servlet.annotation.WebServlet",
+			"javax.ws.rs.Path", "jakarta.ws.rs.Path",
+			"org.springframework.stereotype.Controller", "org.springframework.web.bind.annotation.RestController",
+			"org.springframework.web.bind.annotation.RequestMapping", "org.springframework.web.bind.annotation.GetMapping",
+			"org.springframework.web.bind.annotation.PostMapping", "org.springframework.web.bind.annotation.PutMapping",
+			"org.springframework.web.bind.annotation.DeleteMapping", "org.springframework.web.bind.annotation.PatchMapping"));
+	private static List<String> entryPointAnnotations = ENTRY_POINT_ANNOTATIONS_DEFAULT;
+	
+	/**
+	 * Sets the qualified names of the annotations that make the annotated methods, or the 
+	 * methods of annotated types, entry points
+	 */
+	public static void setEntryPointAnnotations(List<String> annotations){
+		entryPointAnnotations = new ArrayList<String>(annotations);
+	}
+	
+	public static List<String> getEntryPointAnnotations(){
+		return entryPointAnnotations;
+	}
+	
+	public static final List<String> ENTRY_POINT_METHODS_DEFAULT = Collections.emptyList();
+	private static List<String> entryPointMethods = ENTRY_POINT_METHODS_DEFAULT;
+	
+	/**
+	 * Sets the qualified names of additional entry point methods, for example "com.example.Worker.run"
+	 */
+	public static void setEntryPointMethods(List<String> methods){
+		entryPointMethods = new ArrayList<String>(methods);
+	}
+	
+	public static List<String> getEntryPointMethods(){
+		return entryPointMethods;
+	}
+	
+	public static final long HEAP_BUDGET_DEFAULT = 0;
+	private static long heapBudget = HEAP_BUDGET_DEFAULT;
+	
+	/**
+	 * Sets the heap in bytes collecting metrics should stay within by classifying the candidates 
+	 * in chunks that shrink while the budget is exceeded, see CandidateChunker. 0 classifies 
+	 * every candidate at once.
+	 */
+	public static void setHeapBudget(long bytes){
+		heapBudget = bytes;
+	}
+	
+	public static long getHeapBudget(){
+		return heapBudget;
+	}
+	
+	public static final int CHUNK_SIZE_DEFAULT = 20_000;
+	private static int chunkSize = CHUNK_SIZE_DEFAULT;
+	
+	/**
+	 * Sets the largest number of candidate methods and callsites classified together under a heap budget
+	 */
+	public static void setChunkSize(int candidates){
+		chunkSize = candidates;
+	}
+	
+	public static int getChunkSize(){
+		return chunkSize;
+	}
+	
+	public static final CandidateChunker.Granularity CHUNK_GRANULARITY_DEFAULT = CandidateChunker.Granularity.PACKAGE;
+	private static CandidateChunker.Granularity chunkGranularity = CHUNK_GRANULARITY_DEFAULT;
+	
+	/**
+	 * Sets whether chunks are made of whole packages or whole top level types, 
+	 * types make smaller chunks possible when single packages are too large
+	 */
+	public static void setChunkGranularity(CandidateChunker.Granularity granularity){
+		chunkGranularity = granularity;
+	}
+	
+	public static CandidateChunker.Granularity getChunkGranularity(){
+		return chunkGranularity;
+	}
+	
+	public static final CandidateDetails.Format DETAIL_FORMAT_DEFAULT = null;
+	private static CandidateDetails.Format detailFormat = DETAIL_FORMAT_DEFAULT;
+	
+	/**
+	 * Sets the format of the per candidate records collecting metrics writes next to the output 
+	 * as <output>.details.ddrd or <output>.details.csv, see CandidateDetails. null writes no records.
+	 */
+	public static void setDetailFormat(CandidateDetails.Format format){
+		detailFormat = format;
+	}
+	
+	public static CandidateDetails.Format getDetailFormat(){
+		return detailFormat;
+	}
+	
+	public static void restoreDefaults(){
+		tagResults = TAG_RESULTS_DEFAULT;
+		typeHierarchyCacheCapacity = TYPE_HIERARCHY_CACHE_CAPACITY_DEFAULT;
+		concurrentCallGraphs = CONCURRENT_CALL_GRAPHS_DEFAULT;
+		resultCache = RESULT_CACHE_DEFAULT;
+		resultCacheDirectory = RESULT_CACHE_DIRECTORY_DEFAULT;
+		incrementalResolution = INCREMENTAL_RESOLUTION_DEFAULT;
+		incrementalResolutionLimit = INCREMENTAL_RESOLUTION_LIMIT_DEFAULT;
+		guardLimit = GUARD_LIMIT_DEFAULT;
+		hotCallsiteLimit = HOT_CALLSITE_LIMIT_DEFAULT;
+		profile = PROFILE_DEFAULT;
+		applicationBytecode = APPLICATION_BYTECODE_DEFAULT;
+		maxInlineSize = MAX_INLINE_SIZE_DEFAULT;
+		freqInlineSize = FREQ_INLINE_SIZE_DEFAULT;
+		cloneBudget = CLONE_BUDGET_DEFAULT;
+		entryPointPruning = ENTRY_POINT_PRUNING_DEFAULT;
+		entryPointAlgorithm = ENTRY_POINT_ALGORITHM_DEFAULT;
+		entryPointAnnotations = ENTRY_POINT_ANNOTATIONS_DEFAULT;
+		entryPointMethods = ENTRY_POINT_METHODS_DEFAULT;
+		heapBudget = HEAP_BUDGET_DEFAULT;
+		chunkSize = CHUNK_SIZE_DEFAULT;
+		chunkGranularity = CHUNK_GRANULARITY_DEFAULT;
+		detailFormat = DETAIL_FORMAT_DEFAULT;
+	}
+	
+}
@@ -0,0 +1,412 @@
+package com.kcsl.ddresolver;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.kcsl.ddresolver.RewritePlan.MethodRef;
+
+/**
+ * Saves classification results, callsite target counts, the targets of single target 
+ * callsites and scalar metrics to disk keyed by a project fingerprint. The file is memory 
+ * mapped when loaded and nodes are matched by their NodeKeys, a cache whose fingerprint 
+ * differs is ignored. Targets are saved as class file methods, so they are found in the 
+ * application bytecode without matching a node.
+ * 
+ * Layout (big endian): magic, version, fingerprint, node keys, metrics, result 
+ * sets as node key ids, per algorithm (callsite key id, target count) pairs, the 
+ * target methods (owner, name, descriptor) and per algorithm (callsite key id, 
+ * target method id) pairs.
+ */
+public class ResultCache {
+
+	private static final int MAGIC = 0x44445243; // DDRC
+	private static final int VERSION = 4; // 2 adds guardable callsites, 3 interface callsites, 4 single targets
+	
+	private final ResultStore results;
+	
+	// per algorithm the target count of each callsite by node id, -1 if it is not cached
+	private final Map<String,int[]> targetCounts = new LinkedHashMap<String,int[]>();
+	
+	// per algorithm the single target of each callsite by node id as an index into targetMethods, -1 if none is cached
+	private final Map<String,int[]> singleTargets = new LinkedHashMap<String,int[]>();
+	private final List<MethodRef> targetMethods = new ArrayList<MethodRef>();
+	private final Map<MethodRef,Integer> targetMethodIds = new HashMap<MethodRef,Integer>();
+	
+	// the method of each target node set in this session, null if it has none
+	private final Map<Node,MethodRef> targetNodeMethods = new HashMap<Node,MethodRef>();
+	private final Map<String,Long> metrics = new LinkedHashMap<String,Long>();
+	
+	public ResultCache(ResultStore results){
+		this.results = results;
+	}
+	
+	public ResultStore getResults(){
+		return results;
+	}
+	
+	/**
+	 * Removes the node's results and target counts
+	 */
+	public void remove(Node node){
+		results.remove(node);
+		int id = results.getNodeIndex().getId(node);
+		if(id >= 0){
+			clear(targetCounts, id);
+			clear(singleTargets, id);
+		}
+	}
+	
+	private static void clear(Map<String,int[]> values, int id){
+		for(int[] callsites : values.values()){
+			if(id < callsites.length){
+				callsites[id] = -1;
+			}
+		}
+	}
+	
+	public void setTargetCount(CallGraphAlgorithm algorithm, Node callsite, int targets){
+		set(targetCounts, algorithm.getName(), results.getNodeIndex().add(callsite), targets);
+	}
+	
+	/**
+	 * Sets the value of the callsite with the given id under the algorithm, growing its 
+	 * values to the node index so callsites added in one pass rarely copy them
+	 */
+	private void set(Map<String,int[]> values, String algorithm, int id, int value){
+		int[] callsites = values.get(algorithm);
+		if(callsites == null){
+			callsites = new int[0];
+		}
+		if(id >= callsites.length){
+			int length = callsites.length;
+			callsites = Arrays.copyOf(callsites, Math.max(id + 1, Math.max(results.getNodeIndex().size(), 2 * length)));
+			Arrays.fill(callsites, length, callsites.length, -1);
+			values.put(algorithm, callsites);
+		}
+		callsites[id] = value;
+	}
+	
+	private static int get(Map<String,int[]> values, CallGraphAlgorithm algorithm, int id){
+		int[] callsites = values.get(algorithm.getName());
+		return callsites == null || id < 0 || id >= callsites.length ? -1 : callsites[id];
+	}
+	
+	/**
+	 * Returns the cached number of targets of the callsite under the algorithm, -1 if it is not cached
+	 */
+	public int getTargetCount(CallGraphAlgorithm algorithm, Node callsite){
+		return getTargetCount(algorithm, results.getNodeIndex().getId(callsite));
+	}
+	
+	/**
+	 * Returns the cached number of targets of the callsite with the given id in the results' 
+	 * node index, -1 if it is not cached
+	 */
+	public int getTargetCount(CallGraphAlgorithm algorithm, int callsite){
+		return get(targetCounts, algorithm, callsite);
+	}
+	
+	/**
+	 * Caches the single method the callsite dispatches to under the algorithm, 
+	 * see RewritePlan.getMethodRef(Node)
+	 */
+	public void setTarget(CallGraphAlgorithm algorithm, Node callsite, Node target){
+		MethodRef method;
+		if(targetNodeMethods.containsKey(target)){
+			method = targetNodeMethods.get(target);
+		} else {
+			method = RewritePlan.getMethodRef(target);
+			targetNodeMethods.put(target, method);
+		}
+		set(singleTargets, algorithm.getName(), results.getNodeIndex().add(callsite), method == null ? -1 : getTargetMethodId(method));
+	}
+	
+	private int getTargetMethodId(MethodRef method){
+		Integer id = targetMethodIds.get(method);
+		if(id == null){
+			id = targetMethods.size();
+			targetMethods.add(method);
+			targetMethodIds.put(method, id);
+		}
+		return id;
+	}
+	
+	/**
+	 * Returns the cached single target of the callsite with the given id in the results' 
+	 * node index, null if the callsite has none or it is not cached
+	 */
+	public MethodRef getTarget(CallGraphAlgorithm algorithm, int callsite){
+		int method = get(singleTargets, algorithm, callsite);
+		return method < 0 ? null : targetMethods.get(method);
+	}
+	
+	public void setMetric(String metric, long value){
+		metrics.put(metric, value);
+	}
+	
+	/**
+	 * Returns the cached metric or -1 if it was not cached
+	 */
+	public long getMetric(String metric){
+		Long value = metrics.get(metric);
+		return value == null ? -1 : value;
+	}
+	
+	/**
+	 * Writes the cache to a temporary file and moves it over the given file. Returns false 
+	 * without writing if two cached nodes share a key and could not be told apart on load.
+	 */
+	public boolean save(File file, byte[] fingerprint) throws IOException {
+		NodeIndex nodeIndex = results.getNodeIndex();
+		
+		// assign each cached node a key id in the order nodes are first written
+		Map<Node,Integer> keyIds = new LinkedHashMap<Node,Integer>();
+		Map<String,Node> keys = new LinkedHashMap<String,Node>();
+		NodeKeys.KeyCache keyCache = new NodeKeys.KeyCache();
+		for(String tag : results.getTags()){
+			BitSet nodes = results.get(tag);
+			for(int id = nodes.nextSetBit(0); id >= 0; id = nodes.nextSetBit(id+1)){
+				if(!addKey(nodeIndex.getNode(id), keyIds, keys, keyCache)){
+					return false;
+				}
+			}
+		}
+		if(!addKeys(targetCounts, nodeIndex, keyIds, keys, keyCache) || !addKeys(singleTargets, nodeIndex, keyIds, keys, keyCache)){
+			return false;
+		}
+		
+		File parent = file.getAbsoluteFile().getParentFile();
+		if(parent != null){
+			parent.mkdirs();
+		}
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(fingerprint.length);
+			out.write(fingerprint);
+			
+			out.writeInt(keys.size());
+			for(String key : keys.keySet()){
+				writeString(out, key);
+			}
+			
+			out.writeInt(metrics.size());
+			for(Map.Entry<String,Long> metric : metrics.entrySet()){
+				writeString(out, metric.getKey());
+				out.writeLong(metric.getValue());
+			}
+			
+			out.writeInt(results.getTags().size());
+			for(String tag : results.getTags()){
+				BitSet nodes = results.get(tag);
+				writeString(out, tag);
+				out.writeInt(nodes.cardinality());
+				for(int id = nodes.nextSetBit(0); id >= 0; id = nodes.nextSetBit(id+1)){
+					out.writeInt(keyIds.get(nodeIndex.getNode(id)));
+				}
+			}
+			
+			writeCallsiteValues(out, targetCounts, keyIds, nodeIndex);
+			
+			out.writeInt(targetMethods.size());
+			for(MethodRef method : targetMethods){
+				writeString(out, method.getOwner());
+				writeString(out, method.getName());
+				writeString(out, method.getDescriptor());
+			}
+			writeCallsiteValues(out, singleTargets, keyIds, nodeIndex);
+		} finally {
+			out.close();
+		}
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		return true;
+	}
+	
+	/**
+	 * Writes per algorithm the (callsite key id, value) pairs of the callsites with a value
+	 */
+	private static void writeCallsiteValues(DataOutputStream out, Map<String,int[]> values, Map<Node,Integer> keyIds, NodeIndex nodeIndex) throws IOException {
+		out.writeInt(values.size());
+		for(Map.Entry<String,int[]> algorithm : values.entrySet()){
+			int[] callsites = algorithm.getValue();
+			int size = 0;
+			for(int id=0; id<callsites.length; id++){
+				if(callsites[id] >= 0){
+					size++;
+				}
+			}
+			writeString(out, algorithm.getKey());
+			out.writeInt(size);
+			for(int id=0; id<callsites.length; id++){
+				if(callsites[id] >= 0){
+					out.writeInt(keyIds.get(nodeIndex.getNode(id)));
+					out.writeInt(callsites[id]);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gives the callsites with a value the next key ids
+	 */
+	private static boolean addKeys(Map<String,int[]> values, NodeIndex nodeIndex, Map<Node,Integer> keyIds, Map<String,Node> keys, NodeKeys.KeyCache keyCache){
+		for(int[] callsites : values.values()){
+			for(int id=0; id<callsites.length; id++){
+				if(callsites[id] >= 0 && !addKey(nodeIndex.getNode(id), keyIds, keys, keyCache)){
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Gives the node the next key id, keys are added in key id order
+	 */
+	private static boolean addKey(Node node, Map<Node,Integer> keyIds, Map<String,Node> keys, NodeKeys.KeyCache keyCache){
+		if(keyIds.containsKey(node)){
+			return true;
+		}
+		String key = keyCache.getKey(node);
+		Node existing = keys.put(key, node);
+		if(existing != null && !existing.equals(node)){
+			Log.warning("Result cache not saved, nodes share the key " + key);
+			return false;
+		}
+		keyIds.put(node, keyIds.size());
+		return true;
+	}
+	
+	/**
+	 * Loads the cache if it exists, was saved with the same fingerprint and every cached 
+	 * node key matches one of the given nodes. Returns null otherwise. If the fingerprint 
+	 * is null the cache is loaded whatever it was saved with and cached nodes that do not 
+	 * match one of the given nodes are dropped, which is how incremental runs reuse results.
+	 * The candidate methods and callsites are passed separately so their union is never built.
+	 */
+	public static ResultCache load(File file, byte[] fingerprint, Iterable<Node> methods, Iterable<Node> callsites, NodeIndex nodeIndex) throws IOException {
+		if(!file.exists()){
+			return null;
+		}
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(buffer.getInt() != MAGIC || buffer.getInt() != VERSION){
+				return null;
+			}
+			byte[] cachedFingerprint = new byte[buffer.getInt()];
+			buffer.get(cachedFingerprint);
+			if(fingerprint != null && !Arrays.equals(cachedFingerprint, fingerprint)){
+				Log.info("Result cache " + file.getName() + " is stale");
+				return null;
+			}
+			
+			Map<String,Node> keyedNodes = new HashMap<String,Node>();
+			NodeKeys.KeyCache keyCache = new NodeKeys.KeyCache();
+			for(Node method : methods){
+				keyedNodes.put(keyCache.getKey(method), method);
+			}
+			for(Node callsite : callsites){
+				keyedNodes.put(keyCache.getKey(callsite), callsite);
+			}
+			Node[] keyNodes = new Node[buffer.getInt()];
+			for(int i=0; i<keyNodes.length; i++){
+				String key = readString(buffer);
+				keyNodes[i] = keyedNodes.get(key);
+				if(keyNodes[i] == null && fingerprint != null){
+					Log.info("Result cache " + file.getName() + " does not match the current index, missing " + key);
+					return null;
+				}
+			}
+			
+			ResultCache cache = new ResultCache(new ResultStore(nodeIndex));
+			int metricCount = buffer.getInt();
+			for(int i=0; i<metricCount; i++){
+				String metric = readString(buffer);
+				cache.metrics.put(metric, buffer.getLong());
+			}
+			
+			int tagCount = buffer.getInt();
+			for(int i=0; i<tagCount; i++){
+				String tag = readString(buffer);
+				BitSet result = cache.results.get(tag);
+				int size = buffer.getInt();
+				for(int j=0; j<size; j++){
+					Node node = keyNodes[buffer.getInt()];
+					if(node != null){
+						result.set(nodeIndex.add(node));
+					}
+				}
+			}
+			
+			cache.readCallsiteValues(buffer, cache.targetCounts, keyNodes);
+			
+			int methodCount = buffer.getInt();
+			for(int i=0; i<methodCount; i++){
+				cache.getTargetMethodId(new MethodRef(readString(buffer), readString(buffer), readString(buffer)));
+			}
+			cache.readCallsiteValues(buffer, cache.singleTargets, keyNodes);
+			return cache;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e){
+			Log.warning("Result cache " + file.getName() + " is corrupt", e);
+			return null;
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private void readCallsiteValues(ByteBuffer buffer, Map<String,int[]> values, Node[] keyNodes){
+		int algorithmCount = buffer.getInt();
+		for(int i=0; i<algorithmCount; i++){
+			String algorithm = readString(buffer);
+			int size = buffer.getInt();
+			for(int j=0; j<size; j++){
+				Node callsite = keyNodes[buffer.getInt()];
+				int value = buffer.getInt();
+				if(callsite != null){
+					set(values, algorithm, results.getNodeIndex().add(callsite), value);
+				}
+			}
+		}
+	}
+	
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+}
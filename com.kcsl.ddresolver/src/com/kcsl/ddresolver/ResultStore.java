@@ -0,0 +1,189 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+
+/**
+ * Keeps classification results in memory as one bitset per result tag over 
+ * dense node ids, tagging the graph is an optional export
+ */
+public class ResultStore {
+
+	private final NodeIndex nodeIndex;
+	private final Map<String,BitSet> results = new LinkedHashMap<String,BitSet>();
+	
+	public ResultStore(NodeIndex nodeIndex){
+		this.nodeIndex = nodeIndex;
+	}
+	
+	public NodeIndex getNodeIndex(){
+		return nodeIndex;
+	}
+	
+	/**
+	 * Adds the node to the result set for the tag, for example "CHA-REWRITE"
+	 */
+	public void add(String tag, Node node){
+		get(tag).set(nodeIndex.add(node));
+	}
+	
+	/**
+	 * Removes the node from every result set
+	 */
+	public void remove(Node node){
+		int id = nodeIndex.getId(node);
+		if(id >= 0){
+			for(BitSet result : results.values()){
+				result.clear(id);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the nodes in at least one result set
+	 */
+	public BitSet getAll(){
+		BitSet all = new BitSet();
+		for(BitSet result : results.values()){
+			all.or(result);
+		}
+		return all;
+	}
+	
+	/**
+	 * Adds every category of the classification under its algorithm prefixed tag
+	 */
+	public void add(Classification classification){
+		for(String category : classification.getCategories()){
+			BitSet result = get(classification.getAlgorithm().getTag(category));
+			for(Node node : classification.get(category)){
+				result.set(nodeIndex.add(node));
+			}
+		}
+	}
+	
+	/**
+	 * Returns the (live) result set for the tag, creating an empty set if needed
+	 */
+	public BitSet get(String tag){
+		BitSet result = results.get(tag);
+		if(result == null){
+			result = new BitSet();
+			results.put(tag, result);
+		}
+		return result;
+	}
+	
+	public List<String> getTags(){
+		return new ArrayList<String>(results.keySet());
+	}
+	
+	public int count(String tag){
+		BitSet result = results.get(tag);
+		return result == null ? 0 : result.cardinality();
+	}
+	
+	/**
+	 * Returns the number of nodes in the result set for the tag that are also in the mask
+	 */
+	public int count(String tag, BitSet mask){
+		BitSet result = (BitSet) get(tag).clone();
+		result.and(mask);
+		return result.cardinality();
+	}
+	
+	/**
+	 * Converts a set of nodes to a bitset over this store's node ids
+	 */
+	public BitSet toBitSet(AtlasSet<Node> nodes){
+		BitSet bits = new BitSet();
+		for(Node node : nodes){
+			bits.set(nodeIndex.add(node));
+		}
+		return bits;
+	}
+	
+	/**
+	 * Computes the size of every region of the venn diagram of the given result tags in a 
+	 * single pass. Region r holds the nodes that are in exactly the tags whose bits are set 
+	 * in r (bit i for tags[i]), region 0 is always empty.
+	 */
+	public long[] venn(String... tags){
+		if(tags.length > 30){
+			throw new IllegalArgumentException("Too many result sets for a venn diagram");
+		}
+		BitSet[] sets = new BitSet[tags.length];
+		BitSet union = new BitSet();
+		for(int i=0; i<tags.length; i++){
+			sets[i] = get(tags[i]);
+			union.or(sets[i]);
+		}
+		long[] regions = new long[1 << tags.length];
+		for(int id = union.nextSetBit(0); id >= 0; id = union.nextSetBit(id+1)){
+			int signature = 0;
+			for(int i=0; i<sets.length; i++){
+				if(sets[i].get(id)){
+					signature |= 1 << i;
+				}
+			}
+			regions[signature]++;
+		}
+		return regions;
+	}
+	
+	/**
+	 * Returns the non-empty venn regions of k sets ordered by the number of 
+	 * sets they belong to, for k=3 that is 1,2,4,3,5,6,7
+	 */
+	public static List<Integer> getVennRegions(int k){
+		List<Integer> regions = new ArrayList<Integer>();
+		for(int region=1; region<(1 << k); region++){
+			regions.add(region);
+		}
+		Collections.sort(regions, new Comparator<Integer>(){
+			@Override
+			public int compare(Integer a, Integer b){
+				int bits = Integer.compare(Integer.bitCount(a), Integer.bitCount(b));
+				return bits != 0 ? bits : Integer.compare(a, b);
+			}
+		});
+		return regions;
+	}
+	
+	/**
+	 * Returns the label of a venn region, for example "c1CHA/c1RRTA"
+	 */
+	public static String getVennLabel(int region, String prefix, String... names){
+		StringBuilder label = new StringBuilder();
+		for(int i=0; i<names.length; i++){
+			if((region & (1 << i)) != 0){
+				if(label.length() > 0){
+					label.append("/");
+				}
+				label.append(prefix).append(names[i]);
+			}
+		}
+		return label.toString();
+	}
+	
+	/**
+	 * Exports the results by tagging each node with the tags of the result sets it belongs to
+	 */
+	public void tag(){
+		for(Map.Entry<String,BitSet> result : results.entrySet()){
+			BitSet nodes = result.getValue();
+			for(int id = nodes.nextSetBit(0); id >= 0; id = nodes.nextSetBit(id+1)){
+				nodeIndex.getNode(id).tag(result.getKey());
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,599 @@
+package com.kcsl.ddresolver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasHashSet;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.log.Log;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+import com.ensoftcorp.open.commons.analysis.CommonQueries;
+
+/**
+ * The bytecode changes implied by a classification. Every REWRITE and CLONE method gets
+ * a static copy that takes the receiver as its first parameter, and the callsites that
+ * may only dispatch to such a method are changed to invoke the static copy. A REWRITE
+ * method that does not override and is not overridden by another method may be replaced
+ * by its static copy once all of its callsites are changed.
+ *
+ * Class files do not say which invoke instruction is which indexed callsite, so callsites
+ * are changed in groups: all dynamic dispatch callsites in a caller that invoke the same
+ * method name and descriptor. A group is only planned if every callsite in it resolves to
+ * the same method, and only applied if the caller's bytecode has exactly that many
+ * invokevirtual and invokeinterface instructions for the name and descriptor.
+ *
+ * Groups whose callsites may dispatch to two up to the guard limit methods (see
+ * Classification.CALLSITE_GUARDABLE) are devirtualized behind type guards: each target
+ * with a static copy is tested in order of likelihood and the original virtual call is
+ * the fallback. Likelihood is the number of instantiations of the types that dispatch
+ * to the target unless target weights, for example from a profile, are given.
+ *
+ * SHOULD-BE-STATIC methods are converted: their static copy becomes the implementation and
+ * the instance method, unless it is replaced, becomes a bridge that passes its receiver and
+ * arguments to the static copy, so virtual, reflective and external callers keep working.
+ */
+public class RewritePlan {
+	
+	/**
+	 * A method in a class file
+	 */
+	public static class MethodRef {
+		
+		private final String owner;
+		private final String name;
+		private final String descriptor;
+		
+		public MethodRef(String owner, String name, String descriptor){
+			this.owner = owner;
+			this.name = name;
+			this.descriptor = descriptor;
+		}
+		
+		/**
+		 * Returns the internal name of the declaring class
+		 */
+		public String getOwner(){
+			return owner;
+		}
+		
+		public String getName(){
+			return name;
+		}
+		
+		public String getDescriptor(){
+			return descriptor;
+		}
+		
+		/**
+		 * Returns the name of the method's static copy
+		 */
+		public String getStaticName(){
+			return name + BytecodeRewriter.STATIC_SUFFIX;
+		}
+		
+		/**
+		 * Returns the descriptor of the method's static copy, which takes the receiver as an Object
+		 */
+		public String getStaticDescriptor(){
+			return "(Ljava/lang/Object;" + descriptor.substring(1);
+		}
+		
+		public String getKey(){
+			return getKey(owner, name, descriptor);
+		}
+		
+		public static String getKey(String owner, String name, String descriptor){
+			return owner + "." + name + descriptor;
+		}
+		
+		@Override
+		public boolean equals(Object o){
+			return o instanceof MethodRef && getKey().equals(((MethodRef) o).getKey());
+		}
+		
+		@Override
+		public int hashCode(){
+			return getKey().hashCode();
+		}
+		
+		@Override
+		public String toString(){
+			return getKey();
+		}
+		
+	}
+	
+	/**
+	 * The dynamic dispatch callsites in a caller that invoke the same name and descriptor
+	 * and may only dispatch to the target
+	 */
+	public static class CallsiteGroup {
+		
+		private final MethodRef caller;
+		private final String invokedName;
+		private final String invokedDescriptor;
+		private final int size;
+		private final MethodRef target;
+		
+		public CallsiteGroup(MethodRef caller, String invokedName, String invokedDescriptor, int size, MethodRef target){
+			this.caller = caller;
+			this.invokedName = invokedName;
+			this.invokedDescriptor = invokedDescriptor;
+			this.size = size;
+			this.target = target;
+		}
+		
+		public MethodRef getCaller(){
+			return caller;
+		}
+		
+		public String getInvokedName(){
+			return invokedName;
+		}
+		
+		public String getInvokedDescriptor(){
+			return invokedDescriptor;
+		}
+		
+		/**
+		 * Returns the number of callsites in the group
+		 */
+		public int getSize(){
+			return size;
+		}
+		
+		public MethodRef getTarget(){
+			return target;
+		}
+		
+	}
+	
+	/**
+	 * A type test that selects a target of a guarded callsite group. The test is an instanceof 
+	 * test of the target's class if no subclass overrides the target and an exact class 
+	 * comparison otherwise.
+	 */
+	public static class Guard {
+		
+		private final MethodRef target;
+		private final boolean exact;
+		
+		public Guard(MethodRef target, boolean exact){
+			this.target = target;
+			this.exact = exact;
+		}
+		
+		public MethodRef getTarget(){
+			return target;
+		}
+		
+		/**
+		 * Returns true if the receiver's class must be the target's class, not one of its subclasses
+		 */
+		public boolean isExact(){
+			return exact;
+		}
+		
+	}
+	
+	/**
+	 * The dynamic dispatch callsites in a caller that invoke the same name and descriptor and
+	 * may dispatch to a few methods, with the guards to test in order
+	 */
+	public static class GuardedCallsiteGroup {
+		
+		private final MethodRef caller;
+		private final String invokedName;
+		private final String invokedDescriptor;
+		private final int size;
+		private final List<Guard> guards;
+		
+		public GuardedCallsiteGroup(MethodRef caller, String invokedName, String invokedDescriptor, int size, List<Guard> guards){
+			this.caller = caller;
+			this.invokedName = invokedName;
+			this.invokedDescriptor = invokedDescriptor;
+			this.size = size;
+			this.guards = guards;
+		}
+		
+		public MethodRef getCaller(){
+			return caller;
+		}
+		
+		public String getInvokedName(){
+			return invokedName;
+		}
+		
+		public String getInvokedDescriptor(){
+			return invokedDescriptor;
+		}
+		
+		/**
+		 * Returns the number of callsites in the group
+		 */
+		public int getSize(){
+			return size;
+		}
+		
+		/**
+		 * Returns the guards from the most to the least likely target
+		 */
+		public List<Guard> getGuards(){
+			return guards;
+		}
+		
+	}
+	
+	private final CallGraphAlgorithm algorithm;
+	private final Map<String,MethodRef> methods = new LinkedHashMap<String,MethodRef>();
+	private final Set<String> replaceable = new HashSet<String>();
+	private final Set<String> bridged = new HashSet<String>();
+	private final List<MethodRef> skipped = new ArrayList<MethodRef>();
+	private final Map<String,List<CallsiteGroup>> callerGroups = new HashMap<String,List<CallsiteGroup>>();
+	private final Map<String,List<CallsiteGroup>> targetGroups = new HashMap<String,List<CallsiteGroup>>();
+	private final Map<String,List<GuardedCallsiteGroup>> guardedGroups = new LinkedHashMap<String,List<GuardedCallsiteGroup>>();
+	
+	public RewritePlan(CallGraphAlgorithm algorithm){
+		this.algorithm = algorithm;
+	}
+	
+	public CallGraphAlgorithm getAlgorithm(){
+		return algorithm;
+	}
+	
+	/**
+	 * Plans a static copy of the method, replaceable methods may be removed once all their callsites are changed
+	 */
+	public void addMethod(MethodRef method, boolean replaceable){
+		addMethod(method, replaceable, false);
+	}
+	
+	/**
+	 * Plans a static copy of the method, the instance method of bridged methods delegates to the 
+	 * static copy instead of keeping its body
+	 */
+	public void addMethod(MethodRef method, boolean replaceable, boolean bridged){
+		methods.put(method.getKey(), method);
+		setMember(this.replaceable, method, replaceable);
+		setMember(this.bridged, method, bridged);
+	}
+	
+	private static void setMember(Set<String> set, MethodRef method, boolean member){
+		if(member){
+			set.add(method.getKey());
+		} else {
+			set.remove(method.getKey());
+		}
+	}
+	
+	public void addCallsiteGroup(CallsiteGroup group){
+		if(!methods.containsKey(group.getTarget().getKey())){
+			throw new IllegalArgumentException("Callsite group target " + group.getTarget() + " has no planned static copy");
+		}
+		getGroups(callerGroups, group.getCaller().getKey()).add(group);
+		getGroups(targetGroups, group.getTarget().getKey()).add(group);
+	}
+	
+	public void addGuardedCallsiteGroup(GuardedCallsiteGroup group){
+		for(Guard guard : group.getGuards()){
+			if(!methods.containsKey(guard.getTarget().getKey())){
+				throw new IllegalArgumentException("Guarded callsite group target " + guard.getTarget() + " has no planned static copy");
+			}
+		}
+		List<GuardedCallsiteGroup> groups = guardedGroups.get(group.getCaller().getKey());
+		if(groups == null){
+			groups = new ArrayList<GuardedCallsiteGroup>();
+			guardedGroups.put(group.getCaller().getKey(), groups);
+		}
+		groups.add(group);
+	}
+	
+	/**
+	 * Returns the methods that get a static copy
+	 */
+	public Collection<MethodRef> getMethods(){
+		return Collections.unmodifiableCollection(methods.values());
+	}
+	
+	public boolean isReplaceable(MethodRef method){
+		return replaceable.contains(method.getKey());
+	}
+	
+	public boolean isBridged(MethodRef method){
+		return bridged.contains(method.getKey());
+	}
+	
+	/**
+	 * Records a SHOULD-BE-STATIC method that gets no static copy because no dynamic dispatch 
+	 * callsite may dispatch to it
+	 */
+	public void addSkippedMethod(MethodRef method){
+		skipped.add(method);
+	}
+	
+	/**
+	 * Returns the SHOULD-BE-STATIC methods that get no static copy, see addSkippedMethod(MethodRef)
+	 */
+	public List<MethodRef> getSkippedMethods(){
+		return Collections.unmodifiableList(skipped);
+	}
+	
+	/**
+	 * Returns the callsite groups in the caller with the given key
+	 */
+	public List<CallsiteGroup> getCallerGroups(String callerKey){
+		List<CallsiteGroup> groups = callerGroups.get(callerKey);
+		return groups == null ? Collections.<CallsiteGroup>emptyList() : groups;
+	}
+	
+	/**
+	 * Returns the callsite groups that invoke the static copy of the method with the given key
+	 */
+	public List<CallsiteGroup> getTargetGroups(String targetKey){
+		List<CallsiteGroup> groups = targetGroups.get(targetKey);
+		return groups == null ? Collections.<CallsiteGroup>emptyList() : groups;
+	}
+	
+	/**
+	 * Returns every planned callsite group
+	 */
+	public List<CallsiteGroup> getCallsiteGroups(){
+		List<CallsiteGroup> groups = new ArrayList<CallsiteGroup>();
+		for(List<CallsiteGroup> callerGroup : callerGroups.values()){
+			groups.addAll(callerGroup);
+		}
+		return groups;
+	}
+	
+	/**
+	 * Returns the guarded callsite groups in the caller with the given key
+	 */
+	public List<GuardedCallsiteGroup> getGuardedCallerGroups(String callerKey){
+		List<GuardedCallsiteGroup> groups = guardedGroups.get(callerKey);
+		return groups == null ? Collections.<GuardedCallsiteGroup>emptyList() : groups;
+	}
+	
+	/**
+	 * Returns every planned guarded callsite group
+	 */
+	public List<GuardedCallsiteGroup> getGuardedCallsiteGroups(){
+		List<GuardedCallsiteGroup> groups = new ArrayList<GuardedCallsiteGroup>();
+		for(List<GuardedCallsiteGroup> callerGroup : guardedGroups.values()){
+			groups.addAll(callerGroup);
+		}
+		return groups;
+	}
+	
+	private static List<CallsiteGroup> getGroups(Map<String,List<CallsiteGroup>> groups, String key){
+		List<CallsiteGroup> keyGroups = groups.get(key);
+		if(keyGroups == null){
+			keyGroups = new ArrayList<CallsiteGroup>();
+			groups.put(key, keyGroups);
+		}
+		return keyGroups;
+	}
+	
+	/**
+	 * Plans the rewrites for a classification of candidate methods and callsites, the
+	 * classification's call graph must already be built
+	 */
+	public static RewritePlan build(Classification classification){
+		return build(classification, null);
+	}
+	
+	/**
+	 * Plans the rewrites, ordering the guards of guarded callsites by the given target weights
+	 * (higher first) instead of the static likelihood. Targets without a weight count as 0.
+	 */
+	public static RewritePlan build(Classification classification, Map<Node,Long> targetWeights){
+		return build(classification, targetWeights, false);
+	}
+	
+	/**
+	 * Plans only the conversion of the classification's SHOULD-BE-STATIC methods: their static 
+	 * copies, bridges and the single-target callsites that may only dispatch to them
+	 */
+	public static RewritePlan buildShouldBeStatic(Classification classification){
+		return build(classification, null, true);
+	}
+	
+	private static RewritePlan build(Classification classification, Map<Node,Long> targetWeights, boolean shouldBeStaticOnly){
+		CallGraphAlgorithm algorithm = classification.getAlgorithm();
+		RewritePlan plan = new RewritePlan(algorithm);
+		Q callGraph = Common.universe().edges(algorithm.getPerControlFlowTag());
+		Q overrides = Common.universe().edges(XCSG.Overrides);
+		
+		// methods no dynamic dispatch callsite reaches (UNCHANGED) have no callsites to convert, 
+		// SHOULD-BE-STATIC ones are recorded as skipped. Methods only reached through polymorphic 
+		// callsites are CLONE and still get a static copy but none of their callsites are converted.
+		Set<Node> shouldBeStatic = new HashSet<Node>(classification.get(Classification.SHOULD_BE_STATIC));
+		Map<Node,MethodRef> methods = new HashMap<Node,MethodRef>();
+		for(String category : new String[]{ Classification.REWRITE, Classification.CLONE }){
+			for(Node method : classification.get(category)){
+				MethodRef methodRef = getMethodRef(method);
+				if(methodRef == null || method.taggedWith(XCSG.abstractMethod) || isInterfaceMethod(method)
+						|| (shouldBeStaticOnly && !shouldBeStatic.contains(method))){
+					continue;
+				}
+				boolean replaceable = category.equals(Classification.REWRITE)
+						&& CommonQueries.isEmpty(overrides.successors(Common.toQ(method)).union(overrides.predecessors(Common.toQ(method))));
+				methods.put(method, methodRef);
+				plan.addMethod(methodRef, replaceable, shouldBeStatic.contains(method));
+			}
+		}
+		for(Node method : classification.get(Classification.SHOULD_BE_STATIC)){
+			MethodRef methodRef = getMethodRef(method);
+			if(methodRef != null && !methods.containsKey(method)){
+				plan.addSkippedMethod(methodRef);
+			}
+		}
+		
+		AtlasSet<Node> transformable = new AtlasHashSet<Node>();
+		for(Node callsite : classification.get(Classification.CALLSITE_TRANSFORMABLE)){
+			transformable.add(callsite);
+		}
+		AtlasSet<Node> guardable = new AtlasHashSet<Node>();
+		for(Node callsite : classification.get(Classification.CALLSITE_GUARDABLE)){
+			guardable.add(callsite);
+		}
+		Map<Node,Long> weights = targetWeights == null ? new HashMap<Node,Long>() : targetWeights;
+		Set<Node> grouped = new HashSet<Node>();
+		int guarded = 0;
+		for(Node caller : CommonQueries.getContainingFunctions(Common.toQ(transformable).union(Common.toQ(guardable))).eval().nodes()){
+			MethodRef callerRef = getMethodRef(caller);
+			if(callerRef == null){
+				continue;
+			}
+			Map<String,List<Node>> invocations = new LinkedHashMap<String,List<Node>>();
+			for(Node callsite : CommonQueries.localDeclarations(Common.toQ(caller)).nodes(XCSG.DynamicDispatchCallSite).eval().nodes()){
+				Node signature = Common.universe().edges(XCSG.InvokedSignature).successors(Common.toQ(callsite)).eval().nodes().one();
+				String descriptor = signature == null ? null : Descriptors.getMethodDescriptor(signature);
+				if(descriptor != null){
+					String invocation = Descriptors.getMethodName(signature) + descriptor;
+					if(!invocations.containsKey(invocation)){
+						invocations.put(invocation, new ArrayList<Node>());
+					}
+					invocations.get(invocation).add(callsite);
+				}
+			}
+			for(Map.Entry<String,List<Node>> invocation : invocations.entrySet()){
+				String name = invocation.getKey().substring(0, invocation.getKey().indexOf('('));
+				String descriptor = invocation.getKey().substring(name.length());
+				MethodRef target = getGroupTarget(invocation.getValue(), transformable, callGraph, methods);
+				if(target != null){
+					plan.addCallsiteGroup(new CallsiteGroup(callerRef, name, descriptor, invocation.getValue().size(), target));
+					grouped.addAll(invocation.getValue());
+					continue;
+				}
+				List<Guard> guards = shouldBeStaticOnly ? null : getGuards(invocation.getValue(), transformable, guardable, callGraph, methods, weights);
+				if(guards != null){
+					plan.addGuardedCallsiteGroup(new GuardedCallsiteGroup(callerRef, name, descriptor, invocation.getValue().size(), guards));
+					guarded += invocation.getValue().size();
+				}
+			}
+		}
+		
+		// a method can only be replaced if no callsite is left to dispatch to it
+		int replaceable = 0;
+		for(Map.Entry<Node,MethodRef> method : methods.entrySet()){
+			if(plan.isReplaceable(method.getValue())){
+				for(Node callsite : callGraph.predecessors(Common.toQ(method.getKey())).eval().nodes()){
+					if(!grouped.contains(callsite)){
+						plan.addMethod(method.getValue(), false, plan.isBridged(method.getValue()));
+						break;
+					}
+				}
+			}
+			if(plan.isReplaceable(method.getValue())){
+				replaceable++;
+			}
+		}
+		Log.info(algorithm.getName() + " rewrite plan: " + methods.size() + " static copies (" + replaceable + " replaceable), "
+				+ grouped.size() + " of " + transformable.size() + " transformable callsites in " + plan.getCallsiteGroups().size() + " groups, "
+				+ guarded + " callsites in " + plan.getGuardedCallsiteGroups().size() + " guarded groups");
+		return plan;
+	}
+	
+	/**
+	 * Returns the method every callsite may only dispatch to or null if there is none or it has no static copy
+	 */
+	private static MethodRef getGroupTarget(List<Node> callsites, AtlasSet<Node> transformable, Q callGraph, Map<Node,MethodRef> methods){
+		MethodRef target = null;
+		for(Node callsite : callsites){
+			if(!transformable.contains(callsite)){
+				return null;
+			}
+			MethodRef callsiteTarget = methods.get(callGraph.successors(Common.toQ(callsite)).eval().nodes().one());
+			if(callsiteTarget == null || (target != null && !target.equals(callsiteTarget))){
+				return null;
+			}
+			target = callsiteTarget;
+		}
+		return target;
+	}
+	
+	/**
+	 * Returns the guards for the callsites or null if one of them is neither transformable nor guardable
+	 * or none of their targets can be guarded. Targets without a static copy are left to the fallback.
+	 */
+	private static List<Guard> getGuards(List<Node> callsites, AtlasSet<Node> transformable, AtlasSet<Node> guardable, Q callGraph, Map<Node,MethodRef> methods, Map<Node,Long> weights){
+		AtlasSet<Node> targets = new AtlasHashSet<Node>();
+		for(Node callsite : callsites){
+			if(!transformable.contains(callsite) && !guardable.contains(callsite)){
+				return null;
+			}
+			for(Node target : callGraph.successors(Common.toQ(callsite)).eval().nodes()){
+				targets.add(target);
+			}
+		}
+		final Map<Node,Long> likelihoods = new HashMap<Node,Long>();
+		Map<Node,Boolean> exact = new HashMap<Node,Boolean>();
+		List<Node> guardedTargets = new ArrayList<Node>();
+		for(Node target : targets){
+			Node type = Common.toQ(target).parent().eval().nodes().one();
+			boolean overridden = !CommonQueries.isEmpty(Common.universe().edges(XCSG.Overrides).predecessors(Common.toQ(target)));
+			// an exact test of an abstract class never passes
+			if(methods.containsKey(target) && !(overridden && type.taggedWith(XCSG.Java.AbstractClass))){
+				guardedTargets.add(target);
+				exact.put(target, overridden);
+				likelihoods.put(target, weights.isEmpty() ? getStaticLikelihood(target) : (weights.containsKey(target) ? weights.get(target) : 0L));
+			}
+		}
+		if(guardedTargets.isEmpty()){
+			return null;
+		}
+		Collections.sort(guardedTargets, new Comparator<Node>(){
+			@Override
+			public int compare(Node a, Node b){
+				return Long.compare(likelihoods.get(b), likelihoods.get(a));
+			}
+		});
+		List<Guard> guards = new ArrayList<Guard>();
+		for(Node target : guardedTargets){
+			guards.add(new Guard(methods.get(target), exact.get(target)));
+		}
+		return guards;
+	}
+	
+	/**
+	 * Returns the number of instantiations of the types that dispatch to the method: its 
+	 * class and the subclasses that do not inherit an override of it
+	 */
+	private static long getStaticLikelihood(Node method){
+		Q supertypes = Common.universe().edges(XCSG.Supertype);
+		Q type = Common.toQ(method).parent();
+		Q overridingTypes = Common.universe().edges(XCSG.Overrides).predecessors(Common.toQ(method)).parent();
+		Q receiverTypes = supertypes.reverse(type).difference(supertypes.reverse(overridingTypes));
+		return Common.universe().edges(XCSG.TypeOf).predecessors(receiverTypes).nodes(XCSG.Instantiation).eval().nodes().size();
+	}
+	
+	private static boolean isInterfaceMethod(Node method){
+		Node type = Common.toQ(method).parent().eval().nodes().one();
+		return type != null && type.taggedWith(XCSG.Java.Interface);
+	}
+	
+	/**
+	 * Returns the class file reference to the method or null if it can not be derived from the index
+	 */
+	public static MethodRef getMethodRef(Node method){
+		Node type = Common.toQ(method).parent().eval().nodes().one();
+		String owner = type == null ? null : Descriptors.getInternalName(type);
+		String descriptor = Descriptors.getMethodDescriptor(method);
+		if(owner == null || descriptor == null){
+			return null;
+		}
+		return new MethodRef(owner, Descriptors.getMethodName(method), descriptor);
+	}
+	
+}
@@ -0,0 +1,196 @@
+package com.kcsl.ddresolver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import com.ensoftcorp.atlas.core.db.graph.Node;
+import com.ensoftcorp.atlas.core.db.set.AtlasSet;
+import com.ensoftcorp.atlas.core.query.Q;
+import com.ensoftcorp.atlas.core.xcsg.XCSG;
+import com.ensoftcorp.atlas.java.core.script.Common;
+
+/**
+ * Caches the supertype closure of types along with the instance methods and instance 
+ * variables the type inherits. None of these depend on the call graph, so a single 
+ * cache is shared by every analysis and by both resolvers. Least recently used types 
+ * are evicted once the cached sets hold more than the configured number of nodes.
+ * Hierarchies are computed outside the cache's lock, a thread asking for a type another
+ * thread is computing waits for that computation rather than repeating it.
+ */
+public class TypeHierarchyCache {
+
+	private static TypeHierarchyCache instance = null;
+	
+	public static synchronized TypeHierarchyCache getInstance(){
+		if(instance == null){
+			instance = new TypeHierarchyCache(ResolverPreferences.getTypeHierarchyCacheCapacity());
+		}
+		return instance;
+	}
+	
+	/**
+	 * Discards the shared cache so the next call to getInstance() starts empty with the current capacity preference
+	 */
+	public static synchronized void reset(){
+		instance = null;
+	}
+	
+	/**
+	 * The cached hierarchy of a single type
+	 */
+	public static class TypeHierarchy {
+		private final AtlasSet<Node> supertypes;
+		private final AtlasSet<Node> instanceMethods;
+		private final AtlasSet<Node> instanceVariables;
+		
+		private TypeHierarchy(Node type){
+			Q superTypes = Common.edges(XCSG.Supertype).forward(Common.toQ(type));
+			this.supertypes = Instrumentation.eval(superTypes).nodes();
+			this.instanceMethods = Instrumentation.eval(superTypes.children().nodes(XCSG.InstanceMethod)).nodes();
+			this.instanceVariables = Instrumentation.eval(superTypes.children().nodes(XCSG.InstanceVariable)).nodes();
+		}
+		
+		/**
+		 * Returns the type and all of its supertypes
+		 */
+		public AtlasSet<Node> getSupertypes(){
+			return supertypes;
+		}
+		
+		public AtlasSet<Node> getInstanceMethods(){
+			return instanceMethods;
+		}
+		
+		public AtlasSet<Node> getInstanceVariables(){
+			return instanceVariables;
+		}
+		
+		private long getWeight(){
+			return 1 + supertypes.size() + instanceMethods.size() + instanceVariables.size();
+		}
+	}
+	
+	/**
+	 * A cached type's hierarchy, weighed once it has been computed
+	 */
+	private static class Entry {
+		private final FutureTask<TypeHierarchy> hierarchy;
+		private long weight = 0;
+		
+		private Entry(final Node type){
+			this.hierarchy = new FutureTask<TypeHierarchy>(new Callable<TypeHierarchy>(){
+				@Override
+				public TypeHierarchy call(){
+					return new TypeHierarchy(type);
+				}
+			});
+		}
+	}
+	
+	private final long capacity;
+	private long weight = 0;
+	private final LinkedHashMap<Node,Entry> hierarchies = new LinkedHashMap<Node,Entry>(16, 0.75f, true);
+	
+	/**
+	 * Creates a cache that holds at most capacity nodes across all cached sets
+	 */
+	public TypeHierarchyCache(long capacity){
+		this.capacity = capacity;
+	}
+	
+	public TypeHierarchy get(Node type){
+		Entry entry;
+		boolean computing = false;
+		synchronized(this){
+			entry = hierarchies.get(type);
+			if(entry == null){
+				entry = new Entry(type);
+				hierarchies.put(type, entry);
+				computing = true;
+			}
+		}
+		if(computing){
+			entry.hierarchy.run();
+		}
+		TypeHierarchy hierarchy;
+		try {
+			hierarchy = getUninterruptibly(entry.hierarchy);
+		} catch (RuntimeException e) {
+			synchronized(this){
+				if(hierarchies.get(type) == entry){
+					hierarchies.remove(type);
+				}
+			}
+			throw e;
+		}
+		if(computing){
+			synchronized(this){
+				if(hierarchies.get(type) == entry){
+					entry.weight = hierarchy.getWeight();
+					weight += entry.weight;
+					evict(entry);
+				}
+			}
+		}
+		return hierarchy;
+	}
+	
+	private static TypeHierarchy getUninterruptibly(FutureTask<TypeHierarchy> hierarchy){
+		boolean interrupted = false;
+		try {
+			while(true){
+				try {
+					return hierarchy.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if(cause instanceof RuntimeException){
+						throw (RuntimeException) cause;
+					}
+					if(cause instanceof Error){
+						throw (Error) cause;
+					}
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			if(interrupted){
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Evicts the least recently used weighed types until the cache fits its capacity, 
+	 * types still being computed are skipped as they are not weighed yet
+	 */
+	private void evict(Entry added){
+		Iterator<Entry> entries = hierarchies.values().iterator();
+		// always keep the most recently added type
+		while(weight > capacity && entries.hasNext()){
+			Entry eldest = entries.next();
+			if(eldest != added && eldest.weight > 0){
+				weight -= eldest.weight;
+				entries.remove();
+			}
+		}
+	}
+	
+	public synchronized int size(){
+		return hierarchies.size();
+	}
+	
+	/**
+	 * Drops every cached type, the graph may have changed since they were computed
+	 */
+	public synchronized void clear(){
+		hierarchies.clear();
+		weight = 0;
+	}
+	
+}